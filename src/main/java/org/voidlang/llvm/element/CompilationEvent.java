@@ -0,0 +1,105 @@
+package org.voidlang.llvm.element;
+
+/**
+ * Represents the completion of a phase of compiling a module, with the time that the phase took.
+ * <br>
+ * The CPU time is measured on the thread that ran the phase. It is -1, if the phase started and finished on
+ * different threads, or if the JVM does not support measuring the CPU time of threads.
+ */
+public final class CompilationEvent {
+    private final Phase phase;
+    private final String moduleName;
+    private final int functionCount;
+    private final String symbol;
+    private final long wallNanos;
+    private final long cpuNanos;
+
+    CompilationEvent(Phase phase, String moduleName, int functionCount, String symbol, long wallNanos, long cpuNanos) {
+        this.phase = phase;
+        this.moduleName = moduleName;
+        this.functionCount = functionCount;
+        this.symbol = symbol;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Retrieve the name of the module, that the phase has processed.
+     *
+     * @return the name of the module, or null for symbol lookups
+     */
+    public String getModuleName() {
+        return moduleName;
+    }
+
+    /**
+     * Retrieve the number of functions defined in the module, at the end of the phase.
+     *
+     * @return the number of function definitions, or -1 for symbol lookups
+     */
+    public int getFunctionCount() {
+        return functionCount;
+    }
+
+    /**
+     * Retrieve the name of the symbol, that has been looked up.
+     *
+     * @return the name of the symbol, or null for the phases that process a module
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "CompilationEvent{phase=" + phase + (symbol != null ? ", symbol=" + symbol
+            : ", module=" + moduleName + ", functions=" + functionCount) + ", wall=" + wallNanos / 1000
+            + "us, cpu=" + (cpuNanos < 0 ? "n/a" : cpuNanos / 1000 + "us") + "}";
+    }
+
+    public enum Phase {
+        /**
+         * Building the IR of a module, from its creation until it is first verified, optimized or compiled. For
+         * parsed modules, it is the time of parsing the bitcode.
+         */
+        IR_BUILD,
+
+        /**
+         * Verifying a module with {@link IRModule#verify}.
+         */
+        VERIFY,
+
+        /**
+         * Running an optimization pipeline on a module.
+         */
+        OPTIMIZE,
+
+        /**
+         * Emitting the machine code of a module with an {@link IRTargetMachine}.
+         */
+        CODEGEN,
+
+        /**
+         * Compiling a module added to an {@link IRJit}, from handing its IR to the compiler until its object file
+         * is ready to be linked.
+         */
+        JIT_MATERIALIZATION,
+
+        /**
+         * Looking up a symbol in an {@link IRJit}, including the materialization that the lookup triggers.
+         */
+        SYMBOL_LOOKUP
+    }
+}
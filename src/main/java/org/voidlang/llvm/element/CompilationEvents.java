@@ -0,0 +1,97 @@
+package org.voidlang.llvm.element;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Dispatches the timing of the compilation phases to the registered {@link CompilationListener}s.
+ * <br>
+ * While no listener is registered, the phases are not timed at all.
+ */
+public final class CompilationEvents {
+    private static final List<CompilationListener> listeners = new CopyOnWriteArrayList<>();
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = threads.isCurrentThreadCpuTimeSupported();
+
+    private static volatile boolean enabled;
+
+    private CompilationEvents() {
+    }
+
+    public static synchronized void addListener(CompilationListener listener) {
+        listeners.add(listener);
+        enabled = true;
+    }
+
+    public static synchronized void removeListener(CompilationListener listener) {
+        listeners.remove(listener);
+        enabled = !listeners.isEmpty();
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start timing a compilation phase on the current thread.
+     *
+     * @return the timer of the phase, or null if no listener is registered
+     */
+    static Timer start() {
+        return enabled ? new Timer() : null;
+    }
+
+    private static void fire(CompilationEvent event) {
+        for (CompilationListener listener : listeners) {
+            try {
+                listener.onPhase(event);
+            } catch (RuntimeException e) {
+                // the phase may run in a native callback of a JIT, which must not be unwound by the listener
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    private static long cpuTime() {
+        return CPU_TIME ? threads.getCurrentThreadCpuTime() : -1;
+    }
+
+    /**
+     * Represents the start of a compilation phase.
+     */
+    static final class Timer {
+        private final Thread thread = Thread.currentThread();
+        private final long wallStart = System.nanoTime();
+        private final long cpuStart = cpuTime();
+
+        /**
+         * Finish timing a phase that has processed a module, and notify the listeners.
+         *
+         * @param phase the phase that has been completed
+         * @param moduleName the name of the module
+         * @param functionCount the number of functions defined in the module
+         */
+        void finish(CompilationEvent.Phase phase, String moduleName, int functionCount) {
+            finish(phase, moduleName, functionCount, null);
+        }
+
+        /**
+         * Finish timing a symbol lookup, and notify the listeners.
+         *
+         * @param symbol the name of the symbol that has been looked up
+         */
+        void finishLookup(String symbol) {
+            finish(CompilationEvent.Phase.SYMBOL_LOOKUP, null, -1, symbol);
+        }
+
+        private void finish(CompilationEvent.Phase phase, String moduleName, int functionCount, String symbol) {
+            long wall = System.nanoTime() - wallStart;
+            long cpu = cpuStart >= 0 && thread == Thread.currentThread() ? cpuTime() - cpuStart : -1;
+            fire(new CompilationEvent(phase, moduleName, functionCount, symbol, wall, cpu));
+        }
+    }
+}
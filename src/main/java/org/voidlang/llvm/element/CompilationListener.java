@@ -0,0 +1,17 @@
+package org.voidlang.llvm.element;
+
+/**
+ * Represents a listener, that is notified about the timing of the compilation phases. Listeners are registered
+ * globally, using {@link CompilationEvents#addListener(CompilationListener)}.
+ * <br>
+ * Listeners are called on the thread that ran the phase, which may be a compilation thread of a JIT, so they must
+ * be thread safe and return quickly.
+ */
+public interface CompilationListener {
+    /**
+     * Handle the completion of a compilation phase.
+     *
+     * @param event the phase that has been completed, and its timing
+     */
+    void onPhase(CompilationEvent event);
+}
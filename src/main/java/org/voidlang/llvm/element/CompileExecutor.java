@@ -0,0 +1,396 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.SizeTPointer;
+import org.bytedeco.llvm.LLVM.LLVMErrorRef;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMOrcGenericIRModuleOperationFunction;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Runs the compilation steps of modules asynchronously, on a bounded pool of compiler threads. Every operation
+ * returns a {@link CompletableFuture} immediately, so the calling thread never waits for the verifier, the
+ * optimizer or the code generator.
+ * <br>
+ * The modules are passed as {@link IRThreadSafeModule}s, and every operation locks the thread safe context of its
+ * module while it runs. Modules of the same context are therefore never compiled concurrently, neither by this
+ * executor nor by an {@link IRJit}, while modules of different contexts are compiled in parallel. The caller must
+ * not change a module, until the operations submitted for it have completed.
+ * <br>
+ * The JIT compiles the modules added to it with a single target machine, which must not generate code on multiple
+ * threads at once. Therefore the executor generates the machine code of the modules with the target machines of its
+ * own threads, and adds the object files to the JIT instead.
+ * <br>
+ * The number of pending operations is capped. Once the queue is full, further operations are not queued, but
+ * their futures complete exceptionally with a {@link RejectedExecutionException}, so that a burst of new modules
+ * cannot pile up an unbounded backlog of compilations. The modules of rejected operations are still owned by the
+ * caller.
+ */
+public class CompileExecutor implements Disposable {
+    /**
+     * The operations that are currently running, by the identifiers that are passed to the module callback.
+     */
+    private static final Map<Long, Operation<?>> operations = new ConcurrentHashMap<>();
+    private static final AtomicLong nextId = new AtomicLong(1);
+
+    /**
+     * The module callback is shared by every executor, as JavaCPP can only allocate a few instances of a callback.
+     */
+    private static final ModuleOperation MODULE_OPERATION = new ModuleOperation();
+
+    private final ThreadPoolExecutor executor;
+    private final OptLevel optLevel;
+
+    private final ThreadLocal<IRTargetMachine> targetMachines;
+    private final Queue<IRTargetMachine> createdMachines = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Create an executor, whose compiler threads generate code with copies of the specified target machine. The
+     * machine is not consumed, so it must still be disposed by the caller.
+     *
+     * @param threads the number of compiler threads
+     * @param capacity the maximum number of operations waiting for a compiler thread
+     * @param template the target machine to copy the code generation settings from
+     */
+    public CompileExecutor(int threads, int capacity, IRTargetMachine template) {
+        this.executor = createExecutor(threads, capacity);
+        this.optLevel = template.getOptLevel();
+        this.targetMachines = ThreadLocal.withInitial(() -> {
+            IRTargetMachine machine = template.copy();
+            createdMachines.add(machine);
+            return machine;
+        });
+    }
+
+    public CompileExecutor(int threads, int capacity, OptLevel optLevel) {
+        this.executor = createExecutor(threads, capacity);
+        this.optLevel = optLevel;
+        this.targetMachines = ThreadLocal.withInitial(() -> {
+            IRTargetMachine machine = IRTargetMachine.create(optLevel);
+            createdMachines.add(machine);
+            return machine;
+        });
+    }
+
+    public CompileExecutor(OptLevel optLevel) {
+        this(Runtime.getRuntime().availableProcessors(), 1024, optLevel);
+    }
+
+    private static ThreadPoolExecutor createExecutor(int threads, int capacity) {
+        return new ThreadPoolExecutor(
+            threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity), new WorkerFactory()
+        );
+    }
+
+    /**
+     * Verify a module on a compiler thread.
+     *
+     * @param module the module to be verified
+     * @return a future that completes once the module is verified, or completes exceptionally with an
+     * {@link LLVMException} if the module is invalid
+     */
+    public CompletableFuture<Void> verify(IRThreadSafeModule module) {
+        return submit(module, CompileExecutor::verify);
+    }
+
+    /**
+     * Configure a module for the target machine of the executor, and optimize it with the default pipeline of the
+     * optimization level of the executor, on a compiler thread.
+     *
+     * @param module the module to be optimized
+     * @return a future that completes once the module is optimized
+     */
+    public CompletableFuture<Void> optimize(IRThreadSafeModule module) {
+        return submit(module, this::optimize);
+    }
+
+    /**
+     * Generate the machine code of a module into a new memory buffer, on a compiler thread.
+     *
+     * @param module the module to generate the code for
+     * @param type the type of the output
+     * @return a future that completes with the object file or the assembly of the module, which must be disposed by
+     * the caller
+     */
+    public CompletableFuture<IRMemoryBuffer> emit(IRThreadSafeModule module, IRTargetMachine.FileType type) {
+        return submit(module, target -> targetMachines.get().emit(target, type));
+    }
+
+    /**
+     * Generate the machine code of a module on a compiler thread, and link it into a JIT right away, rather than
+     * when one of its symbols is looked up for the first time. The ownership of the module is transferred to the
+     * executor, once the operation starts running, and the module is disposed after its code is generated.
+     *
+     * @param module the module to be added to the JIT
+     * @param jit the JIT to add the module to
+     * @return a future that completes once the machine code of the module is linked into the JIT
+     */
+    public CompletableFuture<Void> addModule(IRThreadSafeModule module, IRJit jit) {
+        return submit(() -> {
+            link(module, jit, false);
+            return null;
+        });
+    }
+
+    /**
+     * Verify and optimize a module, generate its machine code and link it into a JIT, all in a single operation on
+     * a compiler thread. This is the asynchronous counterpart of creating an {@link ExecutionEngine} for a module.
+     * The ownership of the module is transferred to the executor, once the operation starts running, and the module
+     * is disposed after its code is generated.
+     *
+     * @param module the module to be compiled
+     * @param jit the JIT to add the module to
+     * @return a future that completes once the machine code of the module is linked into the JIT
+     */
+    public CompletableFuture<Void> compile(IRThreadSafeModule module, IRJit jit) {
+        return submit(() -> {
+            link(module, jit, true);
+            return null;
+        });
+    }
+
+    /**
+     * Verify and optimize a module, add it to a JIT and compile it, all in a single operation on a compiler
+     * thread. The module must have been created in the context of the specified thread safe context, and its
+     * ownership is transferred to the executor, once the operation starts running.
+     *
+     * @param module the module to be compiled
+     * @param context the thread safe context that the module was created in
+     * @param jit the JIT to add the module to
+     * @return a future that completes once the machine code of the module is linked into the JIT
+     */
+    public CompletableFuture<Void> compile(IRModule module, IRThreadSafeContext context, IRJit jit) {
+        // the module is wrapped by the task, so that a rejected module is still owned by the caller
+        return submit(() -> {
+            link(IRThreadSafeModule.create(module, context), jit, true);
+            return null;
+        });
+    }
+
+    private static Void verify(IRModule module) {
+        BytePointer error = new BytePointer((Pointer) null);
+        boolean valid = module.verify(IRModule.VerifierFailureAction.RETURN_STATUS, error);
+        String message = error.isNull() ? "" : error.getString();
+        if (!error.isNull())
+            LLVMDisposeMessage(error);
+        if (!valid)
+            throw new LLVMException("Failed to verify module " + module.getName() + ": " + message);
+        return null;
+    }
+
+    private Void optimize(IRModule module) {
+        IRTargetMachine machine = targetMachines.get();
+        machine.configure(module);
+        module.optimize(optLevel, machine);
+        return null;
+    }
+
+    /**
+     * Generate the object file of a module with the target machine of the current thread, and add it to a JIT. One
+     * of the definitions of the module is looked up, which makes the JIT link the object file right away. The
+     * module is disposed afterward, even if it fails to compile.
+     */
+    private void link(IRThreadSafeModule module, IRJit jit, boolean optimize) {
+        CompiledModule compiled;
+        try {
+            compiled = locked(module, target -> {
+                if (optimize) {
+                    verify(target);
+                    optimize(target);
+                }
+                IRMemoryBuffer object = targetMachines.get().emit(target, IRTargetMachine.FileType.OBJECT);
+                return new CompiledModule(object, findDefinition(target));
+            });
+        } finally {
+            module.dispose();
+        }
+        jit.addObjectFile(compiled.object);
+        if (compiled.definition != null)
+            jit.lookup(compiled.definition);
+    }
+
+    /**
+     * Find the name of a symbol, that is defined by a module and visible outside of it.
+     */
+    private static String findDefinition(IRModule module) {
+        LLVMModuleRef handle = module.getHandle();
+        for (LLVMValueRef function = LLVMGetFirstFunction(handle); function != null && !function.isNull();
+             function = LLVMGetNextFunction(function)) {
+            if (isExported(function))
+                return valueName(function);
+        }
+        for (LLVMValueRef global = LLVMGetFirstGlobal(handle); global != null && !global.isNull();
+             global = LLVMGetNextGlobal(global)) {
+            if (isExported(global))
+                return valueName(global);
+        }
+        return null;
+    }
+
+    private static boolean isExported(LLVMValueRef value) {
+        if (LLVMIsDeclaration(value) != 0)
+            return false;
+        int linkage = LLVMGetLinkage(value);
+        return linkage != LLVMInternalLinkage && linkage != LLVMPrivateLinkage
+            && linkage != LLVMAvailableExternallyLinkage;
+    }
+
+    private static String valueName(LLVMValueRef value) {
+        return LLVMGetValueName2(value, new SizeTPointer(1)).getString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Run an operation on a compiler thread, while the context of the module is locked.
+     */
+    private <T> CompletableFuture<T> submit(IRThreadSafeModule module, Function<IRModule, T> action) {
+        return submit(() -> locked(module, action));
+    }
+
+    /**
+     * Run a task on a compiler thread. If the queue of the executor is full, the future of the task completes
+     * exceptionally, instead of blocking or running the task on the calling thread.
+     */
+    private <T> CompletableFuture<T> submit(Task<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(task.run());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Run an action on the module of a thread safe module, while its context is locked. The action may throw, as
+     * the exception is passed back around the native frames of the lock.
+     */
+    private static <T> T locked(IRThreadSafeModule module, Function<IRModule, T> action) {
+        Operation<T> operation = new Operation<>(module.getModule(), action);
+        long id = nextId.getAndIncrement();
+        operations.put(id, operation);
+        try {
+            LLVMException.check(LLVMOrcThreadSafeModuleWithModuleDo(
+                module.getHandle(), MODULE_OPERATION, new Pointer() {{ address = id; }}
+            ));
+        } finally {
+            operations.remove(id);
+        }
+        // the action cannot throw checked exceptions
+        if (operation.failure instanceof RuntimeException)
+            throw (RuntimeException) operation.failure;
+        if (operation.failure != null)
+            throw (Error) operation.failure;
+        return operation.result;
+    }
+
+    /**
+     * Shut down the compiler threads after the pending operations are completed, and dispose the target machines.
+     */
+    @Override
+    public void dispose() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IRTargetMachine machine;
+        while ((machine = createdMachines.poll()) != null)
+            machine.dispose();
+    }
+
+    /**
+     * Retrieve the number of operations, that are waiting for a compiler thread.
+     *
+     * @return the number of queued operations
+     */
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public OptLevel getOptLevel() {
+        return optLevel;
+    }
+
+    @FunctionalInterface
+    private interface Task<T> {
+        T run();
+    }
+
+    private static class CompiledModule {
+        private final IRMemoryBuffer object;
+        private final String definition;
+
+        private CompiledModule(IRMemoryBuffer object, String definition) {
+            this.object = object;
+            this.definition = definition;
+        }
+    }
+
+    private static class Operation<T> {
+        private final IRModule module;
+        private final Function<IRModule, T> action;
+        private T result;
+        private Throwable failure;
+
+        private Operation(IRModule module, Function<IRModule, T> action) {
+            this.module = module;
+            this.action = action;
+        }
+    }
+
+    /**
+     * Runs the action of an operation on the module of a thread safe module. Exceptions must not be thrown across
+     * the native frames, so they are stored in the operation instead.
+     */
+    private static class ModuleOperation extends LLVMOrcGenericIRModuleOperationFunction {
+        @Override
+        public LLVMErrorRef call(Pointer context, LLVMModuleRef module) {
+            run(operations.get(context.address()));
+            return null;
+        }
+
+        private static <T> void run(Operation<T> operation) {
+            try {
+                operation.result = operation.action.apply(operation.module);
+            } catch (Throwable e) {
+                operation.failure = e;
+            }
+        }
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "void-compile-executor-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,5 +1,20 @@
 package org.voidlang.llvm.element;
 
-public interface Disposable {
+/**
+ * Represents an object that holds native resources, which must be freed explicitly.
+ * <br>
+ * Disposing an object more than once has no effect, and disposables can be used in try-with-resources statements.
+ * Objects that are created under an owner, such as the modules and builders of an {@link IRContext}, are disposed
+ * together with their owner, in the reverse order of their creation.
+ */
+public interface Disposable extends AutoCloseable {
     void dispose();
+
+    /**
+     * Dispose the object. This allows disposables to be used in try-with-resources statements.
+     */
+    @Override
+    default void close() {
+        dispose();
+    }
 }
@@ -0,0 +1,104 @@
+package org.voidlang.llvm.element;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents the set of resources, that are owned by a disposable object, such as an {@link IRContext} or an
+ * {@link IRJit}. The resources are disposed in the reverse order of their registration, when the owner is disposed.
+ * <br>
+ * A resource that is disposed on its own should remove itself from the scope of its owner.
+ */
+final class DisposableScope {
+    private final List<Disposable> resources = new ArrayList<>();
+    private boolean disposed;
+
+    /**
+     * Register a resource in the scope.
+     *
+     * @param resource the resource to be disposed together with the owner
+     * @param <T> the type of the resource
+     * @return the registered resource
+     * @throws IllegalStateException if the owner has already been disposed
+     */
+    synchronized <T extends Disposable> T add(T resource) {
+        if (disposed)
+            throw new IllegalStateException("Cannot create a resource under a disposed owner");
+        resources.add(resource);
+        return resource;
+    }
+
+    /**
+     * Remove a resource from the scope, without disposing it.
+     *
+     * @param resource the resource to be removed
+     */
+    synchronized void remove(Disposable resource) {
+        // resources are usually disposed in the reverse order of their creation
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            if (resources.get(i) == resource) {
+                resources.remove(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Dispose every resource of the scope, in the reverse order of their registration. If a resource fails to be
+     * disposed, the remaining resources are still disposed, and the first failure is rethrown afterward.
+     */
+    void dispose() {
+        disposeAll(true);
+    }
+
+    /**
+     * Dispose every resource of the scope like {@link #dispose()}, but keep the scope open, so that new resources
+     * can still be registered afterward.
+     */
+    void clear() {
+        disposeAll(false);
+    }
+
+    private void disposeAll(boolean close) {
+        List<Disposable> snapshot;
+        synchronized (this) {
+            if (close)
+                disposed = true;
+            snapshot = new ArrayList<>(resources);
+            resources.clear();
+        }
+        RuntimeException failure = null;
+        for (int i = snapshot.size() - 1; i >= 0; i--) {
+            try {
+                snapshot.get(i).dispose();
+            } catch (RuntimeException e) {
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Retrieve the resources of the scope, that are instances of the specified class.
+     *
+     * @param type the class of the resources to be retrieved
+     * @param <T> the type of the resources
+     * @return a copy of the matching resources, in the order of their registration
+     */
+    synchronized <T extends Disposable> List<T> list(Class<T> type) {
+        List<T> matching = new ArrayList<>();
+        for (Disposable resource : resources) {
+            if (type.isInstance(resource))
+                matching.add(type.cast(resource));
+        }
+        return matching;
+    }
+
+    synchronized int size() {
+        return resources.size();
+    }
+}
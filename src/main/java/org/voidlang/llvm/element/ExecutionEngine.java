@@ -8,25 +8,97 @@ import org.bytedeco.llvm.LLVM.LLVMGenericValueRef;
 import java.util.List;
 
 import static org.bytedeco.llvm.global.LLVM.LLVMCreateMCJITCompilerForModule;
+import static org.bytedeco.llvm.global.LLVM.LLVMDisposeExecutionEngine;
+import static org.bytedeco.llvm.global.LLVM.LLVMGetFunctionAddress;
 import static org.bytedeco.llvm.global.LLVM.LLVMRunFunction;
 
-public class ExecutionEngine {
+public class ExecutionEngine implements Disposable {
     private final LLVMExecutionEngineRef handle;
 
+    private IRContext context;
+    private IRModule module;
+    private boolean disposed;
+
     ExecutionEngine(LLVMExecutionEngineRef handle) {
         this.handle = handle;
     }
 
+    /**
+     * Create an MCJIT compiler for the module. On success, the engine takes the ownership of the module, and the
+     * engine is disposed together with the context of the module.
+     *
+     * @param module the module to be compiled
+     * @param options the options of the compiler
+     * @param error the pointer to write the error message to
+     * @return true if the compiler was created successfully
+     */
     public boolean createMCJITCompilerForModule(IRModule module, MMCJITCompilerOptions options, BytePointer error) {
-        return LLVMCreateMCJITCompilerForModule(handle, module.getHandle(), options.getHandle(), options.getHandle().sizeof(), error) == 0;
+        module.finishBuild();
+        if (LLVMCreateMCJITCompilerForModule(handle, module.getHandle(), options.getHandle(), options.getHandle().sizeof(), error) != 0)
+            return false;
+        // disposing the engine frees the module as well
+        module.measure();
+        module.transferOwnership();
+        this.module = module;
+        context = module.getContext();
+        context.manage(this);
+        LeakDetector.track(this);
+        return true;
     }
 
+    /**
+     * Run a function of the module of the engine. The returned generic value is not managed by the context of the
+     * module, so that repeated calls do not accumulate values in it, and it must be disposed by the caller.
+     *
+     * @param function the function to be called
+     * @param arguments the arguments to call the function with
+     * @return the return value of the function
+     */
     public IRGenericValue runFunction(IRFunction function, List<IRGenericValue> arguments) {
         int argsLength = arguments.size();
         PointerPointer<LLVMGenericValueRef> args = new PointerPointer<>(argsLength);
         for (int i = 0; i < argsLength; i++)
             args.put(i, arguments.get(i).getHandle());
-        return new IRGenericValue(LLVMRunFunction(handle, function.getHandle(), argsLength, args));
+        IRGenericValue result = new IRGenericValue(LLVMRunFunction(handle, function.getHandle(), argsLength, args));
+        args.close();
+        return result;
+    }
+
+    /**
+     * Retrieve the native address of a function, that the engine has compiled. Calling the function through its
+     * address avoids the overhead of {@link #runFunction(IRFunction, List)}.
+     *
+     * @param name the name of the function
+     * @return the address of the function, or zero if the function is not defined
+     */
+    public long getFunctionAddress(String name) {
+        return LLVMGetFunctionAddress(handle, name);
+    }
+
+    /**
+     * Retrieve the estimated native memory usage of the IR of the module, that the engine has compiled. The module
+     * is measured when the engine is created. This method is safe to call from any thread.
+     * <br>
+     * MCJIT does not report the size of the machine code that it emits, so the code is not included.
+     *
+     * @return the estimated size of the module in bytes, or zero if the engine has not compiled a module yet
+     */
+    public long getEstimatedSize() {
+        IRModule module = this.module;
+        return module != null ? module.getEstimatedSize() : 0;
+    }
+
+    /**
+     * Dispose the engine, and the module that it has compiled.
+     */
+    @Override
+    public void dispose() {
+        if (disposed || context == null)
+            return;
+        disposed = true;
+        context.forget(this);
+        LeakDetector.untrack(this);
+        LLVMDisposeExecutionEngine(handle);
     }
 
     public LLVMExecutionEngineRef getHandle() {
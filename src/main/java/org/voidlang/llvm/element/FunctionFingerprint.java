@@ -0,0 +1,285 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.javacpp.SizeTPointer;
+import org.bytedeco.llvm.LLVM.LLVMAttributeRef;
+import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
+import org.bytedeco.llvm.LLVM.LLVMContextRef;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueMetadataEntry;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Computes the content hash of a function definition, that changes whenever the machine code of the function may
+ * change.
+ * <br>
+ * The hash covers the IR of the function, the attributes of the function and of its call sites, the signatures of
+ * the functions it refers to, and the definitions of the global variables it refers to, including the globals that
+ * their initializers refer to. The bodies of the referenced functions are not covered, so a function keeps its
+ * hash, if only the implementation of its callees changes.
+ * <br>
+ * Attribute groups and metadata nodes are numbered across the whole module, so their numbers are left out of the
+ * hash, and the attributes and the attached metadata, such as branch weights, are hashed by their contents instead.
+ */
+final class FunctionFingerprint {
+    private static final Pattern MODULE_NUMBERS = Pattern.compile("(#|!)[0-9]+");
+
+    private final MessageDigest digest = ObjectCache.sha256();
+    private final List<LLVMValueRef> globals = new ArrayList<>();
+    private final Set<LLVMValueRef> visitedGlobals = new HashSet<>();
+    private final Set<LLVMValueRef> functions = new LinkedHashSet<>();
+    // the metadata nodes hashed so far, numbered in the order of their first visit, as they may refer to each other
+    private final Map<LLVMValueRef, Integer> metadata = new HashMap<>();
+
+    private FunctionFingerprint() {
+    }
+
+    /**
+     * Compute the fingerprint of a function definition.
+     *
+     * @param function the function to compute the fingerprint of
+     * @return the hexadecimal SHA-256 hash of the function
+     */
+    static String compute(LLVMValueRef function) {
+        FunctionFingerprint fingerprint = new FunctionFingerprint();
+        fingerprint.hashFunction(function);
+        return ObjectCache.toHex(fingerprint.digest.digest());
+    }
+
+    /**
+     * Compute the fingerprint of the global variable definitions of a module, including their initializers.
+     *
+     * @param module the module to compute the fingerprint of
+     * @return the hexadecimal SHA-256 hash of the global variables
+     */
+    static String computeGlobals(LLVMModuleRef module) {
+        FunctionFingerprint fingerprint = new FunctionFingerprint();
+        fingerprint.update("globals");
+        for (LLVMValueRef global = LLVMGetFirstGlobal(module); global != null && !global.isNull();
+             global = LLVMGetNextGlobal(global)) {
+            if (LLVMIsDeclaration(global) == 0) {
+                fingerprint.update(print(global));
+                fingerprint.hashMetadata(global, false);
+            }
+        }
+        return ObjectCache.toHex(fingerprint.digest.digest());
+    }
+
+    private void hashFunction(LLVMValueRef function) {
+        update(print(function));
+        hashAttributes(function, false);
+        hashMetadata(function, false);
+        for (LLVMBasicBlockRef block = LLVMGetFirstBasicBlock(function); block != null && !block.isNull();
+             block = LLVMGetNextBasicBlock(block)) {
+            for (LLVMValueRef instruction = LLVMGetFirstInstruction(block);
+                 instruction != null && !instruction.isNull(); instruction = LLVMGetNextInstruction(instruction)) {
+                if (LLVMIsACallInst(instruction) != null || LLVMIsAInvokeInst(instruction) != null)
+                    hashAttributes(instruction, true);
+                hashMetadata(instruction, true);
+                collectReferences(instruction);
+            }
+        }
+
+        // the initializers of the globals may refer to further globals, which are appended while iterating
+        for (int i = 0; i < globals.size(); i++) {
+            LLVMValueRef global = globals.get(i);
+            update(print(global));
+            if (LLVMIsAGlobalVariable(global) == null)
+                continue;
+            hashMetadata(global, false);
+            LLVMValueRef initializer = LLVMGetInitializer(global);
+            if (initializer != null && !initializer.isNull())
+                collectConstant(initializer);
+        }
+
+        for (LLVMValueRef callee : functions) {
+            if (callee.equals(function))
+                continue;
+            update("declare " + name(callee) + " : " + typeString(callee) + " cc" + LLVMGetFunctionCallConv(callee));
+            hashAttributes(callee, false);
+        }
+    }
+
+    /**
+     * Collect the globals and functions, that the operands of an instruction refer to.
+     */
+    private void collectReferences(LLVMValueRef instruction) {
+        for (int i = 0, n = LLVMGetNumOperands(instruction); i < n; i++) {
+            LLVMValueRef operand = LLVMGetOperand(instruction, i);
+            if (operand != null && !operand.isNull() && LLVMIsAConstant(operand) != null)
+                collectConstant(operand);
+        }
+    }
+
+    private void collectConstant(LLVMValueRef constant) {
+        if (LLVMIsAFunction(constant) != null) {
+            functions.add(constant);
+            return;
+        }
+        if (LLVMIsAGlobalValue(constant) != null) {
+            if (visitedGlobals.add(constant))
+                globals.add(constant);
+            return;
+        }
+        for (int i = 0, n = LLVMGetNumOperands(constant); i < n; i++) {
+            LLVMValueRef operand = LLVMGetOperand(constant, i);
+            if (operand != null && !operand.isNull() && LLVMIsAConstant(operand) != null)
+                collectConstant(operand);
+        }
+    }
+
+    /**
+     * Hash the attributes of a function or a call site, as their attribute groups are only referred to by number
+     * in the printed IR.
+     */
+    private void hashAttributes(LLVMValueRef value, boolean callSite) {
+        int parameters = callSite ? LLVMGetNumArgOperands(value) : LLVMCountParams(value);
+        // the function index is -1 as a signed integer, followed by the return value and the parameters
+        for (int index = LLVMAttributeFunctionIndex; index <= parameters; index++) {
+            int count = callSite ? LLVMGetCallSiteAttributeCount(value, index)
+                : LLVMGetAttributeCountAtIndex(value, index);
+            if (count == 0)
+                continue;
+            PointerPointer<LLVMAttributeRef> attributes = new PointerPointer<>(count);
+            try {
+                if (callSite)
+                    LLVMGetCallSiteAttributes(value, index, attributes);
+                else
+                    LLVMGetAttributesAtIndex(value, index, attributes);
+                StringBuilder builder = new StringBuilder("attributes ").append(index);
+                for (int i = 0; i < count; i++)
+                    builder.append(' ').append(attributeString(attributes.get(LLVMAttributeRef.class, i)));
+                update(builder.toString());
+            } finally {
+                attributes.close();
+            }
+        }
+    }
+
+    /**
+     * Hash the metadata attached to a global object or an instruction, as the nodes are only referred to by number
+     * in the printed IR. The debug locations of instructions are left out, as they are hashed by their own nodes.
+     */
+    private void hashMetadata(LLVMValueRef value, boolean instruction) {
+        SizeTPointer count = new SizeTPointer(1);
+        LLVMValueMetadataEntry entries = instruction
+            ? LLVMInstructionGetAllMetadataOtherThanDebugLoc(value, count)
+            : LLVMGlobalCopyAllMetadata(value, count);
+        if (entries == null || entries.isNull())
+            return;
+        try {
+            LLVMContextRef context = LLVMGetTypeContext(LLVMTypeOf(value));
+            for (int i = 0; i < count.get(); i++) {
+                update("metadata " + LLVMValueMetadataEntriesGetKind(entries, i));
+                hashMetadataNode(LLVMMetadataAsValue(context, LLVMValueMetadataEntriesGetMetadata(entries, i)));
+            }
+        } finally {
+            LLVMDisposeValueMetadataEntries(entries);
+        }
+    }
+
+    /**
+     * Hash a metadata node and the nodes it refers to. Nodes may form cycles, so a node that has been hashed already
+     * is only hashed by the order of its first visit.
+     */
+    private void hashMetadataNode(LLVMValueRef node) {
+        if (node == null || node.isNull()) {
+            update("null");
+            return;
+        }
+        if (LLVMIsAMDString(node) != null) {
+            int[] length = new int[1];
+            update("string " + string(LLVMGetMDString(node, length), length[0]));
+            return;
+        }
+        if (LLVMIsAMDNode(node) == null) {
+            // the constants of the node, which may refer to globals, whose contents are hashed on their own
+            update(LLVMIsAGlobalValue(node) != null ? "global " + name(node) : print(node));
+            return;
+        }
+        Integer visited = metadata.get(node);
+        if (visited != null) {
+            update("visited " + visited);
+            return;
+        }
+        metadata.put(node, metadata.size());
+        int operands = LLVMGetMDNodeNumOperands(node);
+        update("node " + operands);
+        if (operands == 0)
+            return;
+        PointerPointer<LLVMValueRef> values = new PointerPointer<>(operands);
+        try {
+            LLVMGetMDNodeOperands(node, values);
+            for (int i = 0; i < operands; i++)
+                hashMetadataNode(values.get(LLVMValueRef.class, i));
+        } finally {
+            values.close();
+        }
+    }
+
+    private static String attributeString(LLVMAttributeRef attribute) {
+        if (LLVMIsStringAttribute(attribute) != 0) {
+            int[] length = new int[1];
+            String kind = string(LLVMGetStringAttributeKind(attribute, length), length[0]);
+            String value = string(LLVMGetStringAttributeValue(attribute, length), length[0]);
+            return '"' + kind + "\"=\"" + value + '"';
+        }
+        int kind = LLVMGetEnumAttributeKind(attribute);
+        if (LLVMIsTypeAttribute(attribute) != 0)
+            return kind + "(" + typeString(LLVMGetTypeAttributeValue(attribute)) + ")";
+        return kind + "=" + LLVMGetEnumAttributeValue(attribute);
+    }
+
+    /**
+     * Read a string of an attribute, which is not terminated by a null character.
+     */
+    private static String string(BytePointer pointer, int length) {
+        return length == 0 ? "" : pointer.limit(length).getString(StandardCharsets.UTF_8);
+    }
+
+    private void update(String text) {
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static String print(LLVMValueRef value) {
+        BytePointer text = LLVMPrintValueToString(value);
+        try {
+            return MODULE_NUMBERS.matcher(text.getString(StandardCharsets.UTF_8)).replaceAll("$1");
+        } finally {
+            LLVMDisposeMessage(text);
+        }
+    }
+
+    private static String typeString(LLVMValueRef function) {
+        return typeString(LLVMGlobalGetValueType(function));
+    }
+
+    private static String typeString(LLVMTypeRef type) {
+        BytePointer text = LLVMPrintTypeToString(type);
+        try {
+            return text.getString(StandardCharsets.UTF_8);
+        } finally {
+            LLVMDisposeMessage(text);
+        }
+    }
+
+    private static String name(LLVMValueRef value) {
+        return LLVMGetValueName2(value, new SizeTPointer(1)).getString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,95 @@
+package org.voidlang.llvm.element;
+
+/**
+ * Represents a hash table, that maps the native addresses of LLVM handles to their wrappers. The addresses are
+ * stored as primitive keys in an open addressing table, so lookups do not allocate.
+ * <br>
+ * The table is not thread safe. The null address cannot be used as a key.
+ *
+ * @param <T> the type of the wrappers
+ */
+final class HandleTable<T> {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Retrieve the wrapper of the specified handle address.
+     *
+     * @param key the native address of the handle
+     * @return the wrapper of the handle, or null if the handle has no wrapper yet
+     */
+    @SuppressWarnings("unchecked")
+    T get(long key) {
+        int mask = keys.length - 1;
+        for (int i = index(key, mask); ; i = (i + 1) & mask) {
+            long current = keys[i];
+            if (current == key)
+                return (T) values[i];
+            if (current == 0)
+                return null;
+        }
+    }
+
+    /**
+     * Associate the wrapper with the specified handle address, replacing the previous wrapper of the handle.
+     *
+     * @param key the native address of the handle
+     * @param value the wrapper of the handle
+     */
+    void put(long key, T value) {
+        // keep the load factor below one half, so that the probe sequences stay short
+        if ((size + 1) * 2 > keys.length)
+            resize(keys.length * 2);
+        if (insert(keys, values, key, value))
+            size++;
+    }
+
+    /**
+     * Remove every wrapper from the table.
+     */
+    void clear() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize(int capacity) {
+        long[] newKeys = new long[capacity];
+        Object[] newValues = new Object[capacity];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0)
+                insert(newKeys, newValues, keys[i], values[i]);
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+
+    private static boolean insert(long[] keys, Object[] values, long key, Object value) {
+        int mask = keys.length - 1;
+        for (int i = index(key, mask); ; i = (i + 1) & mask) {
+            long current = keys[i];
+            if (current == 0) {
+                keys[i] = key;
+                values[i] = value;
+                return true;
+            }
+            if (current == key) {
+                values[i] = value;
+                return false;
+            }
+        }
+    }
+
+    private static int index(long key, int mask) {
+        // the low bits of native addresses are mostly zero because of alignment, so mix the high bits in
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,436 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMContextRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.List;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Invokes a function of a scalar signature, such as {@code i32 f(i32, i32)}, over whole columns of values in a
+ * single native call.
+ * <br>
+ * {@link #generate(IRFunction)} adds a loop wrapper next to the function, named after the function with the
+ * {@code $batch} suffix, whose signature is {@code void f$batch(ptr out, ptr in0, ..., ptr inN, i64 count)}. The
+ * wrapper calls the function for each row, and stores the results in the output column. The wrapper should be
+ * generated before the module is optimized, so that the function can be inlined into the loop and vectorized.
+ * <br>
+ * The columns are either primitive arrays or direct buffers in the native byte order. Direct buffers are passed to
+ * the wrapper without copying, from their current position, while arrays are copied into native memory before the
+ * call, and the output array is copied back afterward. Integers of 8, 16, 32 and 64 bits are stored in byte, short,
+ * int and long columns, floats in float columns, and doubles in double columns.
+ */
+public final class IRBatchInvoker {
+    /**
+     * The suffix of the name of the generated wrapper.
+     */
+    public static final String SUFFIX = "$batch";
+
+    private final MethodHandle handle;
+    private final IRFunctionType type;
+
+    private IRBatchInvoker(MethodHandle handle, IRFunctionType type) {
+        this.handle = handle;
+        this.type = type;
+    }
+
+    /**
+     * Invoke the function over columns, that are primitive arrays or direct buffers. The number of rows is the
+     * length of the output column, and the input columns must have at least as many rows.
+     *
+     * @param output the column to store the results in
+     * @param inputs the columns of the arguments, one for each parameter of the function
+     * @throws IllegalArgumentException if a column does not match the type of its parameter, or it is too short
+     */
+    public void invoke(Object output, Object... inputs) {
+        List<IRType> parameterTypes = type.getParameterTypes();
+        if (inputs.length != parameterTypes.size())
+            throw new IllegalArgumentException(
+                "Expected " + parameterTypes.size() + " input columns, but got " + inputs.length
+            );
+        IRType returnType = type.getReturnType();
+        long count = rows(output, returnType);
+        // the arrays are copied into a single native buffer, that is laid out like the columns
+        long scratchSize = 0;
+        for (int i = 0; i < inputs.length; i++) {
+            if (rows(inputs[i], parameterTypes.get(i)) < count)
+                throw new IllegalArgumentException("Input column " + i + " has fewer rows than the output column");
+            if (!(inputs[i] instanceof Buffer))
+                scratchSize += align(count * elementSize(parameterTypes.get(i)));
+        }
+        if (!(output instanceof Buffer))
+            scratchSize += align(count * elementSize(returnType));
+        // the buffer is over-allocated by a cache line, so that the first column can be aligned as well
+        if (scratchSize > Integer.MAX_VALUE - 63)
+            throw new IllegalArgumentException("The columns are too large to be copied into native memory");
+
+        BytePointer scratch = new BytePointer(scratchSize + 63);
+        try {
+            ByteBuffer buffer = scratch.asByteBuffer();
+            long[] addresses = new long[inputs.length];
+            int offset = (int) (align(scratch.address()) - scratch.address());
+            for (int i = 0; i < inputs.length; i++) {
+                if (inputs[i] instanceof Buffer) {
+                    addresses[i] = address((Buffer) inputs[i], parameterTypes.get(i));
+                    continue;
+                }
+                int size = (int) count * elementSize(parameterTypes.get(i));
+                copy(inputs[i], (ByteBuffer) slice(buffer, offset, size));
+                addresses[i] = scratch.address() + offset;
+                offset += (int) align(size);
+            }
+            if (output instanceof Buffer) {
+                invoke(address((Buffer) output, returnType), addresses, count);
+                return;
+            }
+            invoke(scratch.address() + offset, addresses, count);
+            copyBack((ByteBuffer) slice(buffer, offset, (int) count * elementSize(returnType)), output);
+        } finally {
+            scratch.deallocate();
+        }
+    }
+
+    /**
+     * Invoke the function over columns in native memory.
+     *
+     * @param output the address of the column to store the results in
+     * @param inputs the addresses of the columns of the arguments, one for each parameter of the function
+     * @param count the number of rows
+     * @throws IllegalArgumentException if the number of input columns does not match the function
+     */
+    public void invoke(long output, long[] inputs, long count) {
+        if (inputs.length != type.getParameterTypes().size())
+            throw new IllegalArgumentException(
+                "Expected " + type.getParameterTypes().size() + " input columns, but got " + inputs.length
+            );
+        long[] arguments = new long[inputs.length + 2];
+        arguments[0] = output;
+        System.arraycopy(inputs, 0, arguments, 1, inputs.length);
+        arguments[arguments.length - 1] = count;
+        try {
+            handle.invokeExact(arguments);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    /**
+     * Retrieve the scalar signature of the function, that is invoked for each row.
+     *
+     * @return the type of the function
+     */
+    public IRFunctionType getType() {
+        return type;
+    }
+
+    /**
+     * Generate the loop wrapper of a function in the module of the function.
+     *
+     * @param function the function to be invoked for each row
+     * @return the wrapper, named after the function with the {@link #SUFFIX}
+     * @throws IllegalArgumentException if the signature of the function is not scalar
+     */
+    public static IRFunction generate(IRFunction function) {
+        IRFunctionType type = function.getFunctionType();
+        IRFunctionType batchType = batchType(type);
+        IRModule module = function.getModule();
+        String name = function.getName() + SUFFIX;
+        IRFunction batch = new IRFunction(
+            LLVMAddFunction(module.getHandle(), name, batchType.getHandle()), module, name, batchType
+        );
+
+        LLVMValueRef wrapper = batch.getHandle();
+        LLVMContextRef context = type.getContext().getHandle();
+        LLVMTypeRef i64 = LLVMInt64TypeInContext(context);
+        LLVMTypeRef returnType = type.getReturnType().getHandle();
+        List<IRType> parameterTypes = type.getParameterTypes();
+        int parameters = parameterTypes.size();
+        LLVMValueRef count = LLVMGetParam(wrapper, parameters + 1);
+
+        LLVMBasicBlockRef entry = LLVMAppendBasicBlockInContext(context, wrapper, "entry");
+        LLVMBasicBlockRef loop = LLVMAppendBasicBlockInContext(context, wrapper, "loop");
+        LLVMBasicBlockRef exit = LLVMAppendBasicBlockInContext(context, wrapper, "exit");
+        LLVMBuilderRef builder = LLVMCreateBuilderInContext(context);
+        PointerPointer<LLVMValueRef> arguments = new PointerPointer<>(Math.max(1, parameters));
+        try {
+            LLVMPositionBuilderAtEnd(builder, entry);
+            LLVMValueRef zero = LLVMConstInt(i64, 0, 0);
+            LLVMBuildCondBr(builder, LLVMBuildICmp(builder, LLVMIntEQ, count, zero, "empty"), exit, loop);
+
+            LLVMPositionBuilderAtEnd(builder, loop);
+            LLVMValueRef index = LLVMBuildPhi(builder, i64, "index");
+            for (int i = 0; i < parameters; i++) {
+                LLVMTypeRef element = parameterTypes.get(i).getHandle();
+                LLVMValueRef address = elementAddress(builder, element, LLVMGetParam(wrapper, i + 1), index);
+                arguments.put(i, LLVMBuildLoad2(builder, element, address, "argument"));
+            }
+            LLVMValueRef call = LLVMBuildCall2(
+                builder, type.getHandle(), function.getHandle(), arguments, parameters, "result"
+            );
+            LLVMSetInstructionCallConv(call, LLVMGetFunctionCallConv(function.getHandle()));
+            LLVMBuildStore(builder, call, elementAddress(builder, returnType, LLVMGetParam(wrapper, 0), index));
+            LLVMValueRef next = LLVMBuildNUWAdd(builder, index, LLVMConstInt(i64, 1, 0), "next");
+            LLVMBuildCondBr(builder, LLVMBuildICmp(builder, LLVMIntEQ, next, count, "done"), exit, loop);
+            PointerPointer<LLVMValueRef> values = new PointerPointer<>(2);
+            PointerPointer<LLVMBasicBlockRef> blocks = new PointerPointer<>(2);
+            values.put(0, zero).put(1, next);
+            blocks.put(0, entry).put(1, loop);
+            LLVMAddIncoming(index, values, blocks, 2);
+            values.close();
+            blocks.close();
+
+            LLVMPositionBuilderAtEnd(builder, exit);
+            LLVMBuildRetVoid(builder);
+        } finally {
+            arguments.close();
+            LLVMDisposeBuilder(builder);
+        }
+        return batch;
+    }
+
+    private static LLVMValueRef elementAddress(
+        LLVMBuilderRef builder, LLVMTypeRef element, LLVMValueRef column, LLVMValueRef index
+    ) {
+        PointerPointer<LLVMValueRef> indices = new PointerPointer<>(1);
+        try {
+            indices.put(0, index);
+            return LLVMBuildInBoundsGEP2(builder, element, column, indices, 1, "address");
+        } finally {
+            indices.close();
+        }
+    }
+
+    /**
+     * Bind the wrapper of a function, that has been generated by {@link #generate(IRFunction)} and compiled by the
+     * specified JIT.
+     *
+     * @param jit the JIT that has compiled the module of the function
+     * @param function the function to be invoked for each row
+     * @return a new batch invoker of the function
+     * @throws LLVMException if the wrapper is not defined
+     */
+    public static IRBatchInvoker bind(IRJit jit, IRFunction function) {
+        return bind(jit.lookup(function.getName() + SUFFIX), function.getFunctionType());
+    }
+
+    /**
+     * Bind the wrapper of a function, that has been generated by {@link #generate(IRFunction)} and compiled by the
+     * specified execution engine.
+     *
+     * @param engine the execution engine that has compiled the module of the function
+     * @param function the function to be invoked for each row
+     * @return a new batch invoker of the function
+     */
+    public static IRBatchInvoker bind(ExecutionEngine engine, IRFunction function) {
+        return bind(engine.getFunctionAddress(function.getName() + SUFFIX), function.getFunctionType());
+    }
+
+    /**
+     * Bind the wrapper of a function at the specified native address.
+     *
+     * @param address the native address of the wrapper
+     * @param type the scalar signature of the function, that the wrapper has been generated for
+     * @return a new batch invoker of the function
+     * @throws IllegalArgumentException if the signature of the function is not scalar
+     */
+    public static IRBatchInvoker bind(long address, IRFunctionType type) {
+        if (address == 0)
+            throw new IllegalArgumentException("The address of the batch wrapper is null");
+        MethodHandle handle = IRDowncall.bind(address, batchType(type))
+            .asSpreader(long[].class, type.getParameterTypes().size() + 2);
+        return new IRBatchInvoker(handle, type);
+    }
+
+    /**
+     * Create the signature of the wrapper of a function, after checking that the function is scalar.
+     */
+    private static IRFunctionType batchType(IRFunctionType type) {
+        if (type.isVariadic())
+            throw new IllegalArgumentException("Variadic functions cannot be invoked in batches");
+        elementSize(type.getReturnType());
+        for (IRType parameter : type.getParameterTypes())
+            elementSize(parameter);
+
+        LLVMContextRef context = type.getContext().getHandle();
+        int parameters = type.getParameterTypes().size();
+        PointerPointer<LLVMTypeRef> batchParameters = new PointerPointer<>(parameters + 2);
+        try {
+            LLVMTypeRef pointer = LLVMPointerTypeInContext(context, 0);
+            for (int i = 0; i <= parameters; i++)
+                batchParameters.put(i, pointer);
+            batchParameters.put(parameters + 1, LLVMInt64TypeInContext(context));
+            LLVMTypeRef batchType = LLVMFunctionType(
+                LLVMVoidTypeInContext(context), batchParameters, parameters + 2, 0
+            );
+            return (IRFunctionType) type.getContext().type(batchType);
+        } finally {
+            batchParameters.close();
+        }
+    }
+
+    /**
+     * Retrieve the number of bytes, that a value of a scalar type occupies in a column.
+     */
+    private static int elementSize(IRType type) {
+        if (type.isFloat())
+            return Float.BYTES;
+        if (type.isDouble())
+            return Double.BYTES;
+        if (type.isInteger()) {
+            switch (type.getIntegerWidth()) {
+                case 8:
+                    return Byte.BYTES;
+                case 16:
+                    return Short.BYTES;
+                case 32:
+                    return Integer.BYTES;
+                case 64:
+                    return Long.BYTES;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported type for batch invocation: kind " + type.getKind());
+    }
+
+    /**
+     * Retrieve the number of rows of a column, after checking that it matches the type of its values.
+     */
+    private static long rows(Object column, IRType type) {
+        int size = elementSize(type);
+        boolean floating = type.isFloat() || type.isDouble();
+        if (column instanceof Buffer) {
+            Buffer buffer = (Buffer) column;
+            if (!buffer.isDirect())
+                throw new IllegalArgumentException("Buffer columns must be direct");
+            if (!matches(buffer, size, floating))
+                throw new IllegalArgumentException(
+                    "Column of " + column.getClass().getSimpleName() + " does not match the type of its values"
+                );
+            if (!(buffer instanceof ByteBuffer) && order(buffer) != ByteOrder.nativeOrder())
+                throw new IllegalArgumentException("Buffer columns must be in the native byte order");
+            return buffer.remaining();
+        }
+        if (column instanceof byte[] && size == Byte.BYTES)
+            return ((byte[]) column).length;
+        if (column instanceof short[] && size == Short.BYTES)
+            return ((short[]) column).length;
+        if (column instanceof int[] && size == Integer.BYTES && !floating)
+            return ((int[]) column).length;
+        if (column instanceof long[] && size == Long.BYTES && !floating)
+            return ((long[]) column).length;
+        if (column instanceof float[] && type.isFloat())
+            return ((float[]) column).length;
+        if (column instanceof double[] && type.isDouble())
+            return ((double[]) column).length;
+        throw new IllegalArgumentException(
+            "Column of " + column.getClass().getSimpleName() + " does not match the type of its values"
+        );
+    }
+
+    private static boolean matches(Buffer buffer, int size, boolean floating) {
+        if (floating)
+            return size == Float.BYTES ? buffer instanceof FloatBuffer : buffer instanceof DoubleBuffer;
+        switch (size) {
+            case Byte.BYTES:
+                return buffer instanceof ByteBuffer;
+            case Short.BYTES:
+                return buffer instanceof ShortBuffer;
+            case Integer.BYTES:
+                return buffer instanceof IntBuffer;
+            default:
+                return buffer instanceof LongBuffer;
+        }
+    }
+
+    private static ByteOrder order(Buffer buffer) {
+        if (buffer instanceof ShortBuffer)
+            return ((ShortBuffer) buffer).order();
+        if (buffer instanceof IntBuffer)
+            return ((IntBuffer) buffer).order();
+        if (buffer instanceof LongBuffer)
+            return ((LongBuffer) buffer).order();
+        if (buffer instanceof FloatBuffer)
+            return ((FloatBuffer) buffer).order();
+        return ((DoubleBuffer) buffer).order();
+    }
+
+    /**
+     * Retrieve the native address of the current position of a direct buffer.
+     */
+    private static long address(Buffer buffer, IRType type) {
+        // the pointer of a buffer points to its start, and keeps the position of the buffer separately
+        return new Pointer(buffer).address() + (long) buffer.position() * elementSize(type);
+    }
+
+    private static void copy(Object array, ByteBuffer target) {
+        if (array instanceof byte[])
+            target.put((byte[]) array, 0, target.remaining());
+        else if (array instanceof short[])
+            target.asShortBuffer().put((short[]) array, 0, target.remaining() / Short.BYTES);
+        else if (array instanceof int[])
+            target.asIntBuffer().put((int[]) array, 0, target.remaining() / Integer.BYTES);
+        else if (array instanceof long[])
+            target.asLongBuffer().put((long[]) array, 0, target.remaining() / Long.BYTES);
+        else if (array instanceof float[])
+            target.asFloatBuffer().put((float[]) array, 0, target.remaining() / Float.BYTES);
+        else
+            target.asDoubleBuffer().put((double[]) array, 0, target.remaining() / Double.BYTES);
+    }
+
+    private static void copyBack(ByteBuffer source, Object array) {
+        if (array instanceof byte[])
+            source.get((byte[]) array);
+        else if (array instanceof short[])
+            source.asShortBuffer().get((short[]) array);
+        else if (array instanceof int[])
+            source.asIntBuffer().get((int[]) array);
+        else if (array instanceof long[])
+            source.asLongBuffer().get((long[]) array);
+        else if (array instanceof float[])
+            source.asFloatBuffer().get((float[]) array);
+        else
+            source.asDoubleBuffer().get((double[]) array);
+    }
+
+    /**
+     * Create a native ordered view of a region of a byte buffer. The result is declared as a {@link Buffer}, as
+     * the covariant return types of the buffer methods differ between Java 8 and newer runtimes.
+     */
+    private static Buffer slice(ByteBuffer buffer, int offset, int size) {
+        ByteBuffer duplicate = buffer.duplicate();
+        ((Buffer) duplicate).position(offset);
+        ((Buffer) duplicate).limit(offset + size);
+        return duplicate.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Round a column size or an address up to a multiple of 64 bytes, so that every column starts on a cache line of
+     * its own.
+     */
+    private static long align(long size) {
+        return (size + 63) & ~63L;
+    }
+
+    private static RuntimeException propagate(Throwable e) {
+        if (e instanceof RuntimeException)
+            return (RuntimeException) e;
+        if (e instanceof Error)
+            throw (Error) e;
+        return new IllegalStateException(e);
+    }
+}
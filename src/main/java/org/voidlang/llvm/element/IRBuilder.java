@@ -1,10 +1,12 @@
 package org.voidlang.llvm.element;
 
+import org.bytedeco.javacpp.BytePointer;
 import org.bytedeco.javacpp.Pointer;
 import org.bytedeco.javacpp.PointerPointer;
 import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
 import org.bytedeco.llvm.LLVM.LLVMValueRef;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import static org.bytedeco.llvm.global.LLVM.*;
@@ -21,12 +23,20 @@ import static org.bytedeco.llvm.global.LLVM.*;
  */
 
 public class IRBuilder implements Disposable {
+    private static final BytePointer EMPTY_NAME = new BytePointer("");
+
     private final LLVMBuilderRef handle;
     private final IRContext context;
 
+    private BytePointer nameBuffer = new BytePointer(64);
+
+    private boolean disposed;
+
     IRBuilder(LLVMBuilderRef handle, IRContext context) {
         this.handle = handle;
         this.context = context;
+        context.manage(this);
+        LeakDetector.track(this);
     }
 
     /**
@@ -112,7 +122,7 @@ public class IRBuilder implements Disposable {
      * @return an IRValue that represents the result of the addition operation.
      */
     public IRValue add(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildAdd(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildAdd(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     /**
@@ -132,7 +142,7 @@ public class IRBuilder implements Disposable {
      * @return an IRValue that represents the result of the addition operation.
      */
     public IRValue add(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildAdd(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildAdd(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     /**
@@ -149,7 +159,7 @@ public class IRBuilder implements Disposable {
      * @return an IRValue that represents the result of the addition operation.
      */
     public IRValue addFloat(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildFAdd(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildFAdd(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     /**
@@ -165,7 +175,7 @@ public class IRBuilder implements Disposable {
      * @return an IRValue that represents the result of the addition operation.
      */
     public IRValue addFloat(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildFAdd(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildFAdd(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     /**
@@ -187,7 +197,7 @@ public class IRBuilder implements Disposable {
      * @return an IRValue that represents the result of the addition operation.
      */
     public IRValue addNoSignedWrap(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildNSWAdd(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildNSWAdd(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     /**
@@ -208,7 +218,7 @@ public class IRBuilder implements Disposable {
      * @return an IRValue that represents the result of the addition operation.
      */
     public IRValue addNoSignedWrap(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildNSWAdd(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildNSWAdd(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     /**
@@ -230,7 +240,7 @@ public class IRBuilder implements Disposable {
      * @return an IRValue that represents the result of the addition operation.
      */
     public IRValue addNoUnsignedWrap(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildNUWAdd(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildNUWAdd(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     /**
@@ -251,152 +261,146 @@ public class IRBuilder implements Disposable {
      * @return an IRValue that represents the result of the addition operation.
      */
     public IRValue addNoUnsignedWrap(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildNUWAdd(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildNUWAdd(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue subtract(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildSub(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildSub(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue subtract(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildSub(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildSub(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue subtractFloat(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildFSub(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildFSub(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue subtractFloat(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildFSub(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildFSub(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue subtractNoSignedWrap(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildNSWSub(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildNSWSub(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue subtractNoSignedWrap(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildNSWSub(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildNSWSub(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue subtractNoUnsignedWrap(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildNUWSub(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildNUWSub(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue subtractNoUnsignedWrap(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildNUWSub(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildNUWSub(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue multiply(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildMul(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildMul(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue multiply(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildMul(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildMul(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue multiplyFloat(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildFMul(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildFMul(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue multiplyFloat(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildFMul(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildFMul(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue multiplyNoSignedWrap(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildNSWMul(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildNSWMul(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue multiplyNoSignedWrap(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildNSWMul(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildNSWMul(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue multiplyNoUnsignedWrap(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildNUWMul(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildNUWMul(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue multiplyNoUnsignedWrap(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildNUWMul(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildNUWMul(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue divideFloat(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildFDiv(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildFDiv(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue divideFloat(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildFDiv(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildFDiv(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue divideSigned(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildSDiv(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildSDiv(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue divideSigned(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildSDiv(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildSDiv(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue divideUnsigned(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildUDiv(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildUDiv(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue divideUnsigned(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildUDiv(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildUDiv(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue divideExactSigned(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildExactSDiv(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildExactSDiv(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue divideExactSigned(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildExactSDiv(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildExactSDiv(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue divideExactUnsigned(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildExactUDiv(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildExactUDiv(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue divideExactUnsigned(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildExactUDiv(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildExactUDiv(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue remainderFloat(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildFRem(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildFRem(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue remainderFloat(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildFRem(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildFRem(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue remainderSigned(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildSRem(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildSRem(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue remainderSigned(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildSRem(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildSRem(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue remainderUnsigned(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildURem(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildURem(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue remainderUnsigned(IRValue left, IRValue right) {
-        return new IRValue(LLVMBuildURem(handle, left.getHandle(), right.getHandle(), ""));
+        return new IRValue(LLVMBuildURem(handle, left.getHandle(), right.getHandle(), EMPTY_NAME));
     }
 
     public IRValue call(IRFunctionType type, IRFunction function, List<IRValue> arguments, String name) {
-        PointerPointer<Pointer> args = new PointerPointer<>(arguments.size());
-        for (int i = 0; i < arguments.size(); i++) {
-            args.put(i, arguments.get(i).getHandle());
-        }
-        LLVMValueRef res = LLVMBuildCall2(handle, type.getHandle(), function.getHandle(), args, arguments.size(), name);
+        PointerPointer<Pointer> args = PointerArena.values(arguments);
+        LLVMValueRef res = LLVMBuildCall2(handle, type.getHandle(), function.getHandle(), args, arguments.size(), name(name));
         return new IRValue(res);
     }
 
     public IRValue call(IRFunction function, List<IRValue> arguments, String name) {
-        PointerPointer<Pointer> args = new PointerPointer<>(arguments.size());
-        for (int i = 0; i < arguments.size(); i++) {
-            args.put(i, arguments.get(i).getHandle());
-        }
-        LLVMValueRef res = LLVMBuildCall2(handle, function.getType().getHandle(), function.getHandle(), args, arguments.size(), name);
+        PointerPointer<Pointer> args = PointerArena.values(arguments);
+        LLVMValueRef res = LLVMBuildCall2(handle, function.getType().getHandle(), function.getHandle(), args, arguments.size(), name(name));
         return new IRValue(res);
     }
 
@@ -405,7 +409,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue alloc(IRType type, String name) {
-        return new IRValue(LLVMBuildAlloca(handle, type.getHandle(), name));
+        return new IRValue(LLVMBuildAlloca(handle, type.getHandle(), name(name)));
     }
 
     public IRValue alloc(IRType type) {
@@ -413,7 +417,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue malloc(IRType type, String name) {
-        return new IRValue(LLVMBuildMalloc(handle, type.getHandle(), name));
+        return new IRValue(LLVMBuildMalloc(handle, type.getHandle(), name(name)));
     }
 
     public IRValue malloc(IRType type) {
@@ -425,7 +429,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue structMemberPointer(IRType type, IRValue instance, int memberIndex, String name) {
-        return new IRValue(LLVMBuildStructGEP2(handle, type.getHandle(), instance.getHandle(), memberIndex, name));
+        return new IRValue(LLVMBuildStructGEP2(handle, type.getHandle(), instance.getHandle(), memberIndex, name(name)));
     }
 
     public IRValue store(IRValue value, IRValue pointer) {
@@ -433,19 +437,19 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue load(IRType type, IRValue pointer, String name) {
-        return new IRValue(LLVMBuildLoad2(handle, type.getHandle(), pointer.getHandle(), name));
+        return new IRValue(LLVMBuildLoad2(handle, type.getHandle(), pointer.getHandle(), name(name)));
     }
 
     public IRValue insert(IRValue instance, IRValue value, int memberIndex, String name) {
-        return new IRValue(LLVMBuildInsertValue(handle, instance.getHandle(), value.getHandle(), memberIndex, name));
+        return new IRValue(LLVMBuildInsertValue(handle, instance.getHandle(), value.getHandle(), memberIndex, name(name)));
     }
 
     public IRValue extract(IRValue instance, int memberIndex, String name) {
-        return new IRValue(LLVMBuildExtractValue(handle, instance.getHandle(), memberIndex, name));
+        return new IRValue(LLVMBuildExtractValue(handle, instance.getHandle(), memberIndex, name(name)));
     }
 
     public IRValue compareInt(Comparator comparator, IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildICmp(handle, comparator.getCode(), left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildICmp(handle, comparator.getCode(), left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue compareInt(Comparator comparator, IRValue left, IRValue right) {
@@ -453,7 +457,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue compareFloat(Comparator comparator, IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildFCmp(handle, comparator.getCode(), left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildFCmp(handle, comparator.getCode(), left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue compareFloat(Comparator comparator, IRValue left, IRValue right) {
@@ -461,7 +465,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue signedRemainder(IRValue operand, IRValue divisor, String name) {
-        return new IRValue(LLVMBuildSRem(handle, operand.getHandle(), divisor.getHandle(), name));
+        return new IRValue(LLVMBuildSRem(handle, operand.getHandle(), divisor.getHandle(), name(name)));
     }
 
     public IRValue signedRemainder(IRValue operand, IRValue divisor) {
@@ -469,7 +473,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue unsignedRemainder(IRValue operand, IRValue divisor, String name) {
-        return new IRValue(LLVMBuildURem(handle, operand.getHandle(), divisor.getHandle(), name));
+        return new IRValue(LLVMBuildURem(handle, operand.getHandle(), divisor.getHandle(), name(name)));
     }
 
     public IRValue unsignedRemainder(IRValue operand, IRValue divisor) {
@@ -477,7 +481,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue floatRemainder(IRValue operand, IRValue divisor, String name) {
-        return new IRValue(LLVMBuildFRem(handle, operand.getHandle(), divisor.getHandle(), name));
+        return new IRValue(LLVMBuildFRem(handle, operand.getHandle(), divisor.getHandle(), name(name)));
     }
 
     public IRValue jump(IRBlock destination) {
@@ -489,7 +493,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue and(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildAnd(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildAnd(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue and(IRValue left, IRValue right) {
@@ -497,7 +501,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue or(IRValue left, IRValue right, String name) {
-        return new IRValue(LLVMBuildOr(handle, left.getHandle(), right.getHandle(), name));
+        return new IRValue(LLVMBuildOr(handle, left.getHandle(), right.getHandle(), name(name)));
     }
 
     public IRValue or(IRValue left, IRValue right) {
@@ -505,7 +509,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue negate(IRValue operand, String name) {
-        return new IRValue(LLVMBuildNeg(handle, operand.getHandle(), name));
+        return new IRValue(LLVMBuildNeg(handle, operand.getHandle(), name(name)));
     }
 
     public IRValue negate(IRValue operand) {
@@ -513,7 +517,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue not(IRValue operand, String name) {
-        return new IRValue(LLVMBuildNot(handle, operand.getHandle(), name));
+        return new IRValue(LLVMBuildNot(handle, operand.getHandle(), name(name)));
     }
 
     public IRValue not(IRValue operand) {
@@ -521,7 +525,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue select(IRValue condition, IRValue ifCase, IRValue elseCase, String name) {
-        return new IRValue(LLVMBuildSelect(handle, condition.getHandle(), ifCase.getHandle(), elseCase.getHandle(), name));
+        return new IRValue(LLVMBuildSelect(handle, condition.getHandle(), ifCase.getHandle(), elseCase.getHandle(), name(name)));
     }
 
     public IRValue select(IRValue condition, IRValue ifCase, IRValue elseCase) {
@@ -529,7 +533,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue signedIntToFloat(IRValue value, IRType floatType, String name) {
-        return new IRValue(LLVMBuildSIToFP(handle, value.getHandle(), floatType.getHandle(), name));
+        return new IRValue(LLVMBuildSIToFP(handle, value.getHandle(), floatType.getHandle(), name(name)));
     }
 
     public IRValue signedIntToFloat(IRValue value, IRType floatType) {
@@ -537,7 +541,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue unsignedIntToFloat(IRValue value, IRType floatType, String name) {
-        return new IRValue(LLVMBuildUIToFP(handle, value.getHandle(), floatType.getHandle(), name));
+        return new IRValue(LLVMBuildUIToFP(handle, value.getHandle(), floatType.getHandle(), name(name)));
     }
 
     public IRValue unsignedIntToFloat(IRValue value, IRType floatType) {
@@ -545,7 +549,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue floatToSignedInt(IRValue value, IRType intType, String name) {
-        return new IRValue(LLVMBuildFPToSI(handle, value.getHandle(), intType.getHandle(), name));
+        return new IRValue(LLVMBuildFPToSI(handle, value.getHandle(), intType.getHandle(), name(name)));
     }
 
     public IRValue floatToSignedInt(IRValue value, IRType intType) {
@@ -553,7 +557,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue floatToUnsignedInt(IRValue value, IRType intType, String name) {
-        return new IRValue(LLVMBuildFPToUI(handle, value.getHandle(), intType.getHandle(), name));
+        return new IRValue(LLVMBuildFPToUI(handle, value.getHandle(), intType.getHandle(), name(name)));
     }
 
     public IRValue floatToUnsignedInt(IRValue value, IRType intType) {
@@ -561,7 +565,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue truncate(IRValue value, IRType type, String name) {
-        return new IRValue(LLVMBuildTrunc(handle, value.getHandle(), type.getHandle(), name));
+        return new IRValue(LLVMBuildTrunc(handle, value.getHandle(), type.getHandle(), name(name)));
     }
 
     public IRValue truncate(IRValue value, IRType type) {
@@ -569,7 +573,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue zeroExtend(IRValue value, IRType type, String name) {
-        return new IRValue(LLVMBuildZExt(handle, value.getHandle(), type.getHandle(), name));
+        return new IRValue(LLVMBuildZExt(handle, value.getHandle(), type.getHandle(), name(name)));
     }
 
     public IRValue zeroExtend(IRValue value, IRType type) {
@@ -577,7 +581,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue signExtend(IRValue value, IRType type, String name) {
-        return new IRValue(LLVMBuildSExt(handle, value.getHandle(), type.getHandle(), name));
+        return new IRValue(LLVMBuildSExt(handle, value.getHandle(), type.getHandle(), name(name)));
     }
 
     public IRValue signExtend(IRValue value, IRType type) {
@@ -585,7 +589,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue floatExtend(IRValue value, IRType type, String name) {
-        return new IRValue(LLVMBuildFPExt(handle, value.getHandle(), type.getHandle(), name));
+        return new IRValue(LLVMBuildFPExt(handle, value.getHandle(), type.getHandle(), name(name)));
     }
 
     public IRValue floatExtend(IRValue value, IRType type) {
@@ -593,7 +597,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue floatTruncate(IRValue value, IRType type, String name) {
-        return new IRValue(LLVMBuildFPTrunc(handle, value.getHandle(), type.getHandle(), name));
+        return new IRValue(LLVMBuildFPTrunc(handle, value.getHandle(), type.getHandle(), name(name)));
     }
 
     public IRValue floatTruncate(IRValue value, IRType type) {
@@ -601,7 +605,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue pointerCast(IRValue value, IRType type, String name) {
-        return new IRValue(LLVMBuildPointerCast(handle, value.getHandle(), type.getHandle(), name));
+        return new IRValue(LLVMBuildPointerCast(handle, value.getHandle(), type.getHandle(), name(name)));
     }
 
     public IRValue pointerCast(IRValue value, IRType type) {
@@ -609,7 +613,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue intCast(IRValue value, IRType type, String name) {
-        return new IRValue(LLVMBuildIntCast(handle, value.getHandle(), type.getHandle(), name));
+        return new IRValue(LLVMBuildIntCast(handle, value.getHandle(), type.getHandle(), name(name)));
     }
 
     public IRValue intCast(IRValue value, IRType type) {
@@ -617,7 +621,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue intCast(IRValue value, IRType type, boolean isSigned, String name) {
-        return new IRValue(LLVMBuildIntCast2(handle, value.getHandle(), type.getHandle(), isSigned ? 1 : 0, name));
+        return new IRValue(LLVMBuildIntCast2(handle, value.getHandle(), type.getHandle(), isSigned ? 1 : 0, name(name)));
     }
 
     public IRValue intCast(IRValue value, IRType type, boolean isSigned) {
@@ -625,7 +629,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue floatCast(IRValue value, IRType type, String name) {
-        return new IRValue(LLVMBuildFPCast(handle, value.getHandle(), type.getHandle(), name));
+        return new IRValue(LLVMBuildFPCast(handle, value.getHandle(), type.getHandle(), name(name)));
     }
 
     public IRValue floatCast(IRValue value, IRType type) {
@@ -633,7 +637,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue bitCast(IRValue value, IRType type, String name) {
-        return new IRValue(LLVMBuildBitCast(handle, value.getHandle(), type.getHandle(), name));
+        return new IRValue(LLVMBuildBitCast(handle, value.getHandle(), type.getHandle(), name(name)));
     }
 
     public IRValue bitCast(IRValue value, IRType type) {
@@ -641,7 +645,7 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue intToPointerCast(IRValue value, IRType type, String name) {
-        return new IRValue(LLVMBuildIntToPtr(handle, value.getHandle(), type.getHandle(), name));
+        return new IRValue(LLVMBuildIntToPtr(handle, value.getHandle(), type.getHandle(), name(name)));
     }
 
     public IRValue intToPointerCast(IRValue value, IRType type) {
@@ -649,16 +653,42 @@ public class IRBuilder implements Disposable {
     }
 
     public IRValue pointerToIntCast(IRValue value, IRType type, String name) {
-        return new IRValue(LLVMBuildPtrToInt(handle, value.getHandle(), type.getHandle(), name));
+        return new IRValue(LLVMBuildPtrToInt(handle, value.getHandle(), type.getHandle(), name(name)));
     }
 
     public IRValue pointerToIntCast(IRValue value, IRType type) {
         return pointerToIntCast(value, type, "");
     }
 
+    /**
+     * Encode the name of a value to a native string. Empty names, and every name of a context that discards value
+     * names, are passed as a shared empty string without encoding. Other names are encoded to a buffer, that is
+     * reused by the next call, as LLVM copies the names of the values it creates.
+     *
+     * @param name the name of the value
+     * @return the native string of the name
+     */
+    private BytePointer name(String name) {
+        if (name.isEmpty() || context.isDiscardingValueNames())
+            return EMPTY_NAME;
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBuffer.capacity() <= bytes.length) {
+            long capacity = Math.max(bytes.length + 1, nameBuffer.capacity() * 2);
+            nameBuffer.close();
+            nameBuffer = new BytePointer(capacity);
+        }
+        return nameBuffer.put(bytes).put(bytes.length, (byte) 0);
+    }
+
     @Override
     public void dispose() {
+        if (disposed)
+            return;
+        disposed = true;
+        context.forget(this);
+        LeakDetector.untrack(this);
         LLVMDisposeBuilder(handle);
+        nameBuffer.close();
     }
 
     public LLVMBuilderRef getHandle() {
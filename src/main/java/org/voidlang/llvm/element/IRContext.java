@@ -1,14 +1,55 @@
 package org.voidlang.llvm.element;
 
+import org.bytedeco.javacpp.PointerPointer;
 import org.bytedeco.llvm.LLVM.LLVMContextRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.bytedeco.llvm.global.LLVM.*;
 
+/**
+ * Represents a handle to an LLVM context, which owns the types and constants of the modules created in it.
+ * <br>
+ * Each context interns the wrappers of its types, so the same {@link IRType}, {@link IRStruct} or
+ * {@link IRFunctionType} instance is returned for the same LLVM type. Types can therefore be compared by identity,
+ * and used as the keys of hash maps. Like the LLVM context itself, the type table is not thread safe, except for
+ * the one of the global context.
+ * <br>
+ * Modules, builders and execution engines created in the context are disposed together with the context, so a
+ * context can be used as a resource scope in a try-with-resources statement.
+ * <br>
+ * The native memory held by the context is estimated from the sizes of its modules and types, see
+ * {@link #measure()} and {@link #getEstimatedSize()}.
+ */
 public class IRContext implements Disposable {
+    private static final Map<Long, IRContext> contexts = new ConcurrentHashMap<>();
+
+    private static final IRContext GLOBAL = of(LLVMGetGlobalContext());
+
+    /**
+     * The estimated number of native bytes, that an interned type occupies in the context.
+     */
+    private static final long TYPE_SIZE = 48;
+
     private final LLVMContextRef handle;
 
+    private final HandleTable<IRType> types = new HandleTable<>();
+    private final DisposableScope resources = new DisposableScope();
+
+    private final AtomicInteger createdModules = new AtomicInteger();
+
+    private boolean discardValueNames;
+    private boolean disposed;
+
     IRContext(LLVMContextRef handle) {
         this.handle = handle;
+        this.discardValueNames = LLVMContextShouldDiscardValueNames(handle) != 0;
     }
 
     public LLVMContextRef getHandle() {
@@ -16,19 +57,225 @@ public class IRContext implements Disposable {
     }
 
     public boolean isGlobal() {
-        return handle == global().handle;
+        return this == GLOBAL;
+    }
+
+    /**
+     * Set whether the names of local values, such as instructions and arguments, should be discarded. In this
+     * nameless mode, the {@link IRBuilder}s of the context skip encoding the names that they are given, and LLVM
+     * does not store them either. The names of global values, such as functions, are always kept.
+     * <br>
+     * Production builds should discard the names, as they are only useful for reading the IR while debugging.
+     *
+     * @param discard true to discard the names of local values, false to keep them
+     */
+    public void setDiscardValueNames(boolean discard) {
+        LLVMContextSetDiscardValueNames(handle, discard ? 1 : 0);
+        discardValueNames = discard;
+    }
+
+    public boolean isDiscardingValueNames() {
+        return discardValueNames;
+    }
+
+    /**
+     * Retrieve the canonical wrapper of an LLVM type, that belongs to this context.
+     *
+     * @param handle the handle of the type
+     * @return the interned wrapper of the type
+     */
+    IRType type(LLVMTypeRef handle) {
+        if (this == GLOBAL) {
+            // the global context is shared by every thread
+            synchronized (types) {
+                return intern(handle);
+            }
+        }
+        return intern(handle);
+    }
+
+    private IRType intern(LLVMTypeRef handle) {
+        long address = handle.address();
+        IRType type = types.get(address);
+        if (type == null) {
+            type = wrap(handle);
+            types.put(address, type);
+        }
+        return type;
+    }
+
+    private IRType wrap(LLVMTypeRef handle) {
+        switch (LLVMGetTypeKind(handle)) {
+            case LLVMStructTypeKind:
+                return new IRStruct(handle, this);
+            case LLVMFunctionTypeKind:
+                int parameterLength = LLVMCountParamTypes(handle);
+                PointerPointer<LLVMTypeRef> parameters = new PointerPointer<>(parameterLength);
+                LLVMGetParamTypes(handle, parameters);
+                List<IRType> parameterTypes = new ArrayList<>(parameterLength);
+                for (int i = 0; i < parameterLength; i++)
+                    parameterTypes.add(intern(parameters.get(LLVMTypeRef.class, i)));
+                parameters.close();
+                return new IRFunctionType(
+                    handle, this, intern(LLVMGetReturnType(handle)),
+                    Collections.unmodifiableList(parameterTypes), LLVMIsFunctionVarArg(handle) != 0
+                );
+            default:
+                return new IRType(handle, this);
+        }
+    }
+
+    /**
+     * Measure every module of the context, including the ones compiled by its execution engines, and update the
+     * estimate of the native memory held by the context. Like any other operation on the context, it must not run
+     * concurrently with changes to its modules.
+     *
+     * @return the estimated size of the context in bytes
+     */
+    public long measure() {
+        for (IRModule module : resources.list(IRModule.class))
+            module.measure();
+        return getEstimatedSize();
+    }
+
+    /**
+     * Retrieve the estimated native memory usage of the context, as of the last measurement of its modules. The
+     * estimate covers the modules that are still owned by the context or by its execution engines, and the types
+     * of the context. This method is safe to call from any thread.
+     *
+     * @return the estimated size of the context in bytes
+     */
+    public long getEstimatedSize() {
+        long size = getTypesSize();
+        for (IRModule module : resources.list(IRModule.class))
+            size += module.getEstimatedSize();
+        for (ExecutionEngine engine : resources.list(ExecutionEngine.class))
+            size += engine.getEstimatedSize();
+        return size;
     }
 
+    /**
+     * Tie the lifetime of a resource to this context, so that the resource is disposed together with the context.
+     * Modules, builders and execution engines of the context are managed automatically.
+     *
+     * @param resource the resource to be disposed together with the context
+     * @param <T> the type of the resource
+     * @return the managed resource
+     * @throws IllegalStateException if the context has already been disposed
+     */
+    public <T extends Disposable> T manage(T resource) {
+        resources.add(resource);
+        if (resource instanceof IRModule)
+            createdModules.incrementAndGet();
+        return resource;
+    }
+
+    /**
+     * Retrieve the estimated native memory usage of the types, that have been interned by the context. The types
+     * stay in the context, even after every module that used them is disposed.
+     */
+    long getTypesSize() {
+        return types.size() * TYPE_SIZE;
+    }
+
+    /**
+     * Retrieve the number of modules, that have been created in the context since it was created.
+     */
+    int getCreatedModules() {
+        return createdModules.get();
+    }
+
+    /**
+     * Dispose the resources of the context, such as its modules and builders, but keep the context itself, with
+     * its types and constants, so that it can be reused.
+     */
+    void reset() {
+        resources.clear();
+    }
+
+    boolean isDisposed() {
+        return disposed;
+    }
+
+    /**
+     * Stop managing a resource, because it has been disposed, or its ownership has been transferred.
+     *
+     * @param resource the resource that is no longer managed by the context
+     */
+    void forget(Disposable resource) {
+        resources.remove(resource);
+    }
+
+    /**
+     * Dispose the context, and every resource created under it, in the reverse order of their creation.
+     */
     @Override
     public void dispose() {
-        LLVMContextDispose(handle);
+        if (disposed)
+            return;
+        disposed = true;
+        try {
+            disposeResources();
+        } finally {
+            release();
+            LLVMContextDispose(handle);
+            LeakDetector.untrack(this);
+        }
+    }
+
+    /**
+     * Dispose the resources that have been created under the context, without disposing the context itself.
+     */
+    void disposeResources() {
+        resources.dispose();
+    }
+
+    /**
+     * Forget the wrapper of this context and its types, once the native context is about to be freed. The address
+     * of the context may be reused by a new context afterward.
+     */
+    void release() {
+        contexts.remove(handle.address(), this);
+        types.clear();
     }
 
     public static IRContext create() {
-        return new IRContext(LLVMContextCreate());
+        IRContext context = of(LLVMContextCreate());
+        LeakDetector.track(context);
+        return context;
     }
 
     public static IRContext global() {
-        return new IRContext(LLVMGetGlobalContext());
+        return GLOBAL;
+    }
+
+    /**
+     * Retrieve the wrapper of an LLVM context. The same wrapper is returned for the same context, until the context
+     * is disposed.
+     *
+     * @param handle the handle of the context
+     * @return the wrapper of the context
+     */
+    static IRContext of(LLVMContextRef handle) {
+        return contexts.computeIfAbsent(handle.address(), address -> new IRContext(handle));
+    }
+
+    /**
+     * Retrieve the wrapper of an LLVM context, that has been created or wrapped already. Unlike
+     * {@link #of(LLVMContextRef)}, it never registers a new wrapper, which would never be removed for contexts that
+     * are not disposed through a wrapper.
+     *
+     * @param handle the handle of the context
+     * @return the wrapper of the context
+     * @throws IllegalStateException if the context has no wrapper
+     */
+    static IRContext lookup(LLVMContextRef handle) {
+        IRContext context = contexts.get(handle.address());
+        if (context == null) {
+            throw new IllegalStateException(
+                "The context has not been created by an IRContext, or it has been disposed"
+            );
+        }
+        return context;
     }
 }
@@ -0,0 +1,261 @@
+package org.voidlang.llvm.element;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Represents a bounded pool of {@link IRContext}s, that worker threads check out, build their modules in, and
+ * return, instead of creating and disposing a context for every job.
+ * <br>
+ * A checked out context is used by a single thread at a time, like any other context. When the context is returned,
+ * the resources that it still owns, such as its modules and builders, are disposed, but its types and uniqued
+ * constants are kept for the next job. As those tables only grow, a context is disposed and replaced with a new one,
+ * after it has been used for a number of modules, or once its estimated size exceeds a threshold.
+ * <br>
+ * Modules of a pooled context must not outlive the checkout, therefore they should be emitted to object files or
+ * bitcode before the context is returned. Contexts of the pool cannot be passed to an {@link IRJit}, which requires
+ * an {@link IRThreadSafeContext}.
+ */
+public class IRContextPool implements Disposable {
+    private final int maxSize;
+    private final int maxModules;
+    private final long maxBytes;
+
+    private final Semaphore permits;
+    private final Deque<PooledContext> idle = new ArrayDeque<>();
+    private final Map<IRContext, PooledContext> checkedOut = new ConcurrentHashMap<>();
+
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong recycledCount = new AtomicLong();
+
+    private boolean disposed;
+
+    /**
+     * Create a pool of contexts. Contexts are created lazily, as they are checked out.
+     *
+     * @param maxSize the maximum number of contexts, that can be checked out at the same time
+     * @param maxModules the number of modules, after which a context is replaced with a new one
+     * @param maxBytes the estimated size in bytes, above which a context is replaced with a new one, or
+     *                 {@link Long#MAX_VALUE} to skip measuring the modules when a context is returned
+     */
+    public IRContextPool(int maxSize, int maxModules, long maxBytes) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("The size of the pool must be positive");
+        if (maxModules < 1)
+            throw new IllegalArgumentException("The number of modules per context must be positive");
+        this.maxSize = maxSize;
+        this.maxModules = maxModules;
+        this.maxBytes = maxBytes;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Create a pool of one context per available processor, that are replaced after 1000 modules or 64 MiB.
+     */
+    public IRContextPool() {
+        this(Runtime.getRuntime().availableProcessors(), 1000, 64L * 1024 * 1024);
+    }
+
+    /**
+     * Check out a context of the pool, waiting until one is returned, if every context is checked out.
+     *
+     * @return a context, that is owned by the calling thread until it is released
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws IllegalStateException if the pool has been disposed
+     */
+    public IRContext acquire() throws InterruptedException {
+        permits.acquire();
+        return checkOut();
+    }
+
+    /**
+     * Check out a context of the pool, waiting at most the specified time, if every context is checked out.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return a context, that is owned by the calling thread until it is released, or null if the timeout elapsed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws IllegalStateException if the pool has been disposed
+     */
+    public IRContext tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!permits.tryAcquire(timeout, unit))
+            return null;
+        return checkOut();
+    }
+
+    private IRContext checkOut() {
+        PooledContext pooled;
+        synchronized (this) {
+            if (disposed) {
+                permits.release();
+                throw new IllegalStateException("The context pool has been disposed");
+            }
+            pooled = idle.pollLast();
+        }
+        if (pooled == null) {
+            try {
+                pooled = new PooledContext(IRContext.create());
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+            createdCount.incrementAndGet();
+        }
+        checkedOut.put(pooled.context, pooled);
+        return pooled.context;
+    }
+
+    /**
+     * Return a context to the pool. The resources that are still owned by the context are disposed, and the
+     * context is either kept for the next checkout, or disposed if it has reached its limits.
+     *
+     * @param context the context that has been checked out of this pool
+     * @throws IllegalArgumentException if the context is not checked out of this pool
+     */
+    public void release(IRContext context) {
+        PooledContext pooled = checkedOut.remove(context);
+        if (pooled == null)
+            throw new IllegalArgumentException("The context is not checked out of this pool");
+        try {
+            if (context.isDisposed())
+                return;
+            if (maxBytes != Long.MAX_VALUE)
+                pooled.moduleBytes += context.measure() - context.getTypesSize();
+            boolean exhausted = true;
+            try {
+                context.reset();
+                // the next job should not inherit the settings of the previous one
+                if (context.isDiscardingValueNames() != pooled.discardValueNames)
+                    context.setDiscardValueNames(pooled.discardValueNames);
+                exhausted = isExhausted(pooled);
+            } finally {
+                boolean kept = false;
+                synchronized (this) {
+                    if (!exhausted && !disposed) {
+                        idle.addLast(pooled);
+                        kept = true;
+                    }
+                }
+                if (!kept) {
+                    if (exhausted)
+                        recycledCount.incrementAndGet();
+                    context.dispose();
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Check out a context, run a task in it, and return the context to the pool, even if the task fails.
+     *
+     * @param task the task that builds and emits modules in the context
+     * @param <T> the type of the result of the task
+     * @return the result of the task
+     * @throws InterruptedException if the thread is interrupted while waiting for a context
+     */
+    public <T> T apply(Function<IRContext, T> task) throws InterruptedException {
+        IRContext context = acquire();
+        try {
+            return task.apply(context);
+        } finally {
+            release(context);
+        }
+    }
+
+    /**
+     * Check whether a context has been used for too many modules, or its tables have grown too large.
+     */
+    private boolean isExhausted(PooledContext pooled) {
+        if (pooled.context.getCreatedModules() >= maxModules)
+            return true;
+        return pooled.context.getTypesSize() + pooled.moduleBytes >= maxBytes;
+    }
+
+    /**
+     * Dispose the idle contexts of the pool. The contexts that are still checked out are disposed, as soon as they
+     * are released.
+     */
+    @Override
+    public void dispose() {
+        Deque<PooledContext> contexts;
+        synchronized (this) {
+            if (disposed)
+                return;
+            disposed = true;
+            contexts = new ArrayDeque<>(idle);
+            idle.clear();
+        }
+        for (PooledContext pooled : contexts)
+            pooled.context.dispose();
+    }
+
+    /**
+     * Retrieve the number of contexts, that are currently kept in the pool without being checked out.
+     *
+     * @return the number of idle contexts
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Retrieve the number of contexts, that are currently checked out of the pool.
+     *
+     * @return the number of contexts in use
+     */
+    public int getActiveCount() {
+        return checkedOut.size();
+    }
+
+    /**
+     * Retrieve the number of contexts, that have been created by the pool so far.
+     *
+     * @return the number of created contexts
+     */
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    /**
+     * Retrieve the number of contexts, that have been disposed because they reached their limits.
+     *
+     * @return the number of recycled contexts
+     */
+    public long getRecycledCount() {
+        return recycledCount.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getMaxModules() {
+        return maxModules;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Represents a context of the pool, with the estimated size of the modules that have been built in it.
+     */
+    private static final class PooledContext {
+        private final IRContext context;
+        private final boolean discardValueNames;
+        private long moduleBytes;
+
+        private PooledContext(IRContext context) {
+            this.context = context;
+            this.discardValueNames = context.isDiscardingValueNames();
+        }
+    }
+}
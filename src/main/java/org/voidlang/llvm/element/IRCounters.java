@@ -0,0 +1,283 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.javacpp.SizeTPointer;
+import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMContextRef;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Represents the execution counters, that have been inserted into the functions of a module by
+ * {@link IRModule#instrument(boolean)}.
+ * <br>
+ * The counters are stored in a single global array of 64-bit integers, which is defined by the module itself. Once
+ * the module is compiled, the array lives in the data section of the JIT'd code, and {@link #attach(IRJit)} maps a
+ * direct {@link LongBuffer} over it. Reading the buffer is a plain memory read, so polling the counters takes no
+ * JNI transitions and no locks.
+ * <br>
+ * Each function has a slot, that counts the calls of the function. If the blocks are counted as well, each block
+ * has a slot of its own, and the slot of a function is the slot of its entry block. The slots of the blocks of a
+ * function are consecutive, in the order of the blocks in the function.
+ * <br>
+ * The counters are incremented without synchronization, as atomic increments would serialize the threads calling
+ * the same function. Concurrent calls may therefore lose a few counts, so the counters are approximate.
+ */
+public final class IRCounters {
+    private static final AtomicLong nextId = new AtomicLong(1);
+
+    private final String symbol;
+    private final List<String> functions;
+    private final Map<String, Integer> functionSlots;
+    private final Map<String, Integer> blockCounts;
+    private final Map<String, Long> checksums;
+    private final int slotCount;
+
+    private volatile LongBuffer counters;
+
+    private IRCounters(
+        String symbol, List<String> functions, Map<String, Integer> functionSlots, Map<String, Integer> blockCounts,
+        Map<String, Long> checksums, int slotCount
+    ) {
+        this.symbol = symbol;
+        this.functions = functions;
+        this.functionSlots = functionSlots;
+        this.blockCounts = blockCounts;
+        this.checksums = checksums;
+        this.slotCount = slotCount;
+    }
+
+    /**
+     * Map the counters over the array, that has been compiled by the specified JIT. Looking up the array triggers
+     * the compilation of the module, if it has not been compiled yet.
+     * <br>
+     * The buffer is freed together with the JIT, therefore the counters must not be read after the JIT is disposed.
+     *
+     * @param jit the JIT that the instrumented module has been added to
+     * @return a read-only buffer of the counters, indexed by their slots
+     * @throws LLVMException if the module could not be compiled
+     */
+    public LongBuffer attach(IRJit jit) {
+        LongBuffer buffer = NativePointers.view(jit.lookup(symbol), (long) slotCount * Long.BYTES).asLongBuffer();
+        counters = buffer;
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Retrieve the buffer of the counters, that has been mapped by {@link #attach(IRJit)}.
+     *
+     * @return a read-only buffer of the counters, indexed by their slots
+     * @throws IllegalStateException if the counters have not been attached yet
+     */
+    public LongBuffer getCounters() {
+        return buffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * Retrieve the number of calls of a function, that have been counted so far.
+     *
+     * @param function the name of the function
+     * @return the number of calls of the function
+     * @throws IllegalArgumentException if the function has not been instrumented
+     * @throws IllegalStateException if the counters have not been attached yet
+     */
+    public long getCount(String function) {
+        return buffer().get(getSlot(function));
+    }
+
+    /**
+     * Copy every counter into a new array. The copy is a single bulk read of the native memory.
+     *
+     * @return the current values of the counters, indexed by their slots
+     * @throws IllegalStateException if the counters have not been attached yet
+     */
+    public long[] snapshot() {
+        long[] values = new long[slotCount];
+        buffer().duplicate().get(values);
+        return values;
+    }
+
+    /**
+     * Set every counter to zero. Calls that are running concurrently may still store their old counts afterward.
+     *
+     * @throws IllegalStateException if the counters have not been attached yet
+     */
+    public void reset() {
+        LongBuffer buffer = buffer();
+        for (int i = 0; i < slotCount; i++)
+            buffer.put(i, 0);
+    }
+
+    /**
+     * Retrieve the slot of the counter of a function.
+     *
+     * @param function the name of the function
+     * @return the index of the counter of the function
+     * @throws IllegalArgumentException if the function has not been instrumented
+     */
+    public int getSlot(String function) {
+        Integer slot = functionSlots.get(function);
+        if (slot == null)
+            throw new IllegalArgumentException("Function " + function + " has not been instrumented");
+        return slot;
+    }
+
+    /**
+     * Retrieve the number of blocks of a function, that have counters of their own.
+     *
+     * @param function the name of the function
+     * @return the number of block counters of the function, or zero if the blocks are not counted
+     * @throws IllegalArgumentException if the function has not been instrumented
+     */
+    public int getBlockCount(String function) {
+        Integer count = blockCounts.get(function);
+        if (count == null)
+            throw new IllegalArgumentException("Function " + function + " has not been instrumented");
+        return count;
+    }
+
+    /**
+     * Retrieve the checksum of the control flow graph of a function, as it was before it has been instrumented.
+     */
+    long getChecksum(String function) {
+        getSlot(function);
+        return checksums.get(function);
+    }
+
+    /**
+     * Retrieve the names of the instrumented functions, in the order of their slots.
+     *
+     * @return an unmodifiable list of the function names
+     */
+    public List<String> getFunctions() {
+        return functions;
+    }
+
+    /**
+     * Retrieve the number of counters in the array.
+     *
+     * @return the number of slots
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Retrieve the name of the global array of the counters.
+     *
+     * @return the symbol name of the counters
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    private LongBuffer buffer() {
+        LongBuffer buffer = counters;
+        if (buffer == null)
+            throw new IllegalStateException("The counters have not been attached to a JIT yet");
+        return buffer;
+    }
+
+    /**
+     * Insert counters into the function definitions of a module.
+     *
+     * @param module the module to be instrumented
+     * @param blocks whether each block should be counted, not only the entry of the functions
+     * @return the layout of the counters
+     */
+    static IRCounters instrument(IRModule module, boolean blocks) {
+        LLVMModuleRef handle = module.getHandle();
+        LLVMContextRef context = LLVMGetModuleContext(handle);
+        LLVMTypeRef i64 = LLVMInt64TypeInContext(context);
+        LLVMTypeRef i32 = LLVMInt32TypeInContext(context);
+
+        // assign the slots first, as the size of the array is part of its type
+        List<LLVMValueRef> definitions = new ArrayList<>();
+        List<String> functions = new ArrayList<>();
+        Map<String, Integer> functionSlots = new HashMap<>();
+        Map<String, Integer> blockCounts = new HashMap<>();
+        Map<String, Long> checksums = new HashMap<>();
+        int slots = 0;
+        for (LLVMValueRef function = LLVMGetFirstFunction(handle); function != null && !function.isNull();
+             function = LLVMGetNextFunction(function)) {
+            if (LLVMIsDeclaration(function) != 0)
+                continue;
+            String name = LLVMGetValueName2(function, new SizeTPointer(1)).getString(StandardCharsets.UTF_8);
+            int count = blocks ? LLVMCountBasicBlocks(function) : 0;
+            definitions.add(function);
+            functions.add(name);
+            functionSlots.put(name, slots);
+            blockCounts.put(name, count);
+            checksums.put(name, IRProfile.checksum(function));
+            slots += Math.max(1, count);
+        }
+
+        String symbol = "__counters." + nextId.getAndIncrement() + "." + module.getName();
+        LLVMTypeRef arrayType = LLVMArrayType(i64, Math.max(1, slots));
+        LLVMValueRef array = LLVMAddGlobal(handle, arrayType, symbol);
+        LLVMSetInitializer(array, LLVMConstNull(arrayType));
+        // the counters of different threads should not share cache lines with unrelated data
+        LLVMSetAlignment(array, 64);
+
+        LLVMBuilderRef builder = LLVMCreateBuilderInContext(context);
+        PointerPointer<LLVMValueRef> indices = new PointerPointer<>(2);
+        indices.put(0, LLVMConstInt(i32, 0, 0));
+        try {
+            int slot = 0;
+            for (LLVMValueRef function : definitions) {
+                LLVMBasicBlockRef block = blocks ? LLVMGetFirstBasicBlock(function) : LLVMGetEntryBasicBlock(function);
+                do {
+                    indices.put(1, LLVMConstInt(i32, slot++, 0));
+                    increment(builder, i64, block, LLVMConstInBoundsGEP2(arrayType, array, indices, 2));
+                    block = blocks ? LLVMGetNextBasicBlock(block) : null;
+                } while (block != null && !block.isNull());
+            }
+        } finally {
+            LLVMDisposeBuilder(builder);
+        }
+        return new IRCounters(
+            symbol, Collections.unmodifiableList(functions), functionSlots, blockCounts, checksums, slots
+        );
+    }
+
+    /**
+     * Insert an increment of a counter at the start of a block, after its phi nodes and exception handling pads.
+     */
+    private static void increment(
+        LLVMBuilderRef builder, LLVMTypeRef i64, LLVMBasicBlockRef block, LLVMValueRef counter
+    ) {
+        LLVMValueRef instruction = LLVMGetFirstInstruction(block);
+        while (instruction != null && !instruction.isNull() && LLVMGetInstructionOpcode(instruction) == LLVMPHI)
+            instruction = LLVMGetNextInstruction(instruction);
+        if (instruction == null || instruction.isNull())
+            return;
+        switch (LLVMGetInstructionOpcode(instruction)) {
+            case LLVMCatchSwitch:
+                // a catch switch must be the only instruction of its block besides the phi nodes
+                return;
+            case LLVMLandingPad:
+            case LLVMCatchPad:
+            case LLVMCleanupPad:
+                instruction = LLVMGetNextInstruction(instruction);
+                break;
+            default:
+                break;
+        }
+        LLVMPositionBuilderBefore(builder, instruction);
+        LLVMValueRef count = LLVMBuildLoad2(builder, i64, counter, "count");
+        LLVMBuildStore(builder, LLVMBuildAdd(builder, count, LLVMConstInt(i64, 1, 0), "count.next"), counter);
+    }
+}
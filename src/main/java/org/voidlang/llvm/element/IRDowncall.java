@@ -0,0 +1,166 @@
+package org.voidlang.llvm.element;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+/**
+ * Binds native functions, such as the functions compiled by an {@link IRJit}, to {@link MethodHandle}s whose
+ * type is derived from the {@link IRFunctionType} of the function.
+ * <br>
+ * On Java 22 and newer, the multi-release variant of this class creates Foreign Function &amp; Memory API downcall
+ * handles, which the JIT compiler of the JVM can inline into the caller. On older runtimes the handles fall back
+ * to an {@link IRFunctionInvoker}, which makes them considerably slower, and serializes concurrent calls.
+ * <br>
+ * LLVM types are mapped to Java types as follows: {@code i1} to boolean, {@code i8} to byte, {@code i16} to short,
+ * {@code i32} to int, {@code i64} to long, {@code float} to float, {@code double} to double, and pointers to long
+ * addresses.
+ */
+public final class IRDowncall {
+    private static final MethodHandle INVOKE;
+
+    static {
+        try {
+            INVOKE = MethodHandles.lookup().findStatic(IRDowncall.class, "invoke",
+                MethodType.methodType(Object.class, IRFunctionInvoker.class, Object[].class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private IRDowncall() {
+    }
+
+    /**
+     * Create a method handle, that calls the native function at the specified address.
+     *
+     * @param address the native address of the function
+     * @param type the LLVM signature of the function
+     * @return a new method handle for the function
+     */
+    public static MethodHandle bind(long address, IRFunctionType type) {
+        List<IRType> parameterTypes = type.getParameterTypes();
+        Class<?>[] parameters = new Class<?>[parameterTypes.size()];
+        for (int i = 0; i < parameters.length; i++)
+            parameters[i] = toJavaType(parameterTypes.get(i));
+
+        IRFunctionInvoker invoker = IRFunctionInvoker.create(type, address);
+        // the invoker is only reachable through the handle, so it cannot be disposed, and its buffers are freed
+        // by the garbage collector together with the handle instead
+        LeakDetector.untrack(invoker);
+        return INVOKE.bindTo(invoker)
+            .asCollector(Object[].class, parameters.length)
+            .asType(MethodType.methodType(toJavaType(type.getReturnType()), parameters));
+    }
+
+    /**
+     * Create a method handle, that calls the native function at the specified address. The function must not
+     * block and must not call back into Java, which allows the downcall to skip the thread state transitions
+     * of the JVM on runtimes that support it.
+     *
+     * @param address the native address of the function
+     * @param type the LLVM signature of the function
+     * @return a new method handle for the function
+     */
+    public static MethodHandle bindCritical(long address, IRFunctionType type) {
+        return bind(address, type);
+    }
+
+    /**
+     * Create a method handle, that calls a function compiled by the specified JIT.
+     *
+     * @param jit the JIT that defines the function
+     * @param name the name of the function
+     * @param type the LLVM signature of the function
+     * @return a new method handle for the function
+     */
+    public static MethodHandle bind(IRJit jit, String name, IRFunctionType type) {
+        return bind(jit.lookup(name), type);
+    }
+
+    /**
+     * Indicate, whether the method handles are Foreign Function &amp; Memory API downcall handles.
+     *
+     * @return true if the handles call the functions directly, false if they use libffi
+     */
+    public static boolean isForeignLinker() {
+        return false;
+    }
+
+    private static Object invoke(IRFunctionInvoker invoker, Object[] arguments) {
+        List<IRType> parameterTypes = invoker.getType().getParameterTypes();
+        IRType returnType = invoker.getType().getReturnType();
+        // the invoker reuses its native buffers, therefore the calls must not overlap
+        synchronized (invoker) {
+            for (int i = 0; i < arguments.length; i++) {
+                IRType type = parameterTypes.get(i);
+                Object argument = arguments[i];
+                if (type.isFloat())
+                    invoker.setFloat(i, (Float) argument);
+                else if (type.isDouble())
+                    invoker.setDouble(i, (Double) argument);
+                else if (type.isPointer())
+                    invoker.setPointer(i, (Long) argument);
+                else if (type.getIntegerWidth() == 1)
+                    invoker.setBoolean(i, (Boolean) argument);
+                else if (type.getIntegerWidth() == 8)
+                    invoker.setByte(i, (Byte) argument);
+                else if (type.getIntegerWidth() == 16)
+                    invoker.setShort(i, (Short) argument);
+                else if (type.getIntegerWidth() == 32)
+                    invoker.setInt(i, (Integer) argument);
+                else
+                    invoker.setLong(i, (Long) argument);
+            }
+            if (returnType.isVoid()) {
+                invoker.invoke();
+                return null;
+            }
+            if (returnType.isFloat())
+                return invoker.invokeFloat();
+            if (returnType.isDouble())
+                return invoker.invokeDouble();
+            if (returnType.isPointer())
+                return invoker.invokePointer();
+            switch (returnType.getIntegerWidth()) {
+                case 1:
+                    return invoker.invokeBoolean();
+                case 8:
+                    return (byte) invoker.invokeLong();
+                case 16:
+                    return (short) invoker.invokeLong();
+                case 32:
+                    return invoker.invokeInt();
+                default:
+                    return invoker.invokeLong();
+            }
+        }
+    }
+
+    static Class<?> toJavaType(IRType type) {
+        if (type.isVoid())
+            return void.class;
+        if (type.isFloat())
+            return float.class;
+        if (type.isDouble())
+            return double.class;
+        if (type.isPointer())
+            return long.class;
+        if (type.isInteger()) {
+            switch (type.getIntegerWidth()) {
+                case 1:
+                    return boolean.class;
+                case 8:
+                    return byte.class;
+                case 16:
+                    return short.class;
+                case 32:
+                    return int.class;
+                case 64:
+                    return long.class;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported type for native invocation: kind " + type.getKind());
+    }
+}
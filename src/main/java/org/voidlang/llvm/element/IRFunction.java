@@ -32,6 +32,10 @@ public class IRFunction extends IRValue {
         return type;
     }
 
+    public IRFunctionType getFunctionType() {
+        return type;
+    }
+
     public static IRFunction create(IRModule module, String name, IRFunctionType type) {
         return new IRFunction(LLVMAddFunction(module.getHandle(), name, type.getHandle()), module, name, type);
     }
@@ -0,0 +1,306 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.libffi.ffi_cif;
+import org.bytedeco.libffi.ffi_type;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.bytedeco.libffi.global.ffi.*;
+
+/**
+ * Represents a typed entry point to a native function, such as a function compiled by an {@link IRJit}.
+ * <br>
+ * Unlike {@link ExecutionEngine#runFunction(IRFunction, List)}, which boxes every argument into a generic value,
+ * the invoker prepares the libffi call interface of the function only once, and reuses the same native argument
+ * and return value buffers for every call. The arguments are written to the buffers directly from Java, so a call
+ * costs a single native transition.
+ * <br>
+ * Because the buffers are shared between calls, an invoker must not be used by multiple threads concurrently.
+ * Create a separate invoker for each thread instead.
+ */
+public class IRFunctionInvoker implements Disposable {
+    /**
+     * The size of a single argument slot. Each slot fits any supported scalar type.
+     */
+    private static final int SLOT_SIZE = 8;
+
+    private final IRFunctionType type;
+    private final Pointer function;
+
+    private final ffi_cif cif;
+    // the call interface references the argument types, so they must be kept alive as long as the invoker
+    private final PointerPointer<Pointer> argumentTypes;
+    private final PointerPointer<Pointer> argumentValues;
+
+    private final BytePointer argumentStorage;
+    private final BytePointer returnStorage;
+    private final ByteBuffer arguments;
+    private final ByteBuffer returns;
+
+    private IRJit owner;
+    private boolean disposed;
+
+    IRFunctionInvoker(IRFunctionType type, long address) {
+        this.type = type;
+        this.function = NativePointers.at(address);
+
+        if (type.isVariadic())
+            throw new IllegalArgumentException("Variadic functions cannot be invoked");
+
+        List<IRType> parameterTypes = type.getParameterTypes();
+        int parameterLength = parameterTypes.size();
+
+        argumentTypes = new PointerPointer<>(Math.max(parameterLength, 1));
+        argumentValues = new PointerPointer<>(Math.max(parameterLength, 1));
+        argumentStorage = new BytePointer((long) Math.max(parameterLength, 1) * SLOT_SIZE);
+        // libffi widens integral return values to the size of a register, which fits in a single slot
+        returnStorage = new BytePointer(SLOT_SIZE);
+
+        for (int i = 0; i < parameterLength; i++) {
+            argumentTypes.put(i, toFFIType(parameterTypes.get(i)));
+            argumentValues.put(i, NativePointers.at(argumentStorage.address() + (long) i * SLOT_SIZE));
+        }
+
+        arguments = argumentStorage.asByteBuffer();
+        returns = returnStorage.asByteBuffer();
+
+        cif = new ffi_cif();
+        if (ffi_prep_cif(cif, FFI_DEFAULT_ABI(), parameterLength, toFFIType(type.getReturnType()), argumentTypes) != FFI_OK)
+            throw new IllegalStateException("Failed to prepare the libffi call interface");
+        LeakDetector.track(this);
+    }
+
+    public IRFunctionInvoker setBoolean(int index, boolean value) {
+        arguments.put(index * SLOT_SIZE, (byte) (value ? 1 : 0));
+        return this;
+    }
+
+    public IRFunctionInvoker setByte(int index, byte value) {
+        arguments.put(index * SLOT_SIZE, value);
+        return this;
+    }
+
+    public IRFunctionInvoker setShort(int index, short value) {
+        arguments.putShort(index * SLOT_SIZE, value);
+        return this;
+    }
+
+    public IRFunctionInvoker setInt(int index, int value) {
+        arguments.putInt(index * SLOT_SIZE, value);
+        return this;
+    }
+
+    public IRFunctionInvoker setLong(int index, long value) {
+        arguments.putLong(index * SLOT_SIZE, value);
+        return this;
+    }
+
+    public IRFunctionInvoker setFloat(int index, float value) {
+        arguments.putFloat(index * SLOT_SIZE, value);
+        return this;
+    }
+
+    public IRFunctionInvoker setDouble(int index, double value) {
+        arguments.putDouble(index * SLOT_SIZE, value);
+        return this;
+    }
+
+    public IRFunctionInvoker setPointer(int index, long address) {
+        arguments.putLong(index * SLOT_SIZE, address);
+        return this;
+    }
+
+    /**
+     * Call the native function with the previously set arguments, and discard its return value.
+     */
+    public void invoke() {
+        ffi_call(cif, function, returnStorage, argumentValues);
+    }
+
+    public void invokeVoid() {
+        invoke();
+    }
+
+    public boolean invokeBoolean() {
+        invoke();
+        return (returns.getLong(0) & 1) != 0;
+    }
+
+    public int invokeInt() {
+        invoke();
+        return (int) returns.getLong(0);
+    }
+
+    public int invokeInt(int first) {
+        arguments.putInt(0, first);
+        return invokeInt();
+    }
+
+    public int invokeInt(int first, int second) {
+        arguments.putInt(0, first);
+        arguments.putInt(SLOT_SIZE, second);
+        return invokeInt();
+    }
+
+    public int invokeInt(int first, int second, int third) {
+        arguments.putInt(0, first);
+        arguments.putInt(SLOT_SIZE, second);
+        arguments.putInt(2 * SLOT_SIZE, third);
+        return invokeInt();
+    }
+
+    public long invokeLong() {
+        invoke();
+        return returns.getLong(0);
+    }
+
+    public long invokeLong(long first) {
+        arguments.putLong(0, first);
+        return invokeLong();
+    }
+
+    public long invokeLong(long first, long second) {
+        arguments.putLong(0, first);
+        arguments.putLong(SLOT_SIZE, second);
+        return invokeLong();
+    }
+
+    public long invokeLong(long first, long second, long third) {
+        arguments.putLong(0, first);
+        arguments.putLong(SLOT_SIZE, second);
+        arguments.putLong(2 * SLOT_SIZE, third);
+        return invokeLong();
+    }
+
+    public float invokeFloat() {
+        invoke();
+        return returns.getFloat(0);
+    }
+
+    public float invokeFloat(float first) {
+        arguments.putFloat(0, first);
+        return invokeFloat();
+    }
+
+    public float invokeFloat(float first, float second) {
+        arguments.putFloat(0, first);
+        arguments.putFloat(SLOT_SIZE, second);
+        return invokeFloat();
+    }
+
+    public double invokeDouble() {
+        invoke();
+        return returns.getDouble(0);
+    }
+
+    public double invokeDouble(double first) {
+        arguments.putDouble(0, first);
+        return invokeDouble();
+    }
+
+    public double invokeDouble(double first, double second) {
+        arguments.putDouble(0, first);
+        arguments.putDouble(SLOT_SIZE, second);
+        return invokeDouble();
+    }
+
+    public double invokeDouble(double first, double second, double third) {
+        arguments.putDouble(0, first);
+        arguments.putDouble(SLOT_SIZE, second);
+        arguments.putDouble(2 * SLOT_SIZE, third);
+        return invokeDouble();
+    }
+
+    public long invokePointer() {
+        return invokeLong();
+    }
+
+    public IRFunctionType getType() {
+        return type;
+    }
+
+    public long getAddress() {
+        return function.address();
+    }
+
+    /**
+     * Map an LLVM type to the corresponding libffi type. Only scalar types are supported.
+     *
+     * @param type the LLVM type to be mapped
+     * @return the libffi type descriptor
+     */
+    private static ffi_type toFFIType(IRType type) {
+        if (type.isVoid())
+            return ffi_type_void();
+        if (type.isFloat())
+            return ffi_type_float();
+        if (type.isDouble())
+            return ffi_type_double();
+        if (type.isPointer())
+            return ffi_type_pointer();
+        if (type.isInteger()) {
+            switch (type.getIntegerWidth()) {
+                case 1:
+                    return ffi_type_uint8();
+                case 8:
+                    return ffi_type_sint8();
+                case 16:
+                    return ffi_type_sint16();
+                case 32:
+                    return ffi_type_sint32();
+                case 64:
+                    return ffi_type_sint64();
+            }
+        }
+        throw new IllegalArgumentException("Unsupported type for native invocation: kind " + type.getKind());
+    }
+
+    /**
+     * Free the call interface and the argument buffers of the invoker. The invoker must not be called afterward.
+     */
+    @Override
+    public void dispose() {
+        if (disposed)
+            return;
+        disposed = true;
+        if (owner != null)
+            owner.forget(this);
+        LeakDetector.untrack(this);
+        cif.close();
+        argumentTypes.close();
+        argumentValues.close();
+        argumentStorage.close();
+        returnStorage.close();
+    }
+
+    /**
+     * Create an invoker for the native function at the specified address.
+     *
+     * @param type the LLVM signature of the function
+     * @param address the native address of the function
+     * @return a new invoker for the function
+     */
+    public static IRFunctionInvoker create(IRFunctionType type, long address) {
+        return new IRFunctionInvoker(type, address);
+    }
+
+    /**
+     * Create an invoker for a function compiled by the specified JIT. The invoker is disposed together with the
+     * JIT, as the function is freed with it.
+     *
+     * @param jit the JIT that defines the function
+     * @param name the name of the function
+     * @param type the LLVM signature of the function
+     * @return a new invoker for the function
+     */
+    public static IRFunctionInvoker create(IRJit jit, String name, IRFunctionType type) {
+        IRFunctionInvoker invoker = new IRFunctionInvoker(type, jit.lookup(name));
+        jit.manage(invoker);
+        invoker.owner = jit;
+        return invoker;
+    }
+}
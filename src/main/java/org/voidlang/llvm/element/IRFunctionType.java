@@ -1,5 +1,6 @@
 package org.voidlang.llvm.element;
 
+import org.bytedeco.javacpp.Pointer;
 import org.bytedeco.javacpp.PointerPointer;
 import org.bytedeco.llvm.LLVM.LLVMTypeRef;
 
@@ -33,11 +34,9 @@ public class IRFunctionType extends IRType {
 
     public static IRFunctionType create(IRContext context, IRType returnType, List<IRType> parameterTypes, boolean variadic) {
         int parameterLength = parameterTypes.size();
-        PointerPointer<LLVMTypeRef> parameters = new PointerPointer<>(parameterLength);
-        for (int i = 0; i < parameterLength; i++)
-            parameters.put(i, parameterTypes.get(i).getHandle());
+        PointerPointer<Pointer> parameters = PointerArena.types(parameterTypes);
         LLVMTypeRef handle = LLVMFunctionType(returnType.getHandle(), parameters, parameterLength, variadic ? 1 : 0);
-        return new IRFunctionType(handle, context, returnType, parameterTypes, variadic);
+        return (IRFunctionType) context.type(handle);
     }
 
     public static IRFunctionType create(IRType returnType, List<IRType> parameterTypes, boolean variadic) {
@@ -4,11 +4,14 @@ import org.bytedeco.llvm.LLVM.LLVMGenericValueRef;
 
 import static org.bytedeco.llvm.global.LLVM.*;
 
-public class IRGenericValue {
+public class IRGenericValue implements Disposable {
     private final LLVMGenericValueRef handle;
 
+    private boolean disposed;
+
     public IRGenericValue(LLVMGenericValueRef handle) {
         this.handle = handle;
+        LeakDetector.track(this);
     }
 
     public long toInt(boolean isSigned) {
@@ -19,11 +22,20 @@ public class IRGenericValue {
         return toInt(true);
     }
 
+    @Override
+    public void dispose() {
+        if (disposed)
+            return;
+        disposed = true;
+        LeakDetector.untrack(this);
+        LLVMDisposeGenericValue(handle);
+    }
+
     public LLVMGenericValueRef getHandle() {
         return handle;
     }
 
     public static IRGenericValue genericInt(IRType type, int value, boolean isSigned) {
-        return new IRGenericValue(LLVMCreateGenericValueOfInt(type.getHandle(), value, isSigned ? 1 : 0));
+        return type.genericInt(value, isSigned);
     }
 }
@@ -0,0 +1,516 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.SizeTPointer;
+import org.bytedeco.llvm.LLVM.LLVMBinaryRef;
+import org.bytedeco.llvm.LLVM.LLVMErrorRef;
+import org.bytedeco.llvm.LLVM.LLVMMemoryBufferRef;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMOrcDefinitionGeneratorRef;
+import org.bytedeco.llvm.LLVM.LLVMOrcGenericIRModuleOperationFunction;
+import org.bytedeco.llvm.LLVM.LLVMOrcIRTransformLayerTransformFunction;
+import org.bytedeco.llvm.LLVM.LLVMOrcIndirectStubsManagerRef;
+import org.bytedeco.llvm.LLVM.LLVMOrcJITDylibRef;
+import org.bytedeco.llvm.LLVM.LLVMOrcJITTargetMachineBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMOrcLLJITBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMOrcLLJITRef;
+import org.bytedeco.llvm.LLVM.LLVMOrcLazyCallThroughManagerRef;
+import org.bytedeco.llvm.LLVM.LLVMOrcMaterializationResponsibilityRef;
+import org.bytedeco.llvm.LLVM.LLVMOrcObjectTransformLayerTransformFunction;
+import org.bytedeco.llvm.LLVM.LLVMOrcThreadSafeModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMSectionIteratorRef;
+import org.bytedeco.llvm.global.LLVM;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Represents a handle to an OrcJIT v2 LLJIT instance. Unlike {@link ExecutionEngine}, which creates a new MCJIT
+ * for each module, a single JIT can hold any number of modules in its main JIT dylib, and resolves symbols
+ * across all of them by name.
+ * <br>
+ * Modules must be created in the context of an {@link IRThreadSafeContext}. Adding and looking up symbols is
+ * thread safe, so multiple threads can share the same JIT.
+ * <br>
+ * The native target must be initialized before creating a JIT, using {@code LLVMInitializeNativeTarget()} and
+ * {@code LLVMInitializeNativeAsmPrinter()}.
+ * <br>
+ * The JIT keeps track of the size of the code and data sections of the object files that it links, so the native
+ * memory held by the JIT'd code can be monitored, see {@link #getCodeSize()} and {@link #getDataSize()}.
+ * <br>
+ * Modules added with {@link #addLazyModule(IRModule)} are compiled one function at a time, when each function is
+ * called for the first time.
+ */
+public class IRJit implements Disposable {
+    /**
+     * The JITs that are currently alive, by the identifiers that are passed to the object transform callback.
+     */
+    private static final Map<Long, IRJit> jits = new ConcurrentHashMap<>();
+    private static final AtomicLong nextId = new AtomicLong(1);
+
+    /**
+     * The transform callbacks are shared by every JIT, as JavaCPP can only allocate a few instances of a callback.
+     */
+    private static final ModuleTransform MODULE_TRANSFORM = new ModuleTransform();
+    private static final ModuleInspector MODULE_INSPECTOR = new ModuleInspector();
+    private static final SectionCounter SECTION_COUNTER = new SectionCounter();
+
+    /**
+     * The module that is being compiled on the current thread, from the IR transform layer until the object
+     * transform layer.
+     */
+    private static final ThreadLocal<Materialization> materializations = new ThreadLocal<>();
+
+    private final LLVMOrcLLJITRef handle;
+    private final LLVMOrcJITDylibRef mainDylib;
+
+    private final DisposableScope resources = new DisposableScope();
+    private boolean disposed;
+
+    /**
+     * The managers of the call-through stubs of the lazy modules, created when the first lazy module is added.
+     */
+    private LLVMOrcLazyCallThroughManagerRef callThroughManager;
+    private LLVMOrcIndirectStubsManagerRef stubsManager;
+
+    private final long id = nextId.getAndIncrement();
+    private final Pointer callbackContext = new Pointer() {{ address = id; }};
+    private final AtomicLong codeSize = new AtomicLong();
+    private final AtomicLong dataSize = new AtomicLong();
+    private final AtomicLong objectCount = new AtomicLong();
+
+    static {
+        // the LLVM natives must be globally visible, so that the JIT can resolve its own runtime symbols
+        Loader.loadGlobal(Loader.load(LLVM.class));
+    }
+
+    IRJit(LLVMOrcLLJITRef handle) {
+        this.handle = handle;
+        this.mainDylib = LLVMOrcLLJITGetMainJITDylib(handle);
+        jits.put(id, this);
+        LLVMOrcIRTransformLayerSetTransform(LLVMOrcLLJITGetIRTransformLayer(handle), MODULE_TRANSFORM, callbackContext);
+        LLVMOrcObjectTransformLayerSetTransform(
+            LLVMOrcLLJITGetObjTransformLayer(handle), SECTION_COUNTER, callbackContext
+        );
+        LeakDetector.track(this);
+    }
+
+    /**
+     * Add a thread safe module to the main JIT dylib of the JIT. The ownership of the module is transferred to
+     * the JIT, therefore it must not be disposed afterward, even if the operation fails.
+     * <br>
+     * The module is compiled when one of its symbols is looked up for the first time.
+     *
+     * @param module the module to be added to the JIT
+     * @throws LLVMException if the module could not be added
+     */
+    public void addModule(IRThreadSafeModule module) {
+        // the JIT consumes the module even if adding it fails, so it must never be disposed here
+        module.transferOwnership();
+        LLVMException.check(LLVMOrcLLJITAddLLVMIRModule(handle, mainDylib, module.getHandle()));
+    }
+
+    /**
+     * Add a module to the main JIT dylib of the JIT. The module must have been created in the context of the
+     * specified thread safe context, and its ownership is transferred to the JIT.
+     *
+     * @param module the module to be added to the JIT
+     * @param context the thread safe context that the module was created in
+     * @throws LLVMException if the module could not be added
+     */
+    public void addModule(IRModule module, IRThreadSafeContext context) {
+        addModule(IRThreadSafeModule.create(module, context));
+    }
+
+    /**
+     * Add multiple modules to the main JIT dylib of the JIT. The modules must have been created in the context
+     * of the specified thread safe context, and their ownership is transferred to the JIT.
+     *
+     * @param modules the modules to be added to the JIT
+     * @param context the thread safe context that the modules were created in
+     * @throws LLVMException if a module could not be added
+     */
+    public void addModules(Collection<IRModule> modules, IRThreadSafeContext context) {
+        for (IRModule module : modules)
+            addModule(module, context);
+    }
+
+    /**
+     * Add a module to the main JIT dylib of the JIT, that is compiled lazily, one function at a time. Adding the
+     * module only defines its symbols. Looking up a function returns the address of a stub, and the function is
+     * compiled when the stub is called for the first time, so the functions that are never called are never
+     * compiled. Global variables are compiled together with the first function that refers to them.
+     * <br>
+     * The module can be created in any context, as it is written to bitcode, and the functions are loaded from the
+     * bitcode into contexts of their own. The ownership of the module is transferred to the JIT, therefore it must
+     * not be disposed afterward, even if the operation fails.
+     * <br>
+     * Static constructors and destructors of the module are not run. If a function fails to compile, the failure is
+     * reported to the uncaught exception handler of the calling thread, and the process crashes, as the stub has
+     * nowhere to return to.
+     *
+     * @param module the module to be added to the JIT
+     * @throws IllegalArgumentException if the module has aliases or ifuncs
+     * @throws LLVMException if a symbol of the module is already defined in the JIT
+     */
+    public void addLazyModule(IRModule module) {
+        LazyModule.define(this, module);
+    }
+
+    /**
+     * Add a relocatable object file to the main JIT dylib of the JIT. The ownership of the buffer is transferred
+     * to the JIT, therefore it must not be disposed afterward, even if the operation fails.
+     *
+     * @param object the memory buffer holding the contents of the object file
+     * @throws LLVMException if the object file could not be added
+     */
+    public void addObjectFile(IRMemoryBuffer object) {
+        object.transferOwnership();
+        LLVMException.check(LLVMOrcLLJITAddObjectFile(handle, mainDylib, object.getHandle()));
+    }
+
+    /**
+     * Look up the address of a symbol in the main JIT dylib. Looking up a function for the first time triggers
+     * the compilation of the module that defines it.
+     *
+     * @param name the unmangled name of the symbol
+     * @return the address of the symbol in the memory of the current process
+     * @throws LLVMException if the symbol could not be found or compiled
+     */
+    public long lookup(String name) {
+        CompilationEvents.Timer timer = CompilationEvents.start();
+        long[] address = new long[1];
+        LLVMException.check(LLVMOrcLLJITLookup(handle, address, name));
+        if (timer != null)
+            timer.finishLookup(name);
+        return address[0];
+    }
+
+    /**
+     * Retrieve the target triple that the JIT generates code for.
+     *
+     * @return the target triple of the JIT
+     */
+    public String getTriple() {
+        return LLVMOrcLLJITGetTripleString(handle).getString();
+    }
+
+    /**
+     * Retrieve the data layout that the modules of the JIT should use.
+     *
+     * @return the data layout string of the JIT
+     */
+    public String getDataLayout() {
+        return LLVMOrcLLJITGetDataLayoutStr(handle).getString();
+    }
+
+    /**
+     * Apply the data layout and the triple of the JIT to a module, that does not specify them, like the JIT does
+     * for the modules added to it. Modules that are written to bitcode, and compiled from the bitcode later, must
+     * be configured before, otherwise they are optimized with the default data layout of LLVM.
+     *
+     * @param module the module to be configured
+     * @throws IllegalArgumentException if the data layout of the module differs from the one of the JIT
+     */
+    void applyTarget(IRModule module) {
+        LLVMModuleRef moduleHandle = module.getHandle();
+        String dataLayout = LLVMGetDataLayoutStr(moduleHandle).getString();
+        if (dataLayout.isEmpty())
+            LLVMSetDataLayout(moduleHandle, getDataLayout());
+        else if (!dataLayout.equals(getDataLayout())) {
+            throw new IllegalArgumentException(
+                "Module " + module.getName() + " has data layout " + dataLayout + ", but the JIT uses "
+                    + getDataLayout()
+            );
+        }
+        if (LLVMGetTarget(moduleHandle).getString().isEmpty())
+            LLVMSetTarget(moduleHandle, getTriple());
+    }
+
+    /**
+     * Retrieve the total size of the code sections, that the JIT has linked so far. Modules are counted when they
+     * are compiled, which happens when one of their symbols is looked up for the first time.
+     *
+     * @return the size of the JIT'd machine code in bytes, or zero if the JIT has been disposed
+     */
+    public long getCodeSize() {
+        return codeSize.get();
+    }
+
+    /**
+     * Retrieve the total size of the data sections, that the JIT has linked so far. This includes the read-only
+     * constants, the zero-initialized data and the unwind tables of the JIT'd code.
+     *
+     * @return the size of the JIT'd data in bytes, or zero if the JIT has been disposed
+     */
+    public long getDataSize() {
+        return dataSize.get();
+    }
+
+    /**
+     * Retrieve the number of object files, that the JIT has linked so far, either compiled from modules or added
+     * directly.
+     *
+     * @return the number of linked object files
+     */
+    public long getObjectCount() {
+        return objectCount.get();
+    }
+
+    /**
+     * Tie the lifetime of a resource to this JIT, so that the resource is disposed together with the JIT, before
+     * the JIT itself is disposed. Invokers created for the JIT are managed automatically.
+     *
+     * @param resource the resource to be disposed together with the JIT
+     * @param <T> the type of the resource
+     * @return the managed resource
+     * @throws IllegalStateException if the JIT has already been disposed
+     */
+    public <T extends Disposable> T manage(T resource) {
+        return resources.add(resource);
+    }
+
+    void forget(Disposable resource) {
+        resources.remove(resource);
+    }
+
+    synchronized LLVMOrcLazyCallThroughManagerRef getCallThroughManager() {
+        if (callThroughManager == null) {
+            LLVMOrcLazyCallThroughManagerRef manager = new LLVMOrcLazyCallThroughManagerRef();
+            // without an error handler address, a stub that fails to compile its function crashes the process
+            LLVMException.check(LLVMOrcCreateLocalLazyCallThroughManager(
+                new BytePointer(getTriple()), LLVMOrcLLJITGetExecutionSession(handle), 0, manager
+            ));
+            callThroughManager = manager;
+        }
+        return callThroughManager;
+    }
+
+    synchronized LLVMOrcIndirectStubsManagerRef getStubsManager() {
+        if (stubsManager == null)
+            stubsManager = LLVMOrcCreateLocalIndirectStubsManager(getTriple());
+        return stubsManager;
+    }
+
+    /**
+     * Dispose the resources managed by the JIT, in the reverse order of their creation, and then the JIT itself,
+     * together with every module and object file that has been added to it.
+     */
+    @Override
+    public void dispose() {
+        if (disposed)
+            return;
+        disposed = true;
+        try {
+            resources.dispose();
+        } finally {
+            LeakDetector.untrack(this);
+            // the call-through manager must be freed before the execution session that it was created for
+            synchronized (this) {
+                if (stubsManager != null)
+                    LLVMOrcDisposeIndirectStubsManager(stubsManager);
+                if (callThroughManager != null)
+                    LLVMOrcDisposeLazyCallThroughManager(callThroughManager);
+            }
+            try {
+                LLVMException.check(LLVMOrcDisposeLLJIT(handle));
+            } finally {
+                // the sections have been freed together with the JIT
+                jits.remove(id);
+                codeSize.set(0);
+                dataSize.set(0);
+            }
+        }
+    }
+
+    public LLVMOrcLLJITRef getHandle() {
+        return handle;
+    }
+
+    public LLVMOrcJITDylibRef getMainDylib() {
+        return mainDylib;
+    }
+
+    /**
+     * Create a new LLJIT for the host machine. The symbols of the current process (such as the C standard
+     * library) are made visible to the JIT'd code.
+     *
+     * @return a new JIT instance
+     * @throws LLVMException if the JIT could not be created
+     */
+    public static IRJit create() {
+        return create(LLVMOrcCreateLLJITBuilder());
+    }
+
+    /**
+     * Create a new LLJIT, that generates code with the triple, CPU, features, optimization level, relocation and
+     * code models of the specified target machine. The machine is not consumed, so it can still be used, for
+     * example to emit object files.
+     *
+     * @param machine the target machine to take the code generation settings from
+     * @return a new JIT instance
+     * @throws LLVMException if the JIT could not be created
+     */
+    public static IRJit create(IRTargetMachine machine) {
+        // the target machine builder takes the ownership of the machine it is created from, so it gets a copy
+        LLVMOrcJITTargetMachineBuilderRef machineBuilder =
+            LLVMOrcJITTargetMachineBuilderCreateFromTargetMachine(machine.createHandle());
+        LLVMOrcLLJITBuilderRef builder = LLVMOrcCreateLLJITBuilder();
+        LLVMOrcLLJITBuilderSetJITTargetMachineBuilder(builder, machineBuilder);
+        return create(builder);
+    }
+
+    static IRJit create(LLVMOrcLLJITBuilderRef builder) {
+        LLVMOrcLLJITRef handle = new LLVMOrcLLJITRef();
+        // the builder is consumed by the JIT, even if the creation fails
+        LLVMException.check(LLVMOrcCreateLLJIT(handle, builder));
+        IRJit jit = new IRJit(handle);
+
+        LLVMOrcDefinitionGeneratorRef generator = new LLVMOrcDefinitionGeneratorRef();
+        LLVMErrorRef error = LLVMOrcCreateDynamicLibrarySearchGeneratorForProcess(
+            generator, LLVMOrcLLJITGetGlobalPrefix(handle), null, null
+        );
+        if (error != null && !error.isNull()) {
+            jit.dispose();
+            LLVMException.check(error);
+        }
+        LLVMOrcJITDylibAddGenerator(jit.mainDylib, generator);
+        return jit;
+    }
+
+    /**
+     * Starts timing the materialization of the modules, when they are handed to the compiler of a JIT. The modules
+     * are passed through unchanged.
+     */
+    private static class ModuleTransform extends LLVMOrcIRTransformLayerTransformFunction {
+        @Override
+        public LLVMErrorRef call(
+            Pointer context, LLVMOrcThreadSafeModuleRef module, LLVMOrcMaterializationResponsibilityRef responsibility
+        ) {
+            CompilationEvents.Timer timer = CompilationEvents.start();
+            if (timer == null)
+                return null;
+            LLVMErrorRef error = LLVMOrcThreadSafeModuleWithModuleDo(module, MODULE_INSPECTOR, null);
+            if (error != null && !error.isNull()) {
+                LLVMConsumeError(error);
+                return null;
+            }
+            materializations.get().timer = timer;
+            return null;
+        }
+    }
+
+    /**
+     * Reads the name and the function count of a module, while its context is locked.
+     */
+    private static class ModuleInspector extends LLVMOrcGenericIRModuleOperationFunction {
+        @Override
+        public LLVMErrorRef call(Pointer context, LLVMModuleRef module) {
+            String name = LLVMGetModuleIdentifier(module, new SizeTPointer(1)).getString(StandardCharsets.UTF_8);
+            materializations.set(new Materialization(name, IRModule.countFunctions(module)));
+            return null;
+        }
+    }
+
+    private static class Materialization {
+        private final String moduleName;
+        private final int functionCount;
+        private CompilationEvents.Timer timer;
+
+        private Materialization(String moduleName, int functionCount) {
+            this.moduleName = moduleName;
+            this.functionCount = functionCount;
+        }
+    }
+
+    /**
+     * Counts the sizes of the sections of the object files, before they are linked by a JIT, and finishes timing
+     * the materialization of the module that the object file was compiled from. The object files are passed
+     * through unchanged.
+     */
+    private static class SectionCounter extends LLVMOrcObjectTransformLayerTransformFunction {
+        @Override
+        public LLVMErrorRef call(Pointer context, LLVMMemoryBufferRef object) {
+            Materialization materialization = materializations.get();
+            if (materialization != null) {
+                // object files added directly have not been materialized from a module
+                materializations.remove();
+                if (materialization.timer != null) {
+                    materialization.timer.finish(
+                        CompilationEvent.Phase.JIT_MATERIALIZATION, materialization.moduleName,
+                        materialization.functionCount
+                    );
+                }
+            }
+            IRJit jit = jits.get(context.address());
+            if (jit == null)
+                return null;
+            BytePointer error = new BytePointer((Pointer) null);
+            LLVMBinaryRef binary = LLVMCreateBinary(object, null, error);
+            if (binary == null || binary.isNull()) {
+                // let the linking layer report the malformed object
+                LLVMDisposeMessage(error);
+                return null;
+            }
+            long code = 0, data = 0;
+            LLVMSectionIteratorRef section = LLVMObjectFileCopySectionIterator(binary);
+            try {
+                for (; LLVMObjectFileIsSectionIteratorAtEnd(binary, section) == 0; LLVMMoveToNextSection(section)) {
+                    BytePointer name = LLVMGetSectionName(section);
+                    if (name == null || name.isNull())
+                        continue;
+                    switch (SectionKind.of(name.getString(StandardCharsets.UTF_8))) {
+                        case CODE:
+                            code += LLVMGetSectionSize(section);
+                            break;
+                        case DATA:
+                            data += LLVMGetSectionSize(section);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } finally {
+                LLVMDisposeSectionIterator(section);
+                LLVMDisposeBinary(binary);
+            }
+            jit.codeSize.addAndGet(code);
+            jit.dataSize.addAndGet(data);
+            jit.objectCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Classifies the sections of ELF, Mach-O and COFF object files by whether they are loaded into memory.
+     */
+    private enum SectionKind {
+        CODE, DATA, OTHER;
+
+        private static final String[] CODE_PREFIXES = { ".text", "__text", "__stubs" };
+        private static final String[] DATA_PREFIXES = {
+            ".data", ".rodata", ".bss", ".tdata", ".tbss", ".rdata", ".eh_frame", ".xdata", ".pdata",
+            ".ldata", ".lrodata", ".lbss", ".init_array", ".fini_array", ".ctors", ".dtors",
+            "__data", "__const", "__bss", "__common", "__cstring", "__literal", "__eh_frame", "__mod_init_func"
+        };
+
+        private static SectionKind of(String name) {
+            for (String prefix : CODE_PREFIXES) {
+                if (name.startsWith(prefix))
+                    return CODE;
+            }
+            for (String prefix : DATA_PREFIXES) {
+                if (name.startsWith(prefix))
+                    return DATA;
+            }
+            return OTHER;
+        }
+    }
+}
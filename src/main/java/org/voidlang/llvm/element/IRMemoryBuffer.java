@@ -1,16 +1,37 @@
 package org.voidlang.llvm.element;
 
 import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
 import org.bytedeco.llvm.LLVM.LLVMMemoryBufferRef;
 
-import static org.bytedeco.llvm.global.LLVM.LLVMGetBufferSize;
-import static org.bytedeco.llvm.global.LLVM.LLVMGetBufferStart;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
 
-public class IRMemoryBuffer {
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class IRMemoryBuffer implements Disposable {
     private final LLVMMemoryBufferRef handle;
 
+    /**
+     * The byte buffer whose memory is wrapped by this buffer, which must stay reachable until it is disposed.
+     */
+    private ByteBuffer backing;
+
+    private boolean disposed;
+
     IRMemoryBuffer(LLVMMemoryBufferRef handle) {
         this.handle = handle;
+        LeakDetector.track(this);
+    }
+
+    private IRMemoryBuffer(LLVMMemoryBufferRef handle, ByteBuffer backing) {
+        this(handle);
+        this.backing = backing;
     }
 
     public long size() {
@@ -20,4 +41,123 @@ public class IRMemoryBuffer {
     public BytePointer getBufferStart() {
         return LLVMGetBufferStart(handle);
     }
+
+    /**
+     * Retrieve a direct, read-only view of the contents of the buffer, without copying them. The view must not be
+     * used after the buffer is disposed.
+     *
+     * @return a new byte buffer that reads the native memory of the buffer
+     * @throws IllegalStateException if the buffer is 2 GiB or larger, which a byte buffer cannot address
+     */
+    public ByteBuffer asByteBuffer() {
+        long size = size();
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalStateException("The memory buffer is too large to be viewed (" + size + " bytes)");
+        return NativePointers.view(getBufferStart().address(), size)
+            .asReadOnlyBuffer()
+            .order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Write the contents of the buffer to a channel, directly from the native memory of the buffer.
+     *
+     * @param channel the channel to write the contents to
+     * @throws UncheckedIOException if the contents could not be written
+     */
+    public void writeTo(WritableByteChannel channel) {
+        ByteBuffer contents = asByteBuffer();
+        try {
+            while (contents.hasRemaining())
+                channel.write(contents);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write memory buffer", e);
+        }
+    }
+
+    /**
+     * Write the contents of the buffer to an output stream. The stream is not closed afterward.
+     *
+     * @param stream the stream to write the contents to
+     * @throws UncheckedIOException if the contents could not be written
+     */
+    public void writeTo(OutputStream stream) {
+        // a stream can only be written from a heap array, so the contents are copied in chunks
+        ByteBuffer contents = asByteBuffer();
+        byte[] chunk = new byte[(int) Math.min(contents.remaining(), 64 * 1024)];
+        try {
+            while (contents.hasRemaining()) {
+                int length = Math.min(chunk.length, contents.remaining());
+                contents.get(chunk, 0, length);
+                stream.write(chunk, 0, length);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write memory buffer", e);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (disposed)
+            return;
+        transferOwnership();
+        LLVMDisposeMemoryBuffer(handle);
+        backing = null;
+    }
+
+    /**
+     * Mark the buffer as owned by another object, such as a JIT, which is going to free the buffer instead.
+     *
+     * @throws IllegalStateException if the buffer has already been disposed
+     */
+    void transferOwnership() {
+        if (disposed)
+            throw new IllegalStateException("The memory buffer has already been disposed");
+        disposed = true;
+        LeakDetector.untrack(this);
+    }
+
+    public LLVMMemoryBufferRef getHandle() {
+        return handle;
+    }
+
+    /**
+     * Read the contents of a file into a new memory buffer.
+     *
+     * @param file the path of the file to be read
+     * @return a new memory buffer holding the contents of the file
+     * @throws LLVMException if the file could not be read
+     */
+    public static IRMemoryBuffer fromFile(String file) {
+        LLVMMemoryBufferRef handle = new LLVMMemoryBufferRef();
+        BytePointer error = new BytePointer((Pointer) null);
+        if (LLVMCreateMemoryBufferWithContentsOfFile(new BytePointer(file), handle, error) != 0) {
+            String message = error.getString();
+            LLVMDisposeMessage(error);
+            throw new LLVMException(message);
+        }
+        return new IRMemoryBuffer(handle);
+    }
+
+    public static IRMemoryBuffer fromFile(File file) {
+        return fromFile(file.getAbsoluteFile().toString());
+    }
+
+    /**
+     * Create a memory buffer over the contents of a direct byte buffer, without copying them. The memory buffer keeps
+     * the byte buffer reachable until it is disposed, and the byte buffer must not be modified in the meantime.
+     *
+     * @param buffer the direct byte buffer, whose remaining bytes are wrapped
+     * @param name the identifier of the buffer, used in diagnostics
+     * @return a new memory buffer that refers to the memory of the byte buffer
+     * @throws IllegalArgumentException if the byte buffer is not direct
+     */
+    public static IRMemoryBuffer wrap(ByteBuffer buffer, String name) {
+        if (!buffer.isDirect())
+            throw new IllegalArgumentException("Only direct byte buffers can be wrapped");
+        // the pointer starts at the position of the buffer
+        BytePointer data = new BytePointer(buffer);
+        return new IRMemoryBuffer(LLVMCreateMemoryBufferWithMemoryRange(
+            data, buffer.remaining(), new BytePointer(name), 0
+        ), buffer);
+    }
 }
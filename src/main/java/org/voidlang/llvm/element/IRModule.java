@@ -1,11 +1,21 @@
 package org.voidlang.llvm.element;
 
 import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.SizeTPointer;
 import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static org.bytedeco.llvm.global.LLVM.*;
 
@@ -16,10 +26,19 @@ public class IRModule implements Disposable {
 
     private final String name;
 
+    private boolean disposed;
+
+    private volatile long estimatedSize;
+
+    private CompilationEvents.Timer buildTimer;
+
     IRModule(LLVMModuleRef handle, IRContext context, String name) {
         this.handle = handle;
         this.context = context;
         this.name = name;
+        this.buildTimer = CompilationEvents.start();
+        context.manage(this);
+        LeakDetector.track(this);
     }
 
     public IRGlobal addGlobal(IRType type, String name) {
@@ -36,11 +55,243 @@ public class IRModule implements Disposable {
 
     @Override
     public void dispose() {
+        if (disposed)
+            return;
+        transferOwnership();
         LLVMDisposeModule(handle);
     }
 
+    /**
+     * Mark the module as owned by another object, such as an execution engine or a thread safe module, which is
+     * going to free the module instead. The module is no longer disposed together with its context.
+     *
+     * @throws IllegalStateException if the module has already been disposed
+     */
+    void transferOwnership() {
+        if (disposed)
+            throw new IllegalStateException("Module " + name + " has already been disposed");
+        disposed = true;
+        context.forget(this);
+        LeakDetector.untrack(this);
+    }
+
     public boolean verify(VerifierFailureAction action, BytePointer error) {
-        return LLVMVerifyModule(handle, action.code, error) == 0;
+        finishBuild();
+        CompilationEvents.Timer timer = CompilationEvents.start();
+        boolean valid = LLVMVerifyModule(handle, action.code, error) == 0;
+        if (timer != null)
+            timer.finish(CompilationEvent.Phase.VERIFY, name, getFunctionCount());
+        return valid;
+    }
+
+    /**
+     * Mark the end of building the IR of the module, once it is handed to the verifier, the optimizer or a
+     * compiler. Only the first call has an effect.
+     */
+    void finishBuild() {
+        CompilationEvents.Timer timer = buildTimer;
+        if (timer == null)
+            return;
+        buildTimer = null;
+        timer.finish(CompilationEvent.Phase.IR_BUILD, name, getFunctionCount());
+    }
+
+    /**
+     * Optimize the module with a textual new pass manager pipeline, such as "default&lt;O2&gt;" or
+     * "function(instcombine,simplifycfg)".
+     *
+     * @param pipeline the description of the pass pipeline to run
+     * @param options the options of the pass builder
+     * @throws LLVMException if the pipeline could not be parsed or run
+     */
+    public void optimize(String pipeline, IRPassBuilderOptions options) {
+        optimize(pipeline, options, null);
+    }
+
+    /**
+     * Optimize the module with a textual new pass manager pipeline, for the target of the specified machine. The
+     * cost models of the optimizer, such as the ones of the vectorizers, take the CPU features of the target into
+     * account, so the module should be configured for the same machine beforehand.
+     *
+     * @param pipeline the description of the pass pipeline to run
+     * @param options the options of the pass builder
+     * @param machine the target machine that is going to generate the code of the module, or null for a generic
+     * target
+     * @throws LLVMException if the pipeline could not be parsed or run
+     */
+    public void optimize(String pipeline, IRPassBuilderOptions options, IRTargetMachine machine) {
+        finishBuild();
+        CompilationEvents.Timer timer = CompilationEvents.start();
+        LLVMException.check(LLVMRunPasses(
+            handle, pipeline, machine != null ? machine.getHandle() : null, options.getHandle()
+        ));
+        // the optimizer may change the size of the module considerably, so keep the memory estimate up to date
+        ModuleStatistics statistics = measure();
+        if (timer != null)
+            timer.finish(CompilationEvent.Phase.OPTIMIZE, name, statistics.getFunctionCount());
+    }
+
+    /**
+     * Optimize the module with a textual new pass manager pipeline, such as "default&lt;O2&gt;" or
+     * "function(instcombine,simplifycfg)".
+     *
+     * @param pipeline the description of the pass pipeline to run
+     * @throws LLVMException if the pipeline could not be parsed or run
+     */
+    public void optimize(String pipeline) {
+        IRPassBuilderOptions options = IRPassBuilderOptions.create();
+        try {
+            optimize(pipeline, options);
+        } finally {
+            options.dispose();
+        }
+    }
+
+    /**
+     * Optimize the module with the default pipeline of the specified optimization level.
+     *
+     * @param level the optimization level to optimize for
+     * @param options the options of the pass builder
+     * @throws LLVMException if the optimization fails
+     */
+    public void optimize(OptLevel level, IRPassBuilderOptions options) {
+        optimize(level.getPipeline(), options);
+    }
+
+    /**
+     * Optimize the module with the default pipeline of the specified optimization level, using the vectorization
+     * and unrolling defaults of the level.
+     *
+     * @param level the optimization level to optimize for
+     * @throws LLVMException if the optimization fails
+     */
+    public void optimize(OptLevel level) {
+        optimize(level, (IRTargetMachine) null);
+    }
+
+    /**
+     * Optimize the module with the default pipeline of the specified optimization level, for the target of the
+     * specified machine, using the vectorization and unrolling defaults of the level.
+     *
+     * @param level the optimization level to optimize for
+     * @param machine the target machine that is going to generate the code of the module, or null for a generic
+     * target
+     * @throws LLVMException if the optimization fails
+     */
+    public void optimize(OptLevel level, IRTargetMachine machine) {
+        IRPassBuilderOptions options = IRPassBuilderOptions.create(level);
+        try {
+            optimize(level.getPipeline(), options, machine);
+        } finally {
+            options.dispose();
+        }
+    }
+
+    /**
+     * Optimize the module with the default pipeline of the specified optimization level, guided by an execution
+     * profile. The profile is applied to the module first, so the inliner favors the hot call sites, and the code
+     * generator lays out the blocks of the functions along their hot paths, moving the cold blocks out of the way.
+     * <br>
+     * Cold regions are not outlined into separate functions by default, as a function that is entered rarely, but
+     * runs a hot loop, would be marked cold as a whole. Run the "hotcoldsplit" pipeline afterward to outline them.
+     *
+     * @param level the optimization level to optimize for
+     * @param profile the profile, that has been collected from an instrumented build of the module
+     * @throws LLVMException if the optimization fails
+     */
+    public void optimize(OptLevel level, IRProfile profile) {
+        optimize(level, profile, null);
+    }
+
+    /**
+     * Optimize the module with the default pipeline of the specified optimization level, for the target of the
+     * specified machine, guided by an execution profile.
+     *
+     * @param level the optimization level to optimize for
+     * @param profile the profile, that has been collected from an instrumented build of the module
+     * @param machine the target machine that is going to generate the code of the module, or null for a generic
+     * target
+     * @throws LLVMException if the optimization fails
+     */
+    public void optimize(OptLevel level, IRProfile profile, IRTargetMachine machine) {
+        profile.apply(this);
+        optimize(level, machine);
+    }
+
+    /**
+     * Count the functions, blocks and instructions of the module, and update the estimate of its native memory
+     * usage. The walk takes time linear in the size of the module, so it should not be called for every change.
+     * <br>
+     * Like any other operation on the module, it must not run concurrently with changes to the module.
+     *
+     * @return the statistics of the module
+     */
+    public ModuleStatistics measure() {
+        ModuleStatistics statistics = ModuleStatistics.measure(handle);
+        estimatedSize = statistics.getEstimatedSize();
+        return statistics;
+    }
+
+    /**
+     * Count the functions defined in the module, excluding declarations.
+     *
+     * @return the number of function definitions
+     */
+    public int getFunctionCount() {
+        return countFunctions(handle);
+    }
+
+    /**
+     * Insert execution counters into the function definitions of the module. The counters are stored in a global
+     * array of the module, which can be read from Java without JNI, once the module is compiled by a JIT.
+     * <br>
+     * The module should be instrumented after it is complete, as functions and blocks added later are not counted.
+     *
+     * @param blocks whether each basic block should be counted, not only the calls of the functions
+     * @return the layout of the inserted counters
+     */
+    public IRCounters instrument(boolean blocks) {
+        return IRCounters.instrument(this, blocks);
+    }
+
+    /**
+     * Compute a content hash of each function definition in the module. The hash of a function covers its body,
+     * the signatures of the functions it calls, and the initializers of the globals it refers to, but not the
+     * bodies of its callees, so it only changes when the machine code of the function itself may change.
+     *
+     * @return the hexadecimal SHA-256 hash of each function, keyed by name in the order of the module
+     * @see IncrementalCompiler
+     */
+    public Map<String, String> getFunctionFingerprints() {
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+        for (LLVMValueRef function = LLVMGetFirstFunction(handle); function != null && !function.isNull();
+             function = LLVMGetNextFunction(function)) {
+            if (LLVMIsDeclaration(function) != 0)
+                continue;
+            String name = LLVMGetValueName2(function, new SizeTPointer(1)).getString(StandardCharsets.UTF_8);
+            fingerprints.put(name, FunctionFingerprint.compute(function));
+        }
+        return fingerprints;
+    }
+
+    static int countFunctions(LLVMModuleRef module) {
+        int count = 0;
+        for (LLVMValueRef function = LLVMGetFirstFunction(module); function != null && !function.isNull();
+             function = LLVMGetNextFunction(function)) {
+            if (LLVMIsDeclaration(function) == 0)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Retrieve the estimated native memory usage of the module, as of its last measurement. The module is measured
+     * by {@link #measure()}, and after each optimization. This method is safe to call from any thread.
+     *
+     * @return the estimated size of the module in bytes, or zero if the module has not been measured yet
+     */
+    public long getEstimatedSize() {
+        return estimatedSize;
     }
 
     public LLVMModuleRef getHandle() {
@@ -59,6 +310,68 @@ public class IRModule implements Disposable {
         return new IRModule(LLVMModuleCreateWithNameInContext(name, context.getHandle()), context, name);
     }
 
+    /**
+     * Parse a module from the bitcode held by a memory buffer. The buffer is not consumed, therefore it must still
+     * be disposed by the caller.
+     *
+     * @param context the context to create the module in
+     * @param bitcode the memory buffer holding the bitcode
+     * @return the parsed module
+     * @throws LLVMException if the bitcode is malformed
+     */
+    public static IRModule parseBitcode(IRContext context, IRMemoryBuffer bitcode) {
+        return parseBitcode(context, bitcode, "memory buffer");
+    }
+
+    /**
+     * Parse a module from a bitcode file. The file is memory mapped, and the bitcode is read from the mapped region
+     * directly, so its contents are never copied to the Java heap.
+     *
+     * @param context the context to create the module in
+     * @param file the path of the bitcode file
+     * @return the parsed module
+     * @throws UncheckedIOException if the file could not be mapped
+     * @throws IllegalArgumentException if the file is 2 GiB or larger, which cannot be mapped at once
+     * @throws LLVMException if the bitcode is malformed
+     */
+    public static IRModule parseBitcode(IRContext context, Path file) {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IllegalArgumentException(
+                    "Bitcode file " + file + " is too large to be mapped (" + channel.size() + " bytes)"
+                );
+            // the mapping stays valid after the channel is closed
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map bitcode file " + file, e);
+        }
+        // the memory buffer keeps the mapping reachable, so it is not unmapped while the bitcode is parsed
+        IRMemoryBuffer bitcode = IRMemoryBuffer.wrap(mapped, file.toString());
+        try {
+            return parseBitcode(context, bitcode, file.toString());
+        } finally {
+            bitcode.dispose();
+        }
+    }
+
+    public static IRModule parseBitcode(IRContext context, File file) {
+        return parseBitcode(context, file.toPath());
+    }
+
+    private static IRModule parseBitcode(IRContext context, IRMemoryBuffer bitcode, String source) {
+        CompilationEvents.Timer timer = CompilationEvents.start();
+        LLVMModuleRef handle = new LLVMModuleRef();
+        if (LLVMParseBitcodeInContext2(context.getHandle(), bitcode.getHandle(), handle) != 0)
+            throw new LLVMException("Failed to parse bitcode from " + source);
+        String name = LLVMGetModuleIdentifier(handle, new SizeTPointer(1)).getString(StandardCharsets.UTF_8);
+        IRModule module = new IRModule(handle, context, name);
+        // the IR of a parsed module is complete, so building it took as long as parsing
+        module.buildTimer = timer;
+        module.finishBuild();
+        return module;
+    }
+
     public IRMemoryBuffer writeBitCodeToFile() {
         return new IRMemoryBuffer(LLVMWriteBitcodeToMemoryBuffer(handle));
     }
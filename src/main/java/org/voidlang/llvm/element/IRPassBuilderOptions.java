@@ -0,0 +1,121 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.llvm.LLVM.LLVMPassBuilderOptionsRef;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Represents a handle to the options of the new pass manager's pass builder. The options tune the passes that are
+ * added to a pipeline by {@link IRModule#optimize(String, IRPassBuilderOptions)}.
+ */
+public class IRPassBuilderOptions implements Disposable {
+    private final LLVMPassBuilderOptionsRef handle;
+
+    private boolean disposed;
+
+    IRPassBuilderOptions(LLVMPassBuilderOptionsRef handle) {
+        this.handle = handle;
+        LeakDetector.track(this);
+    }
+
+    /**
+     * Enable or disable the loop vectorizer, which widens the instructions of loops to vector instructions.
+     *
+     * @param enabled true to run the loop vectorizer
+     * @return this options instance
+     */
+    public IRPassBuilderOptions setLoopVectorization(boolean enabled) {
+        LLVMPassBuilderOptionsSetLoopVectorization(handle, enabled ? 1 : 0);
+        return this;
+    }
+
+    /**
+     * Enable or disable the interleaving of loop iterations by the loop vectorizer.
+     *
+     * @param enabled true to interleave loops
+     * @return this options instance
+     */
+    public IRPassBuilderOptions setLoopInterleaving(boolean enabled) {
+        LLVMPassBuilderOptionsSetLoopInterleaving(handle, enabled ? 1 : 0);
+        return this;
+    }
+
+    /**
+     * Enable or disable the SLP vectorizer, which combines similar independent scalar instructions into vector
+     * instructions.
+     *
+     * @param enabled true to run the SLP vectorizer
+     * @return this options instance
+     */
+    public IRPassBuilderOptions setSLPVectorization(boolean enabled) {
+        LLVMPassBuilderOptionsSetSLPVectorization(handle, enabled ? 1 : 0);
+        return this;
+    }
+
+    /**
+     * Enable or disable loop unrolling.
+     *
+     * @param enabled true to unroll loops
+     * @return this options instance
+     */
+    public IRPassBuilderOptions setLoopUnrolling(boolean enabled) {
+        LLVMPassBuilderOptionsSetLoopUnrolling(handle, enabled ? 1 : 0);
+        return this;
+    }
+
+    /**
+     * Enable or disable the merging of identical functions.
+     *
+     * @param enabled true to merge functions
+     * @return this options instance
+     */
+    public IRPassBuilderOptions setMergeFunctions(boolean enabled) {
+        LLVMPassBuilderOptionsSetMergeFunctions(handle, enabled ? 1 : 0);
+        return this;
+    }
+
+    /**
+     * Enable or disable the verification of the module after each pass. Useful for debugging the front end.
+     *
+     * @param enabled true to verify the module after each pass
+     * @return this options instance
+     */
+    public IRPassBuilderOptions setVerifyEach(boolean enabled) {
+        LLVMPassBuilderOptionsSetVerifyEach(handle, enabled ? 1 : 0);
+        return this;
+    }
+
+    @Override
+    public void dispose() {
+        if (disposed)
+            return;
+        disposed = true;
+        LeakDetector.untrack(this);
+        LLVMDisposePassBuilderOptions(handle);
+    }
+
+    public LLVMPassBuilderOptionsRef getHandle() {
+        return handle;
+    }
+
+    public static IRPassBuilderOptions create() {
+        return new IRPassBuilderOptions(LLVMCreatePassBuilderOptions());
+    }
+
+    /**
+     * Create pass builder options with the vectorization and unrolling defaults of clang for the specified
+     * optimization level. Loops are unrolled and interleaved at every level above O1, including Os and Oz. Loops
+     * are vectorized at O2, O3 and Os, and straight-line code is vectorized at Oz as well.
+     *
+     * @param level the optimization level to create the options for
+     * @return new pass builder options
+     */
+    public static IRPassBuilderOptions create(OptLevel level) {
+        boolean unroll = level.getCodeGenLevel() > 1;
+        return create()
+            .setLoopVectorization(unroll && level != OptLevel.Oz)
+            .setLoopInterleaving(unroll)
+            .setSLPVectorization(unroll)
+            .setLoopUnrolling(unroll);
+    }
+}
@@ -0,0 +1,441 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.javacpp.SizeTPointer;
+import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
+import org.bytedeco.llvm.LLVM.LLVMContextRef;
+import org.bytedeco.llvm.LLVM.LLVMMetadataRef;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Represents an execution profile of the functions of a module, that has been collected from the counters of an
+ * instrumented module by {@link #collect(IRCounters)}.
+ * <br>
+ * The profile can be written to the local disk, and read back by a later compilation of the same program. Applying
+ * the profile to a module annotates the functions with their entry counts, and the conditional branches and switches
+ * with branch weights, and adds a profile summary to the module. The optimizer uses these annotations for its block
+ * placement, inlining and hot/cold splitting decisions, see {@link IRModule#optimize(OptLevel, IRProfile)}.
+ * <br>
+ * Each function of the profile is stored with a checksum of its control flow graph. Functions whose graph has
+ * changed since the profile was collected are left unannotated, as their counts would be attached to the wrong
+ * blocks.
+ */
+public final class IRProfile {
+    private static final int MAGIC = 0x56505246;
+    private static final int VERSION = 1;
+
+    /**
+     * The cutoffs of the detailed profile summary, in parts per million of the total count. These are the
+     * cutoffs, that the LLVM profile tools use, and they include the hot and cold thresholds of the optimizer.
+     */
+    private static final int[] CUTOFFS = {
+        10000, 100000, 200000, 300000, 400000, 500000, 600000, 700000, 800000, 900000, 950000, 990000, 999000,
+        999900, 999990, 999999
+    };
+
+    private final Map<String, FunctionProfile> functions;
+
+    private IRProfile(Map<String, FunctionProfile> functions) {
+        this.functions = functions;
+    }
+
+    /**
+     * Collect the current values of the counters of an instrumented module.
+     *
+     * @param counters the counters, that have been attached to the JIT running the module
+     * @return a new profile of the instrumented functions
+     * @throws IllegalStateException if the counters have not been attached yet
+     */
+    public static IRProfile collect(IRCounters counters) {
+        long[] values = counters.snapshot();
+        Map<String, FunctionProfile> functions = new LinkedHashMap<>();
+        for (String name : counters.getFunctions()) {
+            int slot = counters.getSlot(name);
+            int count = Math.max(1, counters.getBlockCount(name));
+            functions.put(name, new FunctionProfile(
+                counters.getChecksum(name), Arrays.copyOfRange(values, slot, slot + count)
+            ));
+        }
+        return new IRProfile(functions);
+    }
+
+    /**
+     * Read a profile from a file, that has been written by {@link #write(Path)}.
+     *
+     * @param file the path of the profile
+     * @return the profile stored in the file
+     * @throws UncheckedIOException if the file could not be read, or it is not a profile
+     */
+    public static IRProfile read(Path file) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                throw new IOException("Unsupported profile format");
+            int count = input.readInt();
+            Map<String, FunctionProfile> functions = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String name = input.readUTF();
+                long checksum = input.readLong();
+                long[] counts = new long[input.readInt()];
+                for (int j = 0; j < counts.length; j++)
+                    counts[j] = input.readLong();
+                functions.put(name, new FunctionProfile(checksum, counts));
+            }
+            return new IRProfile(functions);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read profile " + file, e);
+        }
+    }
+
+    /**
+     * Write the profile to a file. The file is replaced atomically, if the file system supports it, so that
+     * concurrent readers never observe a partially written profile.
+     *
+     * @param file the path of the profile
+     * @throws UncheckedIOException if the file could not be written
+     */
+    public void write(Path file) {
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporary)
+            ))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(functions.size());
+                for (Map.Entry<String, FunctionProfile> entry : functions.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    output.writeLong(entry.getValue().checksum);
+                    output.writeInt(entry.getValue().counts.length);
+                    for (long count : entry.getValue().counts)
+                        output.writeLong(count);
+                }
+            } catch (IOException e) {
+                Files.deleteIfExists(temporary);
+                throw e;
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write profile " + file, e);
+        }
+    }
+
+    /**
+     * Combine the counts of this profile with the counts of another one, such as the profiles of different runs of
+     * the same program. If a function has a different control flow graph in the two profiles, the function of the
+     * other profile is kept.
+     *
+     * @param other the profile to be combined with this profile
+     * @return a new profile with the summed counts
+     */
+    public IRProfile merge(IRProfile other) {
+        Map<String, FunctionProfile> merged = new LinkedHashMap<>(functions);
+        for (Map.Entry<String, FunctionProfile> entry : other.functions.entrySet()) {
+            FunctionProfile theirs = entry.getValue();
+            FunctionProfile ours = merged.get(entry.getKey());
+            if (ours == null || ours.checksum != theirs.checksum || ours.counts.length != theirs.counts.length) {
+                merged.put(entry.getKey(), theirs);
+                continue;
+            }
+            long[] counts = new long[ours.counts.length];
+            for (int i = 0; i < counts.length; i++)
+                counts[i] = ours.counts[i] + theirs.counts[i];
+            merged.put(entry.getKey(), new FunctionProfile(ours.checksum, counts));
+        }
+        return new IRProfile(merged);
+    }
+
+    /**
+     * Annotate the functions of a module with the counts of the profile. The annotations are only hints for the
+     * optimizer, so applying a profile never changes the behavior of the module.
+     * <br>
+     * The module should be optimized afterward, see {@link IRModule#optimize(OptLevel, IRProfile)}.
+     *
+     * @param module the module to be annotated
+     * @return the number of functions, that have been annotated
+     */
+    public int apply(IRModule module) {
+        LLVMModuleRef handle = module.getHandle();
+        LLVMContextRef context = LLVMGetModuleContext(handle);
+        int prof = LLVMGetMDKindIDInContext(context, "prof", 4);
+        LLVMMetadataRef branchWeights = string(context, "branch_weights");
+        LLVMMetadataRef entryCount = string(context, "function_entry_count");
+        LLVMTypeRef i32 = LLVMInt32TypeInContext(context);
+        LLVMTypeRef i64 = LLVMInt64TypeInContext(context);
+
+        int annotated = 0;
+        List<FunctionProfile> applied = new ArrayList<>();
+        for (LLVMValueRef function = LLVMGetFirstFunction(handle); function != null && !function.isNull();
+             function = LLVMGetNextFunction(function)) {
+            if (LLVMIsDeclaration(function) != 0)
+                continue;
+            String name = LLVMGetValueName2(function, new SizeTPointer(1)).getString(StandardCharsets.UTF_8);
+            FunctionProfile profile = functions.get(name);
+            if (profile == null || profile.checksum != checksum(function))
+                continue;
+            LLVMGlobalSetMetadata(function, prof, node(context, entryCount, constant(i64, profile.counts[0])));
+            // a profile of the function calls only has the count of the entry block
+            if (profile.counts.length == LLVMCountBasicBlocks(function))
+                annotateBranches(context, function, profile.counts, prof, branchWeights, i32);
+            applied.add(profile);
+            annotated++;
+        }
+        if (!applied.isEmpty())
+            addSummary(handle, context, applied, i64);
+        return annotated;
+    }
+
+    /**
+     * Attach branch weights to the conditional branches and switches of a function. The profile only has the
+     * counts of the blocks, so the count of an edge is known exactly if its target has no other incoming edges.
+     * The rest of the count of the source block is divided among the remaining edges in proportion to the counts of
+     * their targets.
+     */
+    private static void annotateBranches(
+        LLVMContextRef context, LLVMValueRef function, long[] counts, int prof, LLVMMetadataRef branchWeights,
+        LLVMTypeRef i32
+    ) {
+        Map<LLVMBasicBlockRef, Integer> indices = indexBlocks(function);
+        int[] incoming = new int[counts.length];
+        for (LLVMBasicBlockRef block : indices.keySet()) {
+            LLVMValueRef terminator = LLVMGetBasicBlockTerminator(block);
+            if (terminator == null || terminator.isNull())
+                continue;
+            for (int i = 0, n = LLVMGetNumSuccessors(terminator); i < n; i++)
+                incoming[indices.get(LLVMGetSuccessor(terminator, i))]++;
+        }
+
+        for (Map.Entry<LLVMBasicBlockRef, Integer> entry : indices.entrySet()) {
+            long count = counts[entry.getValue()];
+            LLVMValueRef terminator = LLVMGetBasicBlockTerminator(entry.getKey());
+            if (count == 0 || terminator == null || terminator.isNull())
+                continue;
+            int opcode = LLVMGetInstructionOpcode(terminator);
+            if (!(opcode == LLVMBr && LLVMIsConditional(terminator) != 0) && opcode != LLVMSwitch)
+                continue;
+
+            int n = LLVMGetNumSuccessors(terminator);
+            long[] weights = new long[n];
+            boolean[] known = new boolean[n];
+            long remaining = count, unknownTotal = 0;
+            for (int i = 0; i < n; i++) {
+                int target = indices.get(LLVMGetSuccessor(terminator, i));
+                if (incoming[target] == 1) {
+                    weights[i] = Math.min(counts[target], count);
+                    known[i] = true;
+                    remaining -= weights[i];
+                } else {
+                    unknownTotal += counts[target];
+                }
+            }
+            remaining = Math.max(0, remaining);
+            for (int i = 0; i < n; i++) {
+                if (known[i] || unknownTotal == 0)
+                    continue;
+                long target = counts[indices.get(LLVMGetSuccessor(terminator, i))];
+                weights[i] = (long) ((double) remaining * target / unknownTotal);
+            }
+
+            // branch weights are 32-bit, so large counts are scaled down uniformly
+            long max = 0;
+            for (long weight : weights)
+                max = Math.max(max, weight);
+            long scale = max / 0xFFFFFFFFL + 1;
+            LLVMMetadataRef[] operands = new LLVMMetadataRef[n + 1];
+            operands[0] = branchWeights;
+            for (int i = 0; i < n; i++)
+                operands[i + 1] = constant(i32, weights[i] / scale);
+            LLVMSetMetadata(terminator, prof, LLVMMetadataAsValue(context, node(context, operands)));
+        }
+    }
+
+    /**
+     * Add the profile summary of the applied functions to the module. The summary tells the optimizer, which
+     * counts are hot or cold in the context of the whole program.
+     */
+    private static void addSummary(
+        LLVMModuleRef module, LLVMContextRef context, List<FunctionProfile> profiles, LLVMTypeRef i64
+    ) {
+        LLVMMetadataRef existing = LLVMGetModuleFlag(module, "ProfileSummary", "ProfileSummary".length());
+        if (existing != null && !existing.isNull())
+            return;
+        int numCounts = 0;
+        long total = 0, maxCount = 0, maxInternalCount = 0, maxFunctionCount = 0;
+        for (FunctionProfile profile : profiles) {
+            numCounts += profile.counts.length;
+            maxFunctionCount = Math.max(maxFunctionCount, profile.counts[0]);
+            for (int i = 0; i < profile.counts.length; i++) {
+                total += profile.counts[i];
+                maxCount = Math.max(maxCount, profile.counts[i]);
+                if (i > 0)
+                    maxInternalCount = Math.max(maxInternalCount, profile.counts[i]);
+            }
+        }
+        if (total == 0)
+            return;
+
+        long[] sorted = new long[numCounts];
+        int index = 0;
+        for (FunctionProfile profile : profiles) {
+            for (long count : profile.counts)
+                sorted[index++] = count;
+        }
+        Arrays.sort(sorted);
+        // the minimum count, that is needed to cover each cutoff of the total count, from the hottest count down
+        LLVMMetadataRef[] detailed = new LLVMMetadataRef[CUTOFFS.length];
+        long sum = 0;
+        int seen = 0;
+        for (int i = 0; i < CUTOFFS.length; i++) {
+            long desired = (long) Math.ceil((double) total * CUTOFFS[i] / 1_000_000);
+            while (seen < sorted.length && sum < desired)
+                sum += sorted[sorted.length - ++seen];
+            detailed[i] = node(
+                context, constant(LLVMInt32TypeInContext(context), CUTOFFS[i]),
+                constant(i64, sorted[sorted.length - Math.max(1, seen)]), constant(i64, seen)
+            );
+        }
+
+        LLVMMetadataRef summary = node(
+            context,
+            node(context, string(context, "ProfileFormat"), string(context, "InstrProf")),
+            field(context, "TotalCount", total, i64),
+            field(context, "MaxCount", maxCount, i64),
+            field(context, "MaxInternalCount", maxInternalCount, i64),
+            field(context, "MaxFunctionCount", maxFunctionCount, i64),
+            field(context, "NumCounts", numCounts, i64),
+            field(context, "NumFunctions", profiles.size(), i64),
+            node(context, string(context, "DetailedSummary"), node(context, detailed))
+        );
+        LLVMAddModuleFlag(
+            module, LLVMModuleFlagBehaviorError, "ProfileSummary", "ProfileSummary".length(), summary
+        );
+    }
+
+    /**
+     * Compute a checksum of the control flow graph of a function, that identifies the blocks the counts of a
+     * profile belong to.
+     */
+    static long checksum(LLVMValueRef function) {
+        Map<LLVMBasicBlockRef, Integer> indices = indexBlocks(function);
+        CRC32 crc = new CRC32();
+        crc.update(indices.size());
+        for (LLVMBasicBlockRef block : indices.keySet()) {
+            LLVMValueRef terminator = LLVMGetBasicBlockTerminator(block);
+            int n = terminator == null || terminator.isNull() ? 0 : LLVMGetNumSuccessors(terminator);
+            crc.update(n);
+            for (int i = 0; i < n; i++) {
+                int successor = indices.get(LLVMGetSuccessor(terminator, i));
+                crc.update(successor);
+                crc.update(successor >>> 8);
+                crc.update(successor >>> 16);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static Map<LLVMBasicBlockRef, Integer> indexBlocks(LLVMValueRef function) {
+        Map<LLVMBasicBlockRef, Integer> indices = new LinkedHashMap<>();
+        for (LLVMBasicBlockRef block = LLVMGetFirstBasicBlock(function); block != null && !block.isNull();
+             block = LLVMGetNextBasicBlock(block))
+            indices.put(block, indices.size());
+        return indices;
+    }
+
+    private static LLVMMetadataRef field(LLVMContextRef context, String key, long value, LLVMTypeRef i64) {
+        return node(context, string(context, key), constant(i64, value));
+    }
+
+    private static LLVMMetadataRef string(LLVMContextRef context, String value) {
+        return LLVMMDStringInContext2(context, value, value.length());
+    }
+
+    private static LLVMMetadataRef constant(LLVMTypeRef type, long value) {
+        return LLVMValueAsMetadata(LLVMConstInt(type, value, 0));
+    }
+
+    private static LLVMMetadataRef node(LLVMContextRef context, LLVMMetadataRef... operands) {
+        PointerPointer<LLVMMetadataRef> array = new PointerPointer<>(operands);
+        try {
+            return LLVMMDNodeInContext2(context, array, operands.length);
+        } finally {
+            array.close();
+        }
+    }
+
+    /**
+     * Retrieve the names of the functions in the profile.
+     *
+     * @return an unmodifiable set of the function names
+     */
+    public Set<String> getFunctions() {
+        return Collections.unmodifiableSet(functions.keySet());
+    }
+
+    /**
+     * Retrieve the number of calls of a function, that have been recorded in the profile.
+     *
+     * @param function the name of the function
+     * @return the entry count of the function
+     * @throws IllegalArgumentException if the function is not in the profile
+     */
+    public long getEntryCount(String function) {
+        return get(function).counts[0];
+    }
+
+    /**
+     * Retrieve the execution counts of the blocks of a function, in the order of the blocks in the function.
+     *
+     * @param function the name of the function
+     * @return a copy of the block counts, or only the entry count if the blocks have not been counted
+     * @throws IllegalArgumentException if the function is not in the profile
+     */
+    public long[] getBlockCounts(String function) {
+        return get(function).counts.clone();
+    }
+
+    private FunctionProfile get(String function) {
+        FunctionProfile profile = functions.get(function);
+        if (profile == null)
+            throw new IllegalArgumentException("Function " + function + " is not in the profile");
+        return profile;
+    }
+
+    private static class FunctionProfile {
+        private final long checksum;
+        private final long[] counts;
+
+        private FunctionProfile(long checksum, long[] counts) {
+            this.checksum = checksum;
+            this.counts = counts;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+
+/**
+ * Represents a low-level variant of {@link IRBuilder}, which takes and returns the raw native addresses of LLVM
+ * handles as {@code long}s, instead of wrapping each of them in an {@link IRValue}.
+ * <br>
+ * The raw builder covers the same instruction set as {@link IRBuilder}, but every instruction is left unnamed.
+ * It is meant for front ends that emit millions of instructions, where the wrapper objects of {@link IRBuilder}
+ * would put pressure on the garbage collector. On Java 22 and newer, building an instruction does not allocate
+ * at all; on older runtimes, a single short-lived handle object is allocated by JavaCPP for each instruction.
+ * <br>
+ * The address of an existing wrapper can be retrieved using {@link #address(IRValue)}, {@link #address(IRType)}
+ * and {@link #address(IRBlock)}, and a raw value can be wrapped again using {@link #value(long)}.
+ * <br>
+ * A raw builder must not be used by multiple threads concurrently.
+ */
+public class IRRawBuilder implements Disposable {
+    private final IRBuilder builder;
+    private final boolean owned;
+    private final RawBuilderNatives natives;
+
+    private boolean disposed;
+
+    IRRawBuilder(IRBuilder builder, boolean owned) {
+        this.builder = builder;
+        this.owned = owned;
+        this.natives = new RawBuilderNatives(builder.getHandle());
+        builder.getContext().manage(this);
+        LeakDetector.track(this);
+    }
+
+    /**
+     * Position the builder at the end of a basic block.
+     *
+     * @param block the address of the basic block
+     */
+    public void positionAtEnd(long block) {
+        natives.positionAtEnd(block);
+    }
+
+    /**
+     * Position the builder before a specific instruction.
+     *
+     * @param instruction the address of the instruction
+     */
+    public void positionBefore(long instruction) {
+        natives.positionBefore(instruction);
+    }
+
+    public long returnValue(long value) {
+        return natives.returnValue(value);
+    }
+
+    public long returnVoid() {
+        return natives.returnVoid();
+    }
+
+    public long add(long left, long right) {
+        return natives.add(left, right);
+    }
+
+    public long addFloat(long left, long right) {
+        return natives.addFloat(left, right);
+    }
+
+    public long addNoSignedWrap(long left, long right) {
+        return natives.addNoSignedWrap(left, right);
+    }
+
+    public long addNoUnsignedWrap(long left, long right) {
+        return natives.addNoUnsignedWrap(left, right);
+    }
+
+    public long subtract(long left, long right) {
+        return natives.subtract(left, right);
+    }
+
+    public long subtractFloat(long left, long right) {
+        return natives.subtractFloat(left, right);
+    }
+
+    public long subtractNoSignedWrap(long left, long right) {
+        return natives.subtractNoSignedWrap(left, right);
+    }
+
+    public long subtractNoUnsignedWrap(long left, long right) {
+        return natives.subtractNoUnsignedWrap(left, right);
+    }
+
+    public long multiply(long left, long right) {
+        return natives.multiply(left, right);
+    }
+
+    public long multiplyFloat(long left, long right) {
+        return natives.multiplyFloat(left, right);
+    }
+
+    public long multiplyNoSignedWrap(long left, long right) {
+        return natives.multiplyNoSignedWrap(left, right);
+    }
+
+    public long multiplyNoUnsignedWrap(long left, long right) {
+        return natives.multiplyNoUnsignedWrap(left, right);
+    }
+
+    public long divideFloat(long left, long right) {
+        return natives.divideFloat(left, right);
+    }
+
+    public long divideSigned(long left, long right) {
+        return natives.divideSigned(left, right);
+    }
+
+    public long divideUnsigned(long left, long right) {
+        return natives.divideUnsigned(left, right);
+    }
+
+    public long divideExactSigned(long left, long right) {
+        return natives.divideExactSigned(left, right);
+    }
+
+    public long divideExactUnsigned(long left, long right) {
+        return natives.divideExactUnsigned(left, right);
+    }
+
+    public long remainderFloat(long left, long right) {
+        return natives.remainderFloat(left, right);
+    }
+
+    public long remainderSigned(long left, long right) {
+        return natives.remainderSigned(left, right);
+    }
+
+    public long remainderUnsigned(long left, long right) {
+        return natives.remainderUnsigned(left, right);
+    }
+
+    public long alloc(long type) {
+        return natives.alloc(type);
+    }
+
+    public long malloc(long type) {
+        return natives.malloc(type);
+    }
+
+    public long free(long pointer) {
+        return natives.free(pointer);
+    }
+
+    public long structMemberPointer(long type, long instance, int memberIndex) {
+        return natives.structMemberPointer(type, instance, memberIndex);
+    }
+
+    public long store(long value, long pointer) {
+        return natives.store(value, pointer);
+    }
+
+    public long load(long type, long pointer) {
+        return natives.load(type, pointer);
+    }
+
+    public long insert(long instance, long value, int memberIndex) {
+        return natives.insert(instance, value, memberIndex);
+    }
+
+    public long extract(long instance, int memberIndex) {
+        return natives.extract(instance, memberIndex);
+    }
+
+    public long compareInt(Comparator comparator, long left, long right) {
+        return natives.compareInt(comparator.getCode(), left, right);
+    }
+
+    public long compareFloat(Comparator comparator, long left, long right) {
+        return natives.compareFloat(comparator.getCode(), left, right);
+    }
+
+    public long jump(long destination) {
+        return natives.jump(destination);
+    }
+
+    public long jumpIf(long condition, long ifBlock, long elseBlock) {
+        return natives.jumpIf(condition, ifBlock, elseBlock);
+    }
+
+    public long and(long left, long right) {
+        return natives.and(left, right);
+    }
+
+    public long or(long left, long right) {
+        return natives.or(left, right);
+    }
+
+    public long negate(long operand) {
+        return natives.negate(operand);
+    }
+
+    public long not(long operand) {
+        return natives.not(operand);
+    }
+
+    public long select(long condition, long ifCase, long elseCase) {
+        return natives.select(condition, ifCase, elseCase);
+    }
+
+    public long signedIntToFloat(long value, long type) {
+        return natives.signedIntToFloat(value, type);
+    }
+
+    public long unsignedIntToFloat(long value, long type) {
+        return natives.unsignedIntToFloat(value, type);
+    }
+
+    public long floatToSignedInt(long value, long type) {
+        return natives.floatToSignedInt(value, type);
+    }
+
+    public long floatToUnsignedInt(long value, long type) {
+        return natives.floatToUnsignedInt(value, type);
+    }
+
+    public long truncate(long value, long type) {
+        return natives.truncate(value, type);
+    }
+
+    public long zeroExtend(long value, long type) {
+        return natives.zeroExtend(value, type);
+    }
+
+    public long signExtend(long value, long type) {
+        return natives.signExtend(value, type);
+    }
+
+    public long floatExtend(long value, long type) {
+        return natives.floatExtend(value, type);
+    }
+
+    public long floatTruncate(long value, long type) {
+        return natives.floatTruncate(value, type);
+    }
+
+    public long pointerCast(long value, long type) {
+        return natives.pointerCast(value, type);
+    }
+
+    public long intCast(long value, long type) {
+        return natives.intCast(value, type);
+    }
+
+    public long floatCast(long value, long type) {
+        return natives.floatCast(value, type);
+    }
+
+    public long bitCast(long value, long type) {
+        return natives.bitCast(value, type);
+    }
+
+    public long intToPointerCast(long value, long type) {
+        return natives.intToPointerCast(value, type);
+    }
+
+    public long pointerToIntCast(long value, long type) {
+        return natives.pointerToIntCast(value, type);
+    }
+
+    public long intCast(long value, long type, boolean isSigned) {
+        return natives.intCast(value, type, isSigned ? 1 : 0);
+    }
+
+    /**
+     * Create a call instruction. The arguments are copied to a native array that is reused by the builder, so
+     * the array of the caller can be reused as well.
+     *
+     * @param functionType the address of the type of the called function
+     * @param function the address of the called function
+     * @param arguments the addresses of the arguments
+     * @param count the number of arguments to pass, from the start of the array
+     * @return the address of the call instruction
+     */
+    public long call(long functionType, long function, long[] arguments, int count) {
+        return natives.call(functionType, function, arguments, count);
+    }
+
+    public long call(long functionType, long function, long[] arguments) {
+        return call(functionType, function, arguments, arguments.length);
+    }
+
+    /**
+     * Free the native resources of the raw builder. The underlying {@link IRBuilder} is only disposed, if it was
+     * created by the raw builder.
+     */
+    @Override
+    public void dispose() {
+        if (disposed)
+            return;
+        disposed = true;
+        builder.getContext().forget(this);
+        LeakDetector.untrack(this);
+        natives.dispose();
+        if (owned)
+            builder.dispose();
+    }
+
+    /**
+     * Retrieve the wrapped builder, that shares its insertion point with this raw builder.
+     *
+     * @return the underlying builder
+     */
+    public IRBuilder getBuilder() {
+        return builder;
+    }
+
+    public IRContext getContext() {
+        return builder.getContext();
+    }
+
+    public static IRRawBuilder create(IRContext context) {
+        return new IRRawBuilder(IRBuilder.create(context), true);
+    }
+
+    /**
+     * Create a raw builder, that emits instructions through an existing builder. The two builders share the same
+     * insertion point, and the existing builder must outlive the raw builder.
+     *
+     * @param builder the builder to emit instructions through
+     * @return a new raw builder
+     */
+    public static IRRawBuilder of(IRBuilder builder) {
+        return new IRRawBuilder(builder, false);
+    }
+
+    public static long address(IRValue value) {
+        return value.getHandle().address();
+    }
+
+    public static long address(IRType type) {
+        return type.getHandle().address();
+    }
+
+    public static long address(IRBlock block) {
+        return block.getHandle().address();
+    }
+
+    /**
+     * Wrap the raw address of a value in an {@link IRValue}.
+     *
+     * @param handle the address of the value
+     * @return a new wrapper of the value
+     */
+    public static IRValue value(long handle) {
+        return new IRValue(new LLVMValueRef(NativePointers.at(handle)));
+    }
+}
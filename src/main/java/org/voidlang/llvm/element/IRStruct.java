@@ -1,7 +1,5 @@
 package org.voidlang.llvm.element;
 
-import org.bytedeco.javacpp.Pointer;
-import org.bytedeco.javacpp.PointerPointer;
 import org.bytedeco.llvm.LLVM.LLVMTypeRef;
 
 import java.util.List;
@@ -14,15 +12,12 @@ public class IRStruct extends IRType {
     }
 
     public IRStruct setMembers(List<IRType> members) {
-        PointerPointer<Pointer> args = new PointerPointer<>(members.size());
-        for (int i = 0; i < members.size(); i++)
-            args.put(i, members.get(i).getHandle());
-        LLVMStructSetBody(getHandle(), args, members.size(), 0);
+        LLVMStructSetBody(getHandle(), PointerArena.types(members), members.size(), 0);
         return this;
     }
 
     public static IRStruct define(IRContext context, String name) {
-        return new IRStruct(LLVMStructCreateNamed(context.getHandle(), name), context);
+        return (IRStruct) context.type(LLVMStructCreateNamed(context.getHandle(), name));
     }
 
     public static IRStruct define(IRContext context, String name, List<IRType> members) {
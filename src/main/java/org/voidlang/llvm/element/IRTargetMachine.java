@@ -0,0 +1,411 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.llvm.LLVM.LLVMMemoryBufferRef;
+import org.bytedeco.llvm.LLVM.LLVMTargetDataRef;
+import org.bytedeco.llvm.LLVM.LLVMTargetMachineRef;
+import org.bytedeco.llvm.LLVM.LLVMTargetRef;
+
+import java.io.File;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Represents a handle to an LLVM target machine, which generates machine code of a module for a specific target
+ * triple and CPU.
+ * <br>
+ * A target machine must not be used by multiple threads concurrently. The target that the machine is created
+ * for must be initialized beforehand, for example using {@code LLVMInitializeNativeTarget()} and
+ * {@code LLVMInitializeNativeAsmPrinter()}.
+ * <br>
+ * Machines created by {@link #createHost(OptLevel)} generate code for the exact CPU of the host, including its
+ * vector extensions, such as AVX2 or AVX-512. The same machine can be used to emit object files, and to create an
+ * {@link IRJit} with {@link IRJit#create(IRTargetMachine)}.
+ */
+public class IRTargetMachine implements Disposable {
+    private final LLVMTargetMachineRef handle;
+    private final String triple;
+    private final String cpu;
+    private final String features;
+    private final OptLevel optLevel;
+    private final RelocMode relocMode;
+    private final CodeModel codeModel;
+
+    private boolean disposed;
+
+    IRTargetMachine(
+        LLVMTargetMachineRef handle, String triple, String cpu, String features, OptLevel optLevel,
+        RelocMode relocMode, CodeModel codeModel
+    ) {
+        this.handle = handle;
+        this.triple = triple;
+        this.cpu = cpu;
+        this.features = features;
+        this.optLevel = optLevel;
+        this.relocMode = relocMode;
+        this.codeModel = codeModel;
+        LeakDetector.track(this);
+    }
+
+    /**
+     * Set the target triple and the data layout of the module to the ones of this target machine. Modules should
+     * be configured before they are optimized, so that the optimizer can take the target into account.
+     *
+     * @param module the module to be configured
+     */
+    public void configure(IRModule module) {
+        LLVMSetTarget(module.getHandle(), triple);
+        LLVMTargetDataRef dataLayout = LLVMCreateTargetDataLayout(handle);
+        LLVMSetModuleDataLayout(module.getHandle(), dataLayout);
+        LLVMDisposeTargetData(dataLayout);
+    }
+
+    /**
+     * Generate the machine code of the module, and write it to the specified file.
+     *
+     * @param module the module to generate the code for
+     * @param file the path of the output file
+     * @param type the type of the output file
+     * @param error the pointer to write the error message to
+     * @return true if the code was emitted successfully
+     */
+    public boolean emitToFile(IRModule module, String file, FileType type, BytePointer error) {
+        module.finishBuild();
+        CompilationEvents.Timer timer = CompilationEvents.start();
+        boolean emitted = LLVMTargetMachineEmitToFile(handle, module.getHandle(), file, type.code, error) == 0;
+        if (timer != null)
+            timer.finish(CompilationEvent.Phase.CODEGEN, module.getName(), module.getFunctionCount());
+        return emitted;
+    }
+
+    /**
+     * Generate the machine code of the module, and write it to the specified file.
+     *
+     * @param module the module to generate the code for
+     * @param file the output file
+     * @param type the type of the output file
+     * @param error the pointer to write the error message to
+     * @return true if the code was emitted successfully
+     */
+    public boolean emitToFile(IRModule module, File file, FileType type, BytePointer error) {
+        return emitToFile(module, file.getAbsoluteFile().toString(), type, error);
+    }
+
+    /**
+     * Generate the machine code of the module into a new memory buffer, without writing it to the disk. The bytes
+     * can be streamed elsewhere with {@link IRMemoryBuffer#writeTo(WritableByteChannel)}.
+     *
+     * @param module the module to generate the code for
+     * @param type the type of the output
+     * @return a new memory buffer holding the object file or the assembly of the module
+     * @throws LLVMException if the code could not be emitted
+     */
+    public IRMemoryBuffer emit(IRModule module, FileType type) {
+        module.finishBuild();
+        CompilationEvents.Timer timer = CompilationEvents.start();
+        LLVMMemoryBufferRef buffer = new LLVMMemoryBufferRef();
+        BytePointer error = new BytePointer((Pointer) null);
+        if (LLVMTargetMachineEmitToMemoryBuffer(handle, module.getHandle(), type.code, error, buffer) != 0) {
+            String message = error.getString();
+            LLVMDisposeMessage(error);
+            throw new LLVMException("Failed to emit module " + module.getName() + ": " + message);
+        }
+        if (timer != null)
+            timer.finish(CompilationEvent.Phase.CODEGEN, module.getName(), module.getFunctionCount());
+        return new IRMemoryBuffer(buffer);
+    }
+
+    @Override
+    public void dispose() {
+        if (disposed)
+            return;
+        disposed = true;
+        LeakDetector.untrack(this);
+        LLVMDisposeTargetMachine(handle);
+    }
+
+    public LLVMTargetMachineRef getHandle() {
+        return handle;
+    }
+
+    public String getTriple() {
+        return triple;
+    }
+
+    public String getCpu() {
+        return cpu;
+    }
+
+    public String getFeatures() {
+        return features;
+    }
+
+    public OptLevel getOptLevel() {
+        return optLevel;
+    }
+
+    public RelocMode getRelocMode() {
+        return relocMode;
+    }
+
+    public CodeModel getCodeModel() {
+        return codeModel;
+    }
+
+    /**
+     * Create a new target machine with the same settings as this one. As target machines are not thread safe,
+     * each thread that generates code should use a copy of its own.
+     *
+     * @return a new target machine
+     */
+    public IRTargetMachine copy() {
+        return create(triple, cpu, features, optLevel, relocMode, codeModel);
+    }
+
+    /**
+     * Create a native target machine with the same settings as this one, without a wrapper. The caller is
+     * responsible for disposing the machine, or transferring its ownership.
+     *
+     * @return the handle of the new target machine
+     */
+    LLVMTargetMachineRef createHandle() {
+        return createHandle(triple, cpu, features, optLevel, relocMode, codeModel);
+    }
+
+    /**
+     * Create a new target machine.
+     *
+     * @param triple the target triple to generate code for
+     * @param cpu the name of the target CPU, such as "generic"
+     * @param features the comma separated list of target features, such as "+avx2"
+     * @param optLevel the optimization level of the code generator
+     * @param relocMode the relocation model of the generated code
+     * @param codeModel the code model of the generated code
+     * @return a new target machine
+     * @throws LLVMException if the target triple is not supported
+     */
+    public static IRTargetMachine create(
+        String triple, String cpu, String features, OptLevel optLevel, RelocMode relocMode, CodeModel codeModel
+    ) {
+        LLVMTargetMachineRef handle = createHandle(triple, cpu, features, optLevel, relocMode, codeModel);
+        return new IRTargetMachine(handle, triple, cpu, features, optLevel, relocMode, codeModel);
+    }
+
+    /**
+     * Create a new target machine, with the default relocation and code models of the target.
+     *
+     * @param triple the target triple to generate code for
+     * @param cpu the name of the target CPU, such as "generic"
+     * @param features the comma separated list of target features, such as "+avx2"
+     * @param optLevel the optimization level of the code generator
+     * @return a new target machine
+     * @throws LLVMException if the target triple is not supported
+     */
+    public static IRTargetMachine create(String triple, String cpu, String features, OptLevel optLevel) {
+        return create(triple, cpu, features, optLevel, RelocMode.DEFAULT, CodeModel.DEFAULT);
+    }
+
+    private static LLVMTargetMachineRef createHandle(
+        String triple, String cpu, String features, OptLevel optLevel, RelocMode relocMode, CodeModel codeModel
+    ) {
+        LLVMTargetRef target = new LLVMTargetRef();
+        BytePointer error = new BytePointer((Pointer) null);
+        if (LLVMGetTargetFromTriple(new BytePointer(triple), target, error) != 0) {
+            String message = error.getString();
+            LLVMDisposeMessage(error);
+            throw new LLVMException(message);
+        }
+        return LLVMCreateTargetMachine(
+            target, triple, cpu, features, optLevel.getCodeGenLevel(), relocMode.code, codeModel.code
+        );
+    }
+
+    /**
+     * Create a new target machine for the host, that generates code for the CPU and the features of the host.
+     *
+     * @param optLevel the optimization level of the code generator
+     * @param relocMode the relocation model of the generated code
+     * @param codeModel the code model of the generated code
+     * @return a new target machine
+     * @throws LLVMException if the host target is not supported
+     */
+    public static IRTargetMachine createHost(OptLevel optLevel, RelocMode relocMode, CodeModel codeModel) {
+        return create(getDefaultTriple(), getHostCpuName(), getHostCpuFeatures(), optLevel, relocMode, codeModel);
+    }
+
+    /**
+     * Create a new target machine for the host, that generates code for the CPU and the features of the host,
+     * with the default relocation and code models.
+     *
+     * @param optLevel the optimization level of the code generator
+     * @return a new target machine
+     * @throws LLVMException if the host target is not supported
+     */
+    public static IRTargetMachine createHost(OptLevel optLevel) {
+        return createHost(optLevel, RelocMode.DEFAULT, CodeModel.DEFAULT);
+    }
+
+    /**
+     * Create a new target machine for the default target triple of the host, and a generic CPU.
+     *
+     * @param optLevel the optimization level of the code generator
+     * @return a new target machine
+     * @throws LLVMException if the default target is not supported
+     */
+    public static IRTargetMachine create(OptLevel optLevel) {
+        return create(getDefaultTriple(), "generic", "", optLevel);
+    }
+
+    /**
+     * Retrieve the target triple that LLVM generates code for by default, which is the triple of the host.
+     *
+     * @return the default target triple
+     */
+    public static String getDefaultTriple() {
+        return consume(LLVMGetDefaultTargetTriple());
+    }
+
+    /**
+     * Retrieve the name of the CPU of the host, such as "skylake-avx512" or "znver3".
+     *
+     * @return the name of the host CPU
+     */
+    public static String getHostCpuName() {
+        return consume(LLVMGetHostCPUName());
+    }
+
+    /**
+     * Retrieve the features supported by the CPU of the host, such as "+avx2,+fma,-avx512f".
+     *
+     * @return the comma separated list of the host CPU features
+     */
+    public static String getHostCpuFeatures() {
+        return consume(LLVMGetHostCPUFeatures());
+    }
+
+    private static String consume(BytePointer message) {
+        String value = message.getString();
+        LLVMDisposeMessage(message);
+        return value;
+    }
+
+    public enum FileType {
+        /**
+         * Textual assembly file
+         */
+        ASSEMBLY(0),
+
+        /**
+         * Relocatable object file
+         */
+        OBJECT(1);
+
+        private final int code;
+
+        FileType(int code) {
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        public static FileType valueOf(int code) {
+            return Arrays.stream(values())
+                .filter(type -> type.code == code)
+                .findFirst()
+                .orElse(null);
+        }
+    }
+
+    public enum RelocMode {
+        /**
+         * The default relocation model of the target
+         */
+        DEFAULT(LLVMRelocDefault),
+
+        /**
+         * Non-relocatable code, that must be loaded at a fixed address
+         */
+        STATIC(LLVMRelocStatic),
+
+        /**
+         * Position independent code
+         */
+        PIC(LLVMRelocPIC),
+
+        /**
+         * Relocatable code, that is not position independent
+         */
+        DYNAMIC_NO_PIC(LLVMRelocDynamicNoPic);
+
+        private final int code;
+
+        RelocMode(int code) {
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        public static RelocMode valueOf(int code) {
+            return Arrays.stream(values())
+                .filter(mode -> mode.code == code)
+                .findFirst()
+                .orElse(null);
+        }
+    }
+
+    public enum CodeModel {
+        /**
+         * The default code model of the target
+         */
+        DEFAULT(LLVMCodeModelDefault),
+
+        /**
+         * The default code model of the target for JIT'd code
+         */
+        JIT_DEFAULT(LLVMCodeModelJITDefault),
+
+        /**
+         * Code and data fit in the lowest 2 GB of the address space
+         */
+        SMALL(LLVMCodeModelSmall),
+
+        /**
+         * Code and data fit in the highest 2 GB of the address space
+         */
+        KERNEL(LLVMCodeModelKernel),
+
+        /**
+         * Code fits in the lowest 2 GB of the address space, and data can be anywhere
+         */
+        MEDIUM(LLVMCodeModelMedium),
+
+        /**
+         * Code and data can be anywhere in the address space
+         */
+        LARGE(LLVMCodeModelLarge);
+
+        private final int code;
+
+        CodeModel(int code) {
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        public static CodeModel valueOf(int code) {
+            return Arrays.stream(values())
+                .filter(model -> model.code == code)
+                .findFirst()
+                .orElse(null);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.llvm.LLVM.LLVMOrcThreadSafeContextRef;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Represents a handle to an OrcJIT thread safe context. It pairs an LLVM context with a lock, so that modules
+ * created in the context can be compiled by the JIT from multiple threads.
+ * <br>
+ * Modules that are passed to an {@link IRJit} must be created in the context returned by {@link #getContext()}.
+ * The underlying context is owned by this thread safe context, therefore it must not be disposed directly.
+ */
+public class IRThreadSafeContext implements Disposable {
+    private final LLVMOrcThreadSafeContextRef handle;
+    private final IRContext context;
+
+    private boolean disposed;
+
+    IRThreadSafeContext(LLVMOrcThreadSafeContextRef handle) {
+        this.handle = handle;
+        this.context = IRContext.of(LLVMOrcThreadSafeContextGetContext(handle));
+        LeakDetector.track(this);
+    }
+
+    /**
+     * Retrieve the LLVM context that is guarded by this thread safe context.
+     *
+     * @return the context to create the JIT modules in
+     */
+    public IRContext getContext() {
+        return context;
+    }
+
+    /**
+     * Dispose the reference of the thread safe context. The underlying context is freed once every
+     * {@link IRThreadSafeModule} that uses it has been disposed as well.
+     * <br>
+     * The builders, and the modules that have not been passed to a JIT, are disposed together with the thread
+     * safe context.
+     */
+    @Override
+    public void dispose() {
+        if (disposed)
+            return;
+        disposed = true;
+        try {
+            context.disposeResources();
+        } finally {
+            context.release();
+            LeakDetector.untrack(this);
+            LLVMOrcDisposeThreadSafeContext(handle);
+        }
+    }
+
+    public LLVMOrcThreadSafeContextRef getHandle() {
+        return handle;
+    }
+
+    public static IRThreadSafeContext create() {
+        return new IRThreadSafeContext(LLVMOrcCreateNewThreadSafeContext());
+    }
+}
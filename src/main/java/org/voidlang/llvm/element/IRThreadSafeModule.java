@@ -0,0 +1,66 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.llvm.LLVM.LLVMOrcThreadSafeModuleRef;
+
+import static org.bytedeco.llvm.global.LLVM.LLVMOrcCreateNewThreadSafeModule;
+import static org.bytedeco.llvm.global.LLVM.LLVMOrcDisposeThreadSafeModule;
+
+/**
+ * Represents a handle to an OrcJIT thread safe module. It pairs an {@link IRModule} with the
+ * {@link IRThreadSafeContext} it was created in.
+ * <br>
+ * Creating a thread safe module takes the ownership of the module, therefore the module must not be disposed
+ * afterward. Adding the thread safe module to an {@link IRJit} transfers the ownership to the JIT.
+ */
+public class IRThreadSafeModule implements Disposable {
+    private final LLVMOrcThreadSafeModuleRef handle;
+    private final IRModule module;
+
+    private boolean disposed;
+
+    IRThreadSafeModule(LLVMOrcThreadSafeModuleRef handle, IRModule module) {
+        this.handle = handle;
+        this.module = module;
+        module.getContext().manage(this);
+        LeakDetector.track(this);
+    }
+
+    public IRModule getModule() {
+        return module;
+    }
+
+    /**
+     * Dispose the thread safe module. It only needs to be called, if the module has not been added to a JIT.
+     */
+    @Override
+    public void dispose() {
+        if (disposed)
+            return;
+        transferOwnership();
+        LLVMOrcDisposeThreadSafeModule(handle);
+    }
+
+    /**
+     * Mark the thread safe module as owned by a JIT, which is going to free the module instead.
+     *
+     * @throws IllegalStateException if the thread safe module has already been disposed
+     */
+    void transferOwnership() {
+        if (disposed)
+            throw new IllegalStateException("The thread safe module has already been disposed");
+        disposed = true;
+        module.getContext().forget(this);
+        LeakDetector.untrack(this);
+    }
+
+    public LLVMOrcThreadSafeModuleRef getHandle() {
+        return handle;
+    }
+
+    public static IRThreadSafeModule create(IRModule module, IRThreadSafeContext context) {
+        // the thread safe module takes the ownership of the module
+        module.finishBuild();
+        module.transferOwnership();
+        return new IRThreadSafeModule(LLVMOrcCreateNewThreadSafeModule(module.getHandle(), context.getHandle()), module);
+    }
+}
@@ -22,6 +22,34 @@ public class IRType {
         return context;
     }
 
+    public int getKind() {
+        return LLVMGetTypeKind(handle);
+    }
+
+    public boolean isVoid() {
+        return getKind() == LLVMVoidTypeKind;
+    }
+
+    public boolean isInteger() {
+        return getKind() == LLVMIntegerTypeKind;
+    }
+
+    public int getIntegerWidth() {
+        return LLVMGetIntTypeWidth(handle);
+    }
+
+    public boolean isFloat() {
+        return getKind() == LLVMFloatTypeKind;
+    }
+
+    public boolean isDouble() {
+        return getKind() == LLVMDoubleTypeKind;
+    }
+
+    public boolean isPointer() {
+        return getKind() == LLVMPointerTypeKind;
+    }
+
     public IRValue constInt(long value, boolean signExtend) {
         return new IRValue(LLVMConstInt(handle, value, signExtend ? 1 : 0));
     }
@@ -46,6 +74,14 @@ public class IRType {
         return type.constInt(value, false);
     }
 
+    /**
+     * Create a generic value of this integer type. Generic values are short-lived, so they are not managed by the
+     * context, and must be disposed by the caller.
+     *
+     * @param value the value of the integer
+     * @param isSigned true if the value is sign extended
+     * @return a new generic value
+     */
     public IRGenericValue genericInt(int value, boolean isSigned) {
         return new IRGenericValue(LLVMCreateGenericValueOfInt(handle, value, isSigned ? 1 : 0));
     }
@@ -55,79 +91,79 @@ public class IRType {
     }
 
     public static IRType int1() {
-        return new IRType(LLVMInt1Type(), IRContext.global());
+        return IRContext.global().type(LLVMInt1Type());
     }
 
     public static IRType int1(IRContext context) {
-        return new IRType(LLVMInt1TypeInContext(context.getHandle()), context);
+        return context.type(LLVMInt1TypeInContext(context.getHandle()));
     }
 
     public static IRType int8() {
-        return new IRType(LLVMInt8Type(), IRContext.global());
+        return IRContext.global().type(LLVMInt8Type());
     }
 
     public static IRType int8(IRContext context) {
-        return new IRType(LLVMInt8TypeInContext(context.getHandle()), context);
+        return context.type(LLVMInt8TypeInContext(context.getHandle()));
     }
 
     public static IRType int16() {
-        return new IRType(LLVMInt16Type(), IRContext.global());
+        return IRContext.global().type(LLVMInt16Type());
     }
 
     public static IRType int16(IRContext context) {
-        return new IRType(LLVMInt16TypeInContext(context.getHandle()), context);
+        return context.type(LLVMInt16TypeInContext(context.getHandle()));
     }
 
     public static IRType int32() {
-        return new IRType(LLVMInt32Type(), IRContext.global());
+        return IRContext.global().type(LLVMInt32Type());
     }
 
     public static IRType int32(IRContext context) {
-        return new IRType(LLVMInt32TypeInContext(context.getHandle()), context);
+        return context.type(LLVMInt32TypeInContext(context.getHandle()));
     }
 
     public static IRType int64() {
-        return new IRType(LLVMInt64Type(), IRContext.global());
+        return IRContext.global().type(LLVMInt64Type());
     }
 
     public static IRType int64(IRContext context) {
-        return new IRType(LLVMInt64TypeInContext(context.getHandle()), context);
+        return context.type(LLVMInt64TypeInContext(context.getHandle()));
     }
 
     public static IRType int128() {
-        return new IRType(LLVMInt128Type(), IRContext.global());
+        return IRContext.global().type(LLVMInt128Type());
     }
 
     public static IRType int128(IRContext context) {
-        return new IRType(LLVMInt128TypeInContext(context.getHandle()), context);
+        return context.type(LLVMInt128TypeInContext(context.getHandle()));
     }
 
     public static IRType floatType() {
-        return new IRType(LLVMFloatType(), IRContext.global());
+        return IRContext.global().type(LLVMFloatType());
     }
 
     public static IRType floatType(IRContext context) {
-        return new IRType(LLVMFloatTypeInContext(context.getHandle()), context);
+        return context.type(LLVMFloatTypeInContext(context.getHandle()));
     }
 
     public static IRType doubleType() {
-        return new IRType(LLVMDoubleType(), IRContext.global());
+        return IRContext.global().type(LLVMDoubleType());
     }
 
     public static IRType doubleType(IRContext context) {
-        return new IRType(LLVMDoubleTypeInContext(context.getHandle()), context);
+        return context.type(LLVMDoubleTypeInContext(context.getHandle()));
     }
 
     public static IRType voidType() {
-        return new IRType(LLVMVoidType(), IRContext.global());
+        return IRContext.global().type(LLVMVoidType());
     }
 
     public static IRType voidType(IRContext context) {
-        return new IRType(LLVMVoidTypeInContext(context.getHandle()), context);
+        return context.type(LLVMVoidTypeInContext(context.getHandle()));
     }
 
     public static IRType pointerType(IRType type, int addressSpace) {
-        return new IRType(LLVMPointerType(type.getHandle(), addressSpace), type.getContext());
+        return type.getContext().type(LLVMPointerType(type.getHandle(), addressSpace));
     }
 
     public static IRType pointerType(IRType type) {
@@ -139,7 +175,7 @@ public class IRType {
     }
 
     public static IRType arrayType(IRType type, int size) {
-        return new IRType(LLVMArrayType(type.getHandle(), size), type.getContext());
+        return type.getContext().type(LLVMArrayType(type.getHandle(), size));
     }
 
     public IRType toArrayType(int size) {
@@ -147,7 +183,7 @@ public class IRType {
     }
 
     public static IRType typeOf(IRValue value) {
-        return new IRType(LLVMTypeOf(value.getHandle()), IRContext.global());
+        return value.typeOf();
     }
 
     public IRValue constNull() {
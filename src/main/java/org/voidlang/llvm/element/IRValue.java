@@ -1,5 +1,6 @@
 package org.voidlang.llvm.element;
 
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
 import org.bytedeco.llvm.LLVM.LLVMValueRef;
 import org.bytedeco.llvm.global.LLVM;
 
@@ -14,11 +15,28 @@ public class IRValue {
         return handle;
     }
 
+    /**
+     * Retrieve the type of the value, which must belong to the specified context.
+     *
+     * @param context the context of the value
+     * @return the interned wrapper of the type
+     * @throws IllegalArgumentException if the value belongs to another context
+     */
     public IRType typeOf(IRContext context) {
-        return new IRType(LLVM.LLVMTypeOf(handle), context);
+        LLVMTypeRef type = LLVM.LLVMTypeOf(handle);
+        if (LLVM.LLVMGetTypeContext(type).address() != context.getHandle().address())
+            throw new IllegalArgumentException("The value does not belong to the specified context");
+        return context.type(type);
     }
 
+    /**
+     * Retrieve the type of the value, in the context that the type belongs to.
+     *
+     * @return the interned wrapper of the type
+     * @throws IllegalStateException if the context of the value has not been created by an {@link IRContext}
+     */
     public IRType typeOf() {
-        return typeOf(IRContext.global());
+        LLVMTypeRef type = LLVM.LLVMTypeOf(handle);
+        return IRContext.lookup(LLVM.LLVMGetTypeContext(type)).type(type);
     }
 }
@@ -0,0 +1,276 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.SizeTPointer;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Compiles each function of a module to an object file of its own, and keeps the objects in an {@link ObjectCache}
+ * keyed by the fingerprints of the functions. When a module is compiled again after some of its functions have
+ * changed, only the machine code of the changed functions is generated, and the objects of the rest are reused.
+ * <br>
+ * The fingerprint of a function is computed by {@link IRModule#getFunctionFingerprints()}. It does not cover the
+ * bodies of the callees, therefore every function is optimized without the bodies of the other functions, and no
+ * function is inlined into another one. The global variables of the module are compiled to an object of their own,
+ * which is only regenerated when any of their definitions change.
+ * <br>
+ * Symbols with internal or private linkage are renamed by the module name, and made external with hidden
+ * visibility, so that the objects can refer to each other. A module should therefore keep its name across the
+ * compilations, otherwise the functions that refer to its local symbols are compiled again. Modules with aliases
+ * or ifuncs are not supported, as those must be compiled together with their targets.
+ * <br>
+ * The objects refer to the globals and functions of each other, and the JIT may map them far apart. The promoted
+ * symbols are hidden, so they are referred to directly instead of through a global offset table, even in position
+ * independent code. Therefore the code is always generated with the large code model and static relocations, whose
+ * absolute addresses reach the whole address space, regardless of the template target machine.
+ */
+public class IncrementalCompiler implements Disposable {
+    private final ObjectCache cache;
+    private final IRTargetMachine machine;
+
+    /**
+     * Create an incremental compiler. The template machine is not consumed, so it must still be disposed by the
+     * caller. The compiler itself is not thread safe, as it generates code with a single target machine.
+     *
+     * @param cache the cache to store the objects of the functions in
+     * @param template the target machine to copy the code generation settings from
+     */
+    public IncrementalCompiler(ObjectCache cache, IRTargetMachine template) {
+        this.cache = cache;
+        this.machine = IRTargetMachine.create(
+            template.getTriple(), template.getCpu(), template.getFeatures(), template.getOptLevel(),
+            IRTargetMachine.RelocMode.STATIC, IRTargetMachine.CodeModel.LARGE
+        );
+    }
+
+    /**
+     * Generate the object files of a module, reusing the cached objects of the functions that have not changed.
+     * The module is not modified, and it must still be disposed by the caller.
+     *
+     * @param module the module to be compiled
+     * @return the object files of the module, and the functions that had to be compiled
+     * @throws IllegalArgumentException if the module defines aliases or ifuncs
+     * @throws LLVMException if a function could not be compiled
+     */
+    public Result compile(IRModule module) {
+        LLVMModuleRef original = module.getHandle();
+        if (!isNull(LLVMGetFirstGlobalAlias(original)) || !isNull(LLVMGetFirstGlobalIFunc(original)))
+            throw new IllegalArgumentException("Module " + module.getName() + " defines aliases or ifuncs");
+
+        // the copy is promoted, so that the fingerprints refer to the same names as the compiled objects
+        IRContext context = IRContext.create();
+        IRMemoryBuffer bitcode = null;
+        try {
+            IRMemoryBuffer source = module.writeBitCodeToFile();
+            IRModule copy;
+            try {
+                copy = IRModule.parseBitcode(context, source);
+            } finally {
+                source.dispose();
+            }
+            LLVMModuleRef handle = copy.getHandle();
+            String tag = "incremental." + module.getName();
+            List<String> names = new ArrayList<>();
+            int index = 0;
+            for (LLVMValueRef function = LLVMGetFirstFunction(handle); !isNull(function);
+                 function = LLVMGetNextFunction(function)) {
+                names.add(LLVMGetValueName2(function, new SizeTPointer(1)).getString(StandardCharsets.UTF_8));
+                ModuleSplitter.promote(function, tag, 'f', index++);
+            }
+            index = 0;
+            boolean hasGlobals = false;
+            for (LLVMValueRef global = LLVMGetFirstGlobal(handle); !isNull(global);
+                 global = LLVMGetNextGlobal(global)) {
+                ModuleSplitter.promote(global, tag, 'g', index++);
+                hasGlobals |= LLVMIsDeclaration(global) == 0;
+            }
+            bitcode = copy.writeBitCodeToFile();
+
+            String settings = ObjectCache.settings(machine);
+            List<Path> objects = new ArrayList<>();
+            List<String> compiled = new ArrayList<>();
+            int functions = 0;
+            index = 0;
+            for (LLVMValueRef function = LLVMGetFirstFunction(handle); !isNull(function);
+                 function = LLVMGetNextFunction(function), index++) {
+                if (LLVMIsDeclaration(function) != 0)
+                    continue;
+                functions++;
+                String key = key(FunctionFingerprint.compute(function), settings);
+                Path file = cache.get(key);
+                if (file == null) {
+                    file = compileUnit(context, bitcode, key, index);
+                    compiled.add(names.get(index));
+                }
+                objects.add(file);
+            }
+            if (hasGlobals) {
+                String key = key(FunctionFingerprint.computeGlobals(handle), settings);
+                Path file = cache.get(key);
+                if (file == null)
+                    file = compileUnit(context, bitcode, key, -1);
+                objects.add(file);
+            }
+            return new Result(objects, compiled, functions);
+        } finally {
+            if (bitcode != null)
+                bitcode.dispose();
+            // disposing the context disposes the copy as well
+            context.dispose();
+        }
+    }
+
+    /**
+     * Compile a module through the cache, and add each of its object files to the JIT. The module is not
+     * modified, and it must still be disposed by the caller.
+     *
+     * @param module the module to be loaded
+     * @param jit the JIT to load the object files into
+     * @return the object files of the module, and the functions that had to be compiled
+     * @throws IllegalArgumentException if the module defines aliases or ifuncs
+     * @throws IllegalStateException if the objects are evicted from the cache before they could be loaded
+     * @throws LLVMException if a function could not be compiled or loaded
+     */
+    public Result load(IRModule module, IRJit jit) {
+        Result result = compile(module);
+        List<IRMemoryBuffer> objects = read(result);
+        if (objects == null) {
+            // an object was evicted concurrently after it had been compiled, so it is compiled once more
+            result = compile(module);
+            objects = read(result);
+            if (objects == null) {
+                throw new IllegalStateException(
+                    "The objects of module " + module.getName() + " were evicted from the cache before being loaded"
+                );
+            }
+        }
+        for (IRMemoryBuffer object : objects)
+            jit.addObjectFile(object);
+        return result;
+    }
+
+    /**
+     * Read the object files of a result into memory buffers.
+     *
+     * @return the memory buffers of the objects, or null if any of them has been evicted
+     */
+    private List<IRMemoryBuffer> read(Result result) {
+        List<IRMemoryBuffer> objects = new ArrayList<>();
+        for (Path file : result.getObjects()) {
+            IRMemoryBuffer object = cache.read(file);
+            if (object == null) {
+                for (IRMemoryBuffer read : objects)
+                    read.dispose();
+                return null;
+            }
+            objects.add(object);
+        }
+        return objects;
+    }
+
+    /**
+     * Generate the object of a single function, or of the global variables if the index is negative, and store
+     * it in the cache. Every other definition of the module is turned into an external declaration.
+     */
+    private Path compileUnit(IRContext context, IRMemoryBuffer bitcode, String key, int keep) {
+        IRModule unit = IRModule.parseBitcode(context, bitcode);
+        try {
+            LLVMModuleRef handle = unit.getHandle();
+            int index = 0;
+            for (LLVMValueRef function = LLVMGetFirstFunction(handle); !isNull(function);
+                 function = LLVMGetNextFunction(function), index++) {
+                if (index != keep && LLVMIsDeclaration(function) == 0)
+                    ModuleSplitter.drop(function);
+            }
+            for (LLVMValueRef global = LLVMGetFirstGlobal(handle); !isNull(global);
+                 global = LLVMGetNextGlobal(global)) {
+                if (keep >= 0 && LLVMIsDeclaration(global) == 0)
+                    ModuleSplitter.drop(global);
+            }
+            // remove the bodies of the other functions before optimizing, so none of them is inlined
+            unit.optimize("elim-avail-extern");
+            machine.configure(unit);
+            unit.optimize(machine.getOptLevel(), machine);
+            return cache.put(key, unit, machine);
+        } finally {
+            unit.dispose();
+        }
+    }
+
+    private static String key(String fingerprint, String settings) {
+        return ObjectCache.toHex(
+            ObjectCache.sha256().digest((fingerprint + '\0' + settings).getBytes(StandardCharsets.UTF_8))
+        );
+    }
+
+    private static boolean isNull(LLVMValueRef value) {
+        return value == null || value.isNull();
+    }
+
+    /**
+     * Dispose the target machine of the compiler. The cached objects are kept.
+     */
+    @Override
+    public void dispose() {
+        machine.dispose();
+    }
+
+    public ObjectCache getCache() {
+        return cache;
+    }
+
+    public IRTargetMachine getMachine() {
+        return machine;
+    }
+
+    /**
+     * Represents the outcome of an incremental compilation.
+     */
+    public static final class Result {
+        private final List<Path> objects;
+        private final List<String> compiledFunctions;
+        private final int functionCount;
+
+        private Result(List<Path> objects, List<String> compiledFunctions, int functionCount) {
+            this.objects = Collections.unmodifiableList(objects);
+            this.compiledFunctions = Collections.unmodifiableList(compiledFunctions);
+            this.functionCount = functionCount;
+        }
+
+        /**
+         * Retrieve the cached object files of the module, one per function definition, followed by the object of
+         * the global variables, if the module defines any.
+         *
+         * @return an unmodifiable list of the object files
+         */
+        public List<Path> getObjects() {
+            return objects;
+        }
+
+        /**
+         * Retrieve the names of the functions, whose machine code had to be generated, as they were not cached.
+         *
+         * @return an unmodifiable list of the compiled function names
+         */
+        public List<String> getCompiledFunctions() {
+            return compiledFunctions;
+        }
+
+        /**
+         * Retrieve the number of function objects, that have been reused from the cache.
+         *
+         * @return the number of reused functions
+         */
+        public int getReusedCount() {
+            return functionCount - compiledFunctions.size();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.llvm.LLVM.LLVMErrorRef;
+
+import static org.bytedeco.llvm.global.LLVM.LLVMDisposeErrorMessage;
+import static org.bytedeco.llvm.global.LLVM.LLVMGetErrorMessage;
+
+/**
+ * Represents a failure reported by an LLVM API that returns an {@code LLVMErrorRef}, such as the OrcJIT or the
+ * new pass manager functions.
+ * <br>
+ * LLVM errors must always be consumed, otherwise LLVM aborts the process. Use {@link #check(LLVMErrorRef)} to
+ * consume the error and rethrow its message as a Java exception.
+ */
+public class LLVMException extends RuntimeException {
+    public LLVMException(String message) {
+        super(message);
+    }
+
+    /**
+     * Consume the specified LLVM error, and throw it as an {@link LLVMException} if it represents a failure.
+     *
+     * @param error the error returned by an LLVM function, or null if the operation succeeded
+     * @throws LLVMException if the error represents a failure
+     */
+    public static void check(LLVMErrorRef error) {
+        if (error == null || error.isNull())
+            return;
+        // LLVMGetErrorMessage takes the ownership of the error, so it does not need to be consumed anymore
+        BytePointer message = LLVMGetErrorMessage(error);
+        String text = message.getString();
+        LLVMDisposeErrorMessage(message);
+        throw new LLVMException(text);
+    }
+}
@@ -0,0 +1,318 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.SizeTPointer;
+import org.bytedeco.llvm.LLVM.LLVMErrorRef;
+import org.bytedeco.llvm.LLVM.LLVMJITSymbolFlags;
+import org.bytedeco.llvm.LLVM.LLVMMemoryBufferRef;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMOrcCSymbolAliasMapEntry;
+import org.bytedeco.llvm.LLVM.LLVMOrcCSymbolAliasMapPair;
+import org.bytedeco.llvm.LLVM.LLVMOrcCSymbolFlagsMapPair;
+import org.bytedeco.llvm.LLVM.LLVMOrcJITDylibRef;
+import org.bytedeco.llvm.LLVM.LLVMOrcMaterializationResponsibilityRef;
+import org.bytedeco.llvm.LLVM.LLVMOrcMaterializationUnitDestroyFunction;
+import org.bytedeco.llvm.LLVM.LLVMOrcMaterializationUnitDiscardFunction;
+import org.bytedeco.llvm.LLVM.LLVMOrcMaterializationUnitMaterializeFunction;
+import org.bytedeco.llvm.LLVM.LLVMOrcMaterializationUnitRef;
+import org.bytedeco.llvm.LLVM.LLVMOrcSymbolStringPoolEntryRef;
+import org.bytedeco.llvm.LLVM.LLVMPassBuilderOptionsRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Defines the functions and global variables of a module in a JIT, without compiling them. Each function is
+ * compiled on its own, the first time it is called.
+ * <br>
+ * The module is written to bitcode, in which every definition is marked available externally. The JIT dylib gets
+ * a materialization unit for each definition, that defines the body of a function under the name of the function
+ * with a {@code $body} suffix, and a lazy reexport for each function, that points to a call-through stub. When a
+ * stub is called for the first time, the JIT looks up the body, and the unit loads the bitcode lazily, restores
+ * the linkage of its definition, drops the rest of them, and reads only the body of its definition from the
+ * bitcode.
+ * <br>
+ * The functions call each other through the stubs, so calling a function does not compile its callees until they
+ * are called as well. Global variables are compiled when a function that refers to them is compiled.
+ */
+final class LazyModule implements Disposable {
+    /**
+     * The lazy modules that are currently alive, by the identifiers that are passed to the unit callbacks.
+     */
+    private static final Map<Long, LazyModule> modules = new ConcurrentHashMap<>();
+    private static final AtomicLong nextId = new AtomicLong(1);
+
+    private static final Materializer MATERIALIZER = new Materializer();
+    private static final Discarder DISCARDER = new Discarder();
+    private static final Destroyer DESTROYER = new Destroyer();
+
+    private static final String BODY_SUFFIX = "$body";
+
+    private final IRJit jit;
+    private final String name;
+    private final IRMemoryBuffer bitcode;
+    private final long id;
+    private final Definition[] definitions;
+
+    private LazyModule(IRJit jit, String name, IRMemoryBuffer bitcode, long id, Definition[] definitions) {
+        this.jit = jit;
+        this.name = name;
+        this.bitcode = bitcode;
+        this.id = id;
+        this.definitions = definitions;
+    }
+
+    /**
+     * Define the symbols of a module in the main JIT dylib of a JIT, and take the ownership of the module. The
+     * module is disposed once it has been written to bitcode, even if the operation fails.
+     *
+     * @param jit the JIT to define the symbols in
+     * @param module the module to be compiled lazily
+     * @throws IllegalArgumentException if the module has aliases or ifuncs, or its data layout differs from the
+     * one of the JIT
+     * @throws LLVMException if a symbol of the module is already defined in the JIT
+     */
+    static void define(IRJit jit, IRModule module) {
+        module.finishBuild();
+        LLVMModuleRef handle = module.getHandle();
+        long id = nextId.getAndIncrement();
+        List<Definition> definitions = new ArrayList<>();
+        try {
+            // aliases must be defined together with their targets, which defeats compiling functions separately
+            if (!isNull(LLVMGetFirstGlobalAlias(handle)) || !isNull(LLVMGetFirstGlobalIFunc(handle))) {
+                throw new IllegalArgumentException(
+                    "Module " + module.getName() + " has aliases, therefore it cannot be compiled lazily"
+                );
+            }
+            // the extracted modules skip the layout check of addModule, so it is done before writing the bitcode
+            jit.applyTarget(module);
+            int index = 0;
+            for (LLVMValueRef function = LLVMGetFirstFunction(handle); !isNull(function);
+                 function = LLVMGetNextFunction(function), index++) {
+                if (!isDefinition(function))
+                    continue;
+                ModuleSplitter.promote(function, "lazy" + id, 'f', index);
+                definitions.add(new Definition(hide(function), true));
+            }
+            index = 0;
+            for (LLVMValueRef global = LLVMGetFirstGlobal(handle), next; !isNull(global); global = next, index++) {
+                next = LLVMGetNextGlobal(global);
+                // the constructor and used lists would be appended to each other by every compiled function
+                if (LLVMGetLinkage(global) == LLVMAppendingLinkage) {
+                    LLVMDeleteGlobal(global);
+                    continue;
+                }
+                if (!isDefinition(global))
+                    continue;
+                ModuleSplitter.promote(global, "lazy" + id, 'g', index);
+                definitions.add(new Definition(hide(global), false));
+            }
+        } catch (RuntimeException e) {
+            module.dispose();
+            throw e;
+        }
+        IRMemoryBuffer bitcode = module.writeBitCodeToFile();
+        String name = module.getName();
+        module.dispose();
+
+        LazyModule lazy = new LazyModule(jit, name, bitcode, id, definitions.toArray(new Definition[0]));
+        jit.manage(lazy);
+        modules.put(id, lazy);
+        lazy.define();
+    }
+
+    /**
+     * Define a materialization unit for each definition, and a lazy reexport for each function.
+     */
+    private void define() {
+        LLVMOrcJITDylibRef dylib = jit.getMainDylib();
+        LLVMJITSymbolFlags functionFlags = flags(LLVMJITSymbolGenericFlagsExported | LLVMJITSymbolGenericFlagsCallable);
+        LLVMJITSymbolFlags variableFlags = flags(LLVMJITSymbolGenericFlagsExported);
+        LLVMOrcCSymbolFlagsMapPair symbol = new LLVMOrcCSymbolFlagsMapPair(1);
+        List<Integer> functions = new ArrayList<>();
+        for (int i = 0; i < definitions.length; i++) {
+            Definition definition = definitions[i];
+            String symbolName = definition.function ? definition.name + BODY_SUFFIX : definition.name;
+            symbol.Name(LLVMOrcLLJITMangleAndIntern(jit.getHandle(), symbolName))
+                .Flags(definition.function ? functionFlags : variableFlags);
+            // the callback context identifies both the module and the definition
+            long key = id << 32 | i;
+            define(dylib, LLVMOrcCreateCustomMaterializationUnit(
+                name + ":" + definition.name, new Pointer() {{ address = key; }}, symbol, 1, null,
+                MATERIALIZER, DISCARDER, DESTROYER
+            ));
+            if (definition.function)
+                functions.add(i);
+        }
+        if (functions.isEmpty())
+            return;
+
+        // the reexports take over the references of both names of each alias
+        LLVMOrcCSymbolAliasMapPair aliases = new LLVMOrcCSymbolAliasMapPair(functions.size());
+        for (int i = 0; i < functions.size(); i++) {
+            String function = definitions[functions.get(i)].name;
+            LLVMOrcCSymbolAliasMapEntry entry = new LLVMOrcCSymbolAliasMapEntry()
+                .Name(LLVMOrcLLJITMangleAndIntern(jit.getHandle(), function + BODY_SUFFIX))
+                .Flags(functionFlags);
+            aliases.getPointer(i).Name(LLVMOrcLLJITMangleAndIntern(jit.getHandle(), function)).Entry(entry);
+        }
+        define(dylib, LLVMOrcLazyReexports(
+            jit.getCallThroughManager(), jit.getStubsManager(), dylib, aliases, functions.size()
+        ));
+    }
+
+    private static void define(LLVMOrcJITDylibRef dylib, LLVMOrcMaterializationUnitRef unit) {
+        LLVMErrorRef error = LLVMOrcJITDylibDefine(dylib, unit);
+        if (error != null && !error.isNull()) {
+            // the unit is only consumed by the dylib, if it was defined successfully
+            LLVMOrcDisposeMaterializationUnit(unit);
+            LLVMException.check(error);
+        }
+    }
+
+    /**
+     * Compile a definition, and emit it for the responsibility of its unit.
+     */
+    private void materialize(Definition definition, LLVMOrcMaterializationResponsibilityRef responsibility) {
+        IRThreadSafeContext context = IRThreadSafeContext.create();
+        try {
+            IRThreadSafeModule module = IRThreadSafeModule.create(extract(context.getContext(), definition), context);
+            // the responsibility and the module are consumed by the layer, that compiles the module
+            module.transferOwnership();
+            LLVMOrcIRTransformLayerEmit(
+                LLVMOrcLLJITGetIRTransformLayer(jit.getHandle()), responsibility, module.getHandle()
+            );
+        } finally {
+            context.dispose();
+        }
+    }
+
+    /**
+     * Create a module, that holds a single definition, and declares everything else that it refers to.
+     */
+    private IRModule extract(IRContext context, Definition definition) {
+        // the lazy module takes the ownership of the view, and reads the function bodies from it on demand
+        LLVMMemoryBufferRef view = LLVMCreateMemoryBufferWithMemoryRange(
+            bitcode.getBufferStart(), bitcode.size(), new BytePointer(name), 0
+        );
+        LLVMModuleRef lazy = new LLVMModuleRef();
+        if (LLVMGetBitcodeModuleInContext2(context.getHandle(), view, lazy) != 0)
+            throw new LLVMException("Failed to load the bitcode of lazy module " + name);
+        IRModule module;
+        try {
+            LLVMValueRef value = definition.function
+                ? LLVMGetNamedFunction(lazy, definition.name)
+                : LLVMGetNamedGlobal(lazy, definition.name);
+            LLVMSetLinkage(value, LLVMExternalLinkage);
+            // the pass drops the other definitions without reading their bodies from the bitcode
+            LLVMPassBuilderOptionsRef options = LLVMCreatePassBuilderOptions();
+            try {
+                LLVMException.check(LLVMRunPasses(lazy, "elim-avail-extern", null, options));
+            } finally {
+                LLVMDisposePassBuilderOptions(options);
+            }
+            module = IRModule.create(context, name + ":" + definition.name);
+        } catch (RuntimeException e) {
+            LLVMDisposeModule(lazy);
+            throw e;
+        }
+        // linking reads the remaining body from the bitcode, consumes the lazy module, and copies its target
+        if (LLVMLinkModules2(module.getHandle(), lazy) != 0) {
+            module.dispose();
+            throw new LLVMException("Failed to load " + definition.name + " from lazy module " + name);
+        }
+        if (definition.function) {
+            byte[] body = (definition.name + BODY_SUFFIX).getBytes(StandardCharsets.UTF_8);
+            LLVMSetValueName2(LLVMGetNamedFunction(module.getHandle(), definition.name), new BytePointer(body), body.length);
+        }
+        return module;
+    }
+
+    @Override
+    public void dispose() {
+        modules.remove(id);
+        bitcode.dispose();
+    }
+
+    private static boolean isDefinition(LLVMValueRef value) {
+        return LLVMIsDeclaration(value) == 0 && LLVMGetLinkage(value) != LLVMAvailableExternallyLinkage;
+    }
+
+    /**
+     * Mark a definition to be dropped from the modules, that do not request it. The symbols are reached through
+     * the JIT dylib, so they get default visibility.
+     *
+     * @return the name of the definition
+     */
+    private static String hide(LLVMValueRef value) {
+        LLVMSetComdat(value, null);
+        LLVMSetLinkage(value, LLVMAvailableExternallyLinkage);
+        LLVMSetVisibility(value, LLVMDefaultVisibility);
+        return LLVMGetValueName2(value, new SizeTPointer(1)).getString(StandardCharsets.UTF_8);
+    }
+
+    private static LLVMJITSymbolFlags flags(int genericFlags) {
+        return new LLVMJITSymbolFlags().GenericFlags((byte) genericFlags).TargetFlags((byte) 0);
+    }
+
+    private static boolean isNull(LLVMValueRef value) {
+        return value == null || value.isNull();
+    }
+
+    private static class Definition {
+        private final String name;
+        private final boolean function;
+
+        private Definition(String name, boolean function) {
+            this.name = name;
+            this.function = function;
+        }
+    }
+
+    /**
+     * Compiles a definition of a lazy module. Failures are reported to the uncaught exception handler, and
+     * fail the lookup that requested the symbols.
+     */
+    private static class Materializer extends LLVMOrcMaterializationUnitMaterializeFunction {
+        @Override
+        public void call(Pointer context, LLVMOrcMaterializationResponsibilityRef responsibility) {
+            LazyModule module = modules.get(context.address() >>> 32);
+            try {
+                if (module == null)
+                    throw new IllegalStateException("The lazy module has already been disposed");
+                module.materialize(module.definitions[(int) context.address()], responsibility);
+            } catch (RuntimeException e) {
+                LLVMOrcMaterializationResponsibilityFailMaterialization(responsibility);
+                LLVMOrcDisposeMaterializationResponsibility(responsibility);
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /**
+     * Ignores the symbols that are overridden, as they are never requested from the unit afterward.
+     */
+    private static class Discarder extends LLVMOrcMaterializationUnitDiscardFunction {
+        @Override
+        public void call(Pointer context, LLVMOrcJITDylibRef dylib, LLVMOrcSymbolStringPoolEntryRef symbol) {
+        }
+    }
+
+    /**
+     * Releases nothing, as the bitcode is shared by the units of a module, and it is disposed together with the JIT.
+     */
+    private static class Destroyer extends LLVMOrcMaterializationUnitDestroyFunction {
+        @Override
+        public void call(Pointer context) {
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.voidlang.llvm.element;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the native resources that have been created but not disposed yet, for finding leaks in test runs.
+ * <br>
+ * Leak detection records the stack trace of every allocation, so it is disabled by default. It is enabled by
+ * starting the JVM with {@code -Dvoidlang.llvm.leakDetection=true}. When disabled, tracking costs nothing.
+ */
+public final class LeakDetector {
+    /**
+     * The system property that enables leak detection.
+     */
+    public static final String PROPERTY = "voidlang.llvm.leakDetection";
+
+    private static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+    private static final Map<Disposable, Throwable> resources = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private LeakDetector() {
+    }
+
+    static void track(Disposable resource) {
+        if (ENABLED)
+            resources.put(resource, new Throwable(resource.getClass().getSimpleName() + " was allocated here"));
+    }
+
+    static void untrack(Disposable resource) {
+        if (ENABLED)
+            resources.remove(resource);
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Retrieve the allocation traces of the resources, that have not been disposed yet.
+     *
+     * @return the stack traces of the live resources, or an empty list if leak detection is disabled
+     */
+    public static List<Throwable> getLiveResources() {
+        synchronized (resources) {
+            return new ArrayList<>(resources.values());
+        }
+    }
+
+    /**
+     * Check that every tracked resource has been disposed.
+     *
+     * @throws IllegalStateException if a resource has not been disposed, with the allocation traces of the leaked
+     * resources attached as suppressed exceptions
+     */
+    public static void check() {
+        List<Throwable> leaks = getLiveResources();
+        if (leaks.isEmpty())
+            return;
+        IllegalStateException exception = new IllegalStateException(leaks.size() + " native resources were leaked");
+        for (Throwable leak : leaks)
+            exception.addSuppressed(leak);
+        throw exception;
+    }
+}
@@ -17,6 +17,14 @@ public class MMCJITCompilerOptions {
         return handle.OptLevel();
     }
 
+    public void setCodeModel(IRTargetMachine.CodeModel model) {
+        handle.CodeModel(model.getCode());
+    }
+
+    public IRTargetMachine.CodeModel getCodeModel() {
+        return IRTargetMachine.CodeModel.valueOf(handle.CodeModel());
+    }
+
     public LLVMMCJITCompilerOptions getHandle() {
         return handle;
     }
@@ -24,4 +32,18 @@ public class MMCJITCompilerOptions {
     public static MMCJITCompilerOptions create() {
         return new MMCJITCompilerOptions(new LLVMMCJITCompilerOptions());
     }
+
+    /**
+     * Create compiler options with the optimization level and the code model of a target machine. MCJIT does not
+     * take the CPU of the machine into account, so host tuned code requires an {@link IRJit} instead.
+     *
+     * @param machine the target machine to take the settings from
+     * @return new compiler options
+     */
+    public static MMCJITCompilerOptions create(IRTargetMachine machine) {
+        MMCJITCompilerOptions options = create();
+        options.setOptLevel(machine.getOptLevel().getCodeGenLevel());
+        options.setCodeModel(machine.getCodeModel());
+        return options;
+    }
 }
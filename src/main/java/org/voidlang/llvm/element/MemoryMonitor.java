@@ -0,0 +1,126 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.Pointer;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reports the native memory held by a set of named contexts and JITs, either on demand, or periodically from a
+ * background thread.
+ * <br>
+ * Taking a snapshot never walks the IR, so it is safe while other threads are building modules. The contexts are
+ * reported with the sizes of their modules as of their last measurement, see {@link IRContext#measure()}.
+ * <br>
+ * The monitor is thread safe.
+ */
+public class MemoryMonitor implements Disposable {
+    private final Map<String, IRContext> contexts = new ConcurrentHashMap<>();
+    private final Map<String, IRJit> jits = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Include a context in the snapshots of the monitor.
+     *
+     * @param name the name to report the context by
+     * @param context the context to be tracked
+     * @return this monitor
+     */
+    public MemoryMonitor track(String name, IRContext context) {
+        contexts.put(name, context);
+        return this;
+    }
+
+    /**
+     * Include a JIT in the snapshots of the monitor.
+     *
+     * @param name the name to report the JIT by
+     * @param jit the JIT to be tracked
+     * @return this monitor
+     */
+    public MemoryMonitor track(String name, IRJit jit) {
+        jits.put(name, jit);
+        return this;
+    }
+
+    /**
+     * Stop tracking the context or JIT with the specified name.
+     *
+     * @param name the name of the context or JIT
+     */
+    public void untrack(String name) {
+        contexts.remove(name);
+        jits.remove(name);
+    }
+
+    /**
+     * Take a snapshot of the native memory usage of the process and of the tracked contexts and JITs.
+     *
+     * @return the current memory usage
+     */
+    public MemorySnapshot snapshot() {
+        Map<String, Long> contextSizes = new TreeMap<>();
+        for (Map.Entry<String, IRContext> entry : contexts.entrySet())
+            contextSizes.put(entry.getKey(), entry.getValue().getEstimatedSize());
+        Map<String, Long> codeSizes = new TreeMap<>();
+        Map<String, Long> dataSizes = new TreeMap<>();
+        for (Map.Entry<String, IRJit> entry : jits.entrySet()) {
+            codeSizes.put(entry.getKey(), entry.getValue().getCodeSize());
+            dataSizes.put(entry.getKey(), entry.getValue().getDataSize());
+        }
+        return new MemorySnapshot(
+            System.currentTimeMillis(), Pointer.totalBytes(), Pointer.physicalBytes(),
+            Collections.unmodifiableMap(contextSizes), Collections.unmodifiableMap(codeSizes),
+            Collections.unmodifiableMap(dataSizes)
+        );
+    }
+
+    /**
+     * Start taking snapshots periodically on a background daemon thread, and pass them to the listener. Exceptions
+     * thrown by the listener are reported to the uncaught exception handler, and do not stop the monitor.
+     *
+     * @param period the time between two snapshots
+     * @param unit the unit of the period
+     * @param listener the consumer of the snapshots
+     * @throws IllegalStateException if the monitor has already been started
+     */
+    public synchronized void start(long period, TimeUnit unit, Consumer<MemorySnapshot> listener) {
+        if (scheduler != null)
+            throw new IllegalStateException("Memory monitor has already been started");
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "llvm-memory-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                listener.accept(snapshot());
+            } catch (RuntimeException e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }, 0, period, unit);
+    }
+
+    /**
+     * Stop taking periodic snapshots. The monitor can be started again afterward.
+     */
+    public synchronized void stop() {
+        if (scheduler == null)
+            return;
+        scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    @Override
+    public void dispose() {
+        stop();
+    }
+}
@@ -0,0 +1,117 @@
+package org.voidlang.llvm.element;
+
+import java.util.Map;
+
+/**
+ * Represents the native memory usage of the process, and of the contexts and JITs tracked by a
+ * {@link MemoryMonitor}, at a point in time.
+ * <br>
+ * The sizes of the contexts are estimated from the IR of their modules, as of the last measurement of each module.
+ * The sizes of the JITs are the sizes of the code and data sections, that the JITs have linked.
+ */
+public final class MemorySnapshot {
+    private final long timestamp;
+    private final long javacppBytes;
+    private final long physicalBytes;
+    private final Map<String, Long> contextSizes;
+    private final Map<String, Long> jitCodeSizes;
+    private final Map<String, Long> jitDataSizes;
+
+    MemorySnapshot(
+        long timestamp, long javacppBytes, long physicalBytes, Map<String, Long> contextSizes,
+        Map<String, Long> jitCodeSizes, Map<String, Long> jitDataSizes
+    ) {
+        this.timestamp = timestamp;
+        this.javacppBytes = javacppBytes;
+        this.physicalBytes = physicalBytes;
+        this.contextSizes = contextSizes;
+        this.jitCodeSizes = jitCodeSizes;
+        this.jitDataSizes = jitDataSizes;
+    }
+
+    /**
+     * Retrieve the time when the snapshot was taken.
+     *
+     * @return the time of the snapshot in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Retrieve the number of bytes, that have been allocated by JavaCPP pointers and not deallocated yet. This
+     * covers the native arrays and strings passed to LLVM, but not the memory allocated by LLVM itself.
+     *
+     * @return the size of the live JavaCPP allocations in bytes
+     */
+    public long getJavaCppBytes() {
+        return javacppBytes;
+    }
+
+    /**
+     * Retrieve the physical memory used by the process, which includes the Java heap as well.
+     *
+     * @return the resident set size of the process in bytes
+     */
+    public long getPhysicalBytes() {
+        return physicalBytes;
+    }
+
+    /**
+     * Retrieve the estimated sizes of the tracked contexts.
+     *
+     * @return an unmodifiable map of the estimated context sizes in bytes, by the names of the contexts
+     */
+    public Map<String, Long> getContextSizes() {
+        return contextSizes;
+    }
+
+    /**
+     * Retrieve the sizes of the code sections of the tracked JITs.
+     *
+     * @return an unmodifiable map of the code sizes in bytes, by the names of the JITs
+     */
+    public Map<String, Long> getJitCodeSizes() {
+        return jitCodeSizes;
+    }
+
+    /**
+     * Retrieve the sizes of the data sections of the tracked JITs.
+     *
+     * @return an unmodifiable map of the data sizes in bytes, by the names of the JITs
+     */
+    public Map<String, Long> getJitDataSizes() {
+        return jitDataSizes;
+    }
+
+    /**
+     * Retrieve the total native memory attributed to the tracked contexts and JITs.
+     *
+     * @return the sum of the context, code and data sizes in bytes
+     */
+    public long getTrackedBytes() {
+        long total = 0;
+        for (long size : contextSizes.values())
+            total += size;
+        for (long size : jitCodeSizes.values())
+            total += size;
+        for (long size : jitDataSizes.values())
+            total += size;
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("MemorySnapshot{timestamp=").append(timestamp)
+            .append(", javacppBytes=").append(javacppBytes)
+            .append(", physicalBytes=").append(physicalBytes)
+            .append(", trackedBytes=").append(getTrackedBytes());
+        for (Map.Entry<String, Long> entry : contextSizes.entrySet())
+            builder.append(", context ").append(entry.getKey()).append('=').append(entry.getValue());
+        for (Map.Entry<String, Long> entry : jitCodeSizes.entrySet()) {
+            builder.append(", jit ").append(entry.getKey()).append("={code=").append(entry.getValue())
+                .append(", data=").append(jitDataSizes.get(entry.getKey())).append('}');
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,175 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.SizeTPointer;
+import org.bytedeco.llvm.LLVM.LLVMComdatRef;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Partitions the functions of a module into groups, that can be compiled to separate object files in parallel.
+ * <br>
+ * The module is written to bitcode once, and each partition parses the bitcode into a context of its own, so the
+ * partitions can be prepared and compiled on different threads. Every partition keeps the definitions of its own
+ * functions, and turns the rest of the functions into external declarations. Global variables are defined by the
+ * first partition only.
+ * <br>
+ * The linker keeps or discards the members of a comdat group together, so every member of a comdat is assigned to
+ * the same partition, which keeps the comdat. Comdats with global variables are assigned to the first partition.
+ * <br>
+ * Symbols with internal or private linkage are renamed uniquely and made external with hidden visibility, so that
+ * the partitions can refer to each other, but the symbols are still not exported from the linked image.
+ */
+final class ModuleSplitter implements Disposable {
+    private static final AtomicLong nextId = new AtomicLong();
+
+    private final IRMemoryBuffer bitcode;
+    private final int[] partitionOf;
+    private final int partitions;
+    private final long id = nextId.incrementAndGet();
+
+    private ModuleSplitter(IRMemoryBuffer bitcode, int[] partitionOf, int partitions) {
+        this.bitcode = bitcode;
+        this.partitionOf = partitionOf;
+        this.partitions = partitions;
+    }
+
+    /**
+     * Assign the functions of a module to partitions, balanced by the number of their basic blocks. The module
+     * is not modified, and it can be disposed once the splitter is created.
+     *
+     * @param module the module to be split
+     * @param partitions the maximum number of partitions
+     * @return a new splitter of the module
+     */
+    static ModuleSplitter create(IRModule module, int partitions) {
+        if (partitions < 1)
+            throw new IllegalArgumentException("The number of partitions must be positive");
+        LLVMModuleRef handle = module.getHandle();
+        // aliases must be defined together with their targets, so such modules are not split
+        if (!isNull(LLVMGetFirstGlobalAlias(handle)) || !isNull(LLVMGetFirstGlobalIFunc(handle)))
+            partitions = 1;
+
+        int functions = 0, definitions = 0;
+        for (LLVMValueRef function = LLVMGetFirstFunction(handle); !isNull(function);
+             function = LLVMGetNextFunction(function)) {
+            functions++;
+            if (LLVMIsDeclaration(function) == 0)
+                definitions++;
+        }
+        partitions = Math.max(1, Math.min(partitions, definitions));
+
+        // the comdats by their addresses, with the partition that their members are assigned to
+        Map<Long, Integer> comdats = new HashMap<>();
+        for (LLVMValueRef global = LLVMGetFirstGlobal(handle); !isNull(global); global = LLVMGetNextGlobal(global)) {
+            LLVMComdatRef comdat = LLVMGetComdat(global);
+            if (LLVMIsDeclaration(global) == 0 && comdat != null && !comdat.isNull())
+                comdats.put(comdat.address(), 0);
+        }
+
+        // assign each function to the partition of its comdat, or to the partition with the fewest blocks so far
+        int[] partitionOf = new int[functions];
+        long[] load = new long[partitions];
+        int index = 0;
+        for (LLVMValueRef function = LLVMGetFirstFunction(handle); !isNull(function);
+             function = LLVMGetNextFunction(function), index++) {
+            if (LLVMIsDeclaration(function) != 0) {
+                partitionOf[index] = -1;
+                continue;
+            }
+            LLVMComdatRef comdat = LLVMGetComdat(function);
+            Integer assigned = comdat == null || comdat.isNull() ? null : comdats.get(comdat.address());
+            int partition = assigned != null ? assigned : lightest(load);
+            if (comdat != null && !comdat.isNull())
+                comdats.put(comdat.address(), partition);
+            partitionOf[index] = partition;
+            load[partition] += LLVMCountBasicBlocks(function) + 1;
+        }
+        return new ModuleSplitter(module.writeBitCodeToFile(), partitionOf, partitions);
+    }
+
+    private static int lightest(long[] load) {
+        int lightest = 0;
+        for (int i = 1; i < load.length; i++) {
+            if (load[i] < load[lightest])
+                lightest = i;
+        }
+        return lightest;
+    }
+
+    int getPartitionCount() {
+        return partitions;
+    }
+
+    /**
+     * Create the module of a partition in the specified context. This method is safe to call from multiple
+     * threads, as long as each of them uses a context of its own.
+     *
+     * @param context the context to create the module in
+     * @param partition the index of the partition
+     * @return the module of the partition
+     */
+    IRModule partition(IRContext context, int partition) {
+        IRModule module = IRModule.parseBitcode(context, bitcode);
+        LLVMModuleRef handle = module.getHandle();
+        int index = 0;
+        for (LLVMValueRef function = LLVMGetFirstFunction(handle); !isNull(function);
+             function = LLVMGetNextFunction(function), index++) {
+            promote(function, "split" + id, 'f', index);
+            if (partitionOf[index] >= 0 && partitionOf[index] != partition)
+                drop(function);
+        }
+        index = 0;
+        for (LLVMValueRef global = LLVMGetFirstGlobal(handle); !isNull(global);
+             global = LLVMGetNextGlobal(global), index++) {
+            promote(global, "split" + id, 'g', index);
+            if (partition != 0 && LLVMIsDeclaration(global) == 0)
+                drop(global);
+        }
+        // the pass turns the dropped definitions into declarations, and releases their bodies
+        module.optimize("elim-avail-extern");
+        return module;
+    }
+
+    /**
+     * Rename a symbol with local linkage uniquely, and make it visible to the other modules that the module is
+     * split into. The tag must be unique to the module being split.
+     */
+    static void promote(LLVMValueRef value, String tag, char kind, int index) {
+        int linkage = LLVMGetLinkage(value);
+        if (linkage != LLVMInternalLinkage && linkage != LLVMPrivateLinkage)
+            return;
+        String current = LLVMGetValueName2(value, new SizeTPointer(1)).getString(StandardCharsets.UTF_8);
+        // functions and global variables are numbered separately, so their generated names must differ
+        String renamed = current.isEmpty() ? "__" + tag + "." + kind + index : current + "." + tag;
+        byte[] bytes = renamed.getBytes(StandardCharsets.UTF_8);
+        LLVMSetValueName2(value, new BytePointer(bytes), bytes.length);
+        LLVMSetLinkage(value, LLVMExternalLinkage);
+        LLVMSetVisibility(value, LLVMHiddenVisibility);
+    }
+
+    /**
+     * Mark a definition to be replaced with a declaration, because it belongs to another partition. Declarations
+     * cannot be members of a comdat, so only the definitions of the partition that owns the comdat keep it.
+     */
+    static void drop(LLVMValueRef value) {
+        LLVMSetComdat(value, null);
+        LLVMSetLinkage(value, LLVMAvailableExternallyLinkage);
+    }
+
+    @Override
+    public void dispose() {
+        bitcode.dispose();
+    }
+
+    private static boolean isNull(LLVMValueRef value) {
+        return value == null || value.isNull();
+    }
+}
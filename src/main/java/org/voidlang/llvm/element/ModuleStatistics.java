@@ -0,0 +1,133 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Represents the size of the IR of a module, measured by counting its functions, blocks, instructions and globals.
+ * <br>
+ * LLVM does not report how much memory a module uses, so the size is estimated from the typical size of the IR
+ * objects on 64-bit hosts. Metadata, constants and value names are not included, so the real footprint is usually
+ * somewhat larger, but the estimate grows linearly with it.
+ */
+public final class ModuleStatistics {
+    private static final long FUNCTION_SIZE = 128;
+    private static final long ARGUMENT_SIZE = 40;
+    private static final long BLOCK_SIZE = 80;
+    private static final long INSTRUCTION_SIZE = 64;
+    private static final long OPERAND_SIZE = 32;
+    private static final long GLOBAL_SIZE = 96;
+
+    private final int functions;
+    private final int blocks;
+    private final long instructions;
+    private final long operands;
+    private final int globals;
+    private final long estimatedSize;
+
+    private ModuleStatistics(int functions, int arguments, int blocks, long instructions, long operands, int globals) {
+        this.functions = functions;
+        this.blocks = blocks;
+        this.instructions = instructions;
+        this.operands = operands;
+        this.globals = globals;
+        this.estimatedSize = functions * FUNCTION_SIZE + arguments * ARGUMENT_SIZE + blocks * BLOCK_SIZE
+            + instructions * INSTRUCTION_SIZE + operands * OPERAND_SIZE + globals * GLOBAL_SIZE;
+    }
+
+    /**
+     * Retrieve the number of functions defined in the module, excluding declarations.
+     *
+     * @return the number of function definitions
+     */
+    public int getFunctionCount() {
+        return functions;
+    }
+
+    /**
+     * Retrieve the number of basic blocks in the function definitions of the module.
+     *
+     * @return the number of basic blocks
+     */
+    public int getBlockCount() {
+        return blocks;
+    }
+
+    /**
+     * Retrieve the number of instructions in the basic blocks of the module.
+     *
+     * @return the number of instructions
+     */
+    public long getInstructionCount() {
+        return instructions;
+    }
+
+    /**
+     * Retrieve the total number of operands of the instructions of the module.
+     *
+     * @return the number of instruction operands
+     */
+    public long getOperandCount() {
+        return operands;
+    }
+
+    /**
+     * Retrieve the number of global variables in the module, including declarations.
+     *
+     * @return the number of global variables
+     */
+    public int getGlobalCount() {
+        return globals;
+    }
+
+    /**
+     * Retrieve the estimated number of native bytes that the IR of the module occupies.
+     *
+     * @return the estimated size of the module in bytes
+     */
+    public long getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    @Override
+    public String toString() {
+        return "ModuleStatistics{functions=" + functions + ", blocks=" + blocks + ", instructions=" + instructions
+            + ", globals=" + globals + ", estimatedSize=" + estimatedSize + "}";
+    }
+
+    /**
+     * Count the IR objects of a module. The walk visits every instruction, so it takes time linear in the size of
+     * the module, and it must not run concurrently with other changes to the module.
+     *
+     * @param module the handle of the module to be measured
+     * @return the statistics of the module
+     */
+    static ModuleStatistics measure(LLVMModuleRef module) {
+        int functions = 0, arguments = 0, blocks = 0, globals = 0;
+        long instructions = 0, operands = 0;
+        for (LLVMValueRef function = LLVMGetFirstFunction(module); function != null && !function.isNull();
+             function = LLVMGetNextFunction(function)) {
+            arguments += LLVMCountParams(function);
+            if (LLVMIsDeclaration(function) != 0)
+                continue;
+            functions++;
+            for (LLVMBasicBlockRef block = LLVMGetFirstBasicBlock(function); block != null && !block.isNull();
+                 block = LLVMGetNextBasicBlock(block)) {
+                blocks++;
+                for (LLVMValueRef instruction = LLVMGetFirstInstruction(block);
+                     instruction != null && !instruction.isNull();
+                     instruction = LLVMGetNextInstruction(instruction)) {
+                    instructions++;
+                    operands += LLVMGetNumOperands(instruction);
+                }
+            }
+        }
+        for (LLVMValueRef global = LLVMGetFirstGlobal(module); global != null && !global.isNull();
+             global = LLVMGetNextGlobal(global))
+            globals++;
+        return new ModuleStatistics(functions, arguments, blocks, instructions, operands, globals);
+    }
+}
@@ -0,0 +1,41 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Utility methods for accessing raw native addresses, such as the addresses of JIT'd symbols.
+ */
+final class NativePointers {
+    private NativePointers() {
+    }
+
+    /**
+     * Create a pointer, that points to the specified native address. The pointer does not own the memory.
+     *
+     * @param value the native address to point to
+     * @return a new pointer to the address
+     */
+    static Pointer at(long value) {
+        return new Pointer() {{
+            address = value;
+        }};
+    }
+
+    /**
+     * Create a direct, native ordered byte buffer over a region of native memory, without copying it.
+     *
+     * @param address the native address of the region
+     * @param size the size of the region in bytes
+     * @return a new byte buffer that reads and writes the native memory directly
+     * @throws IllegalArgumentException if the region is larger than a byte buffer can address
+     */
+    static ByteBuffer view(long address, long size) {
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Cannot view " + size + " bytes of native memory in a single buffer");
+        // the capacity of a buffer view is measured in elements, therefore the view must be byte sized
+        return new BytePointer(at(address)).capacity(size).asByteBuffer();
+    }
+}
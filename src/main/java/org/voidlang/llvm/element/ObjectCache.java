@@ -0,0 +1,299 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.bytedeco.llvm.global.LLVM.LLVMCreateMemoryBufferWithMemoryRangeCopy;
+import static org.bytedeco.llvm.global.LLVM.LLVMDisposeMessage;
+import static org.bytedeco.llvm.global.LLVM.LLVMGetVersion;
+
+/**
+ * Represents a persistent cache of compiled object files on the local disk. Objects are keyed by a fingerprint of
+ * the bitcode of a module, combined with the target triple, CPU, features and optimization level that the module
+ * was compiled with.
+ * <br>
+ * On a cache hit, the stored object file is loaded into the JIT directly, so neither the optimizer nor the code
+ * generator has to run again. The total size of the cache is capped, and the least recently used objects are
+ * evicted when the cap is exceeded.
+ * <br>
+ * The cache is safe to use from multiple threads and multiple processes sharing the same directory.
+ */
+public class ObjectCache {
+    private static final String EXTENSION = ".o";
+
+    private final Path directory;
+    private final long maxSize;
+    private final AtomicLong size = new AtomicLong();
+
+    public ObjectCache(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        try {
+            Files.createDirectories(directory);
+            for (CachedObject object : listObjects())
+                size.addAndGet(object.size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open object cache at " + directory, e);
+        }
+    }
+
+    /**
+     * Compute the cache key of a module, that is going to be compiled by the specified target machine. The
+     * module must be complete, as any later change to its IR invalidates the key.
+     *
+     * @param module the module to compute the key of
+     * @param machine the target machine that generates the code of the module
+     * @return the hexadecimal SHA-256 fingerprint of the module and the code generation settings
+     */
+    public String key(IRModule module, IRTargetMachine machine) {
+        MessageDigest digest = sha256();
+        IRMemoryBuffer bitcode = module.writeBitCodeToFile();
+        try {
+            digest.update(NativePointers.view(bitcode.getBufferStart().address(), bitcode.size()));
+        } finally {
+            bitcode.dispose();
+        }
+        digest.update(settings(machine).getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Describe the LLVM version and the code generation settings of a target machine, that the cached objects
+     * depend on. The relocation and code models are included, as they change the generated code as well.
+     */
+    static String settings(IRTargetMachine machine) {
+        int[] major = new int[1], minor = new int[1], patch = new int[1];
+        LLVMGetVersion(major, minor, patch);
+        return major[0] + "." + minor[0] + "." + patch[0] + '\0' + machine.getTriple() + '\0'
+            + machine.getCpu() + '\0' + machine.getFeatures() + '\0' + machine.getOptLevel() + '\0'
+            + machine.getRelocMode() + '\0' + machine.getCodeModel();
+    }
+
+    /**
+     * Retrieve the path of the cached object file with the specified key, and mark it as recently used.
+     *
+     * @param key the cache key of the object
+     * @return the path of the object file, or null if the object is not cached
+     */
+    public Path get(String key) {
+        Path file = directory.resolve(key + EXTENSION);
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return file;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to access cached object " + file, e);
+        }
+    }
+
+    /**
+     * Load a module into the JIT through the cache. On a cache hit, the stored object file is added to the JIT.
+     * On a miss, the module is configured for the target machine, optimized, emitted to the cache, and the new
+     * object file is added to the JIT.
+     * <br>
+     * The module is not consumed, therefore it must still be disposed by the caller. It may be modified by the
+     * optimizer, if the object was not cached.
+     *
+     * @param module the module to be loaded
+     * @param machine the target machine that generates the code of the module
+     * @param jit the JIT to load the object file into
+     * @return true if the object was found in the cache, false if it had to be compiled
+     * @throws LLVMException if the module could not be compiled or loaded
+     */
+    public boolean load(IRModule module, IRTargetMachine machine, IRJit jit) {
+        String key = key(module, machine);
+        Path file = get(key);
+        // the object may be evicted by another thread or process, right after it has been found
+        IRMemoryBuffer object = file == null ? null : read(file);
+        boolean hit = object != null;
+        if (!hit) {
+            machine.configure(module);
+            module.optimize(machine.getOptLevel(), machine);
+            object = read(put(key, module, machine));
+            if (object == null)
+                object = machine.emit(module, IRTargetMachine.FileType.OBJECT);
+        }
+        jit.addObjectFile(object);
+        return hit;
+    }
+
+    /**
+     * Read a cached object file into a new memory buffer. An object that is evicted concurrently, before it could
+     * be read, is treated as a cache miss.
+     *
+     * @param file the path of the cached object file
+     * @return a new memory buffer holding the object, or null if the object no longer exists
+     * @throws UncheckedIOException if the object file could not be read
+     */
+    IRMemoryBuffer read(Path file) {
+        // the open channel keeps reading the contents, even if the file is deleted in the meantime
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE)
+                throw new IllegalStateException("Cached object " + file + " is too large (" + length + " bytes)");
+            BytePointer contents = new BytePointer(Math.max(1, length));
+            try {
+                ByteBuffer buffer = contents.capacity(length).asByteBuffer();
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0)
+                        throw new IOException("Cached object " + file + " was truncated while reading");
+                }
+                return new IRMemoryBuffer(LLVMCreateMemoryBufferWithMemoryRangeCopy(
+                    contents, length, new BytePointer(file.getFileName().toString())
+                ));
+            } finally {
+                contents.close();
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read cached object " + file, e);
+        }
+    }
+
+    /**
+     * Generate the object file of a module, and store it in the cache with the specified key.
+     *
+     * @param key the cache key of the object
+     * @param module the module to generate the code for
+     * @param machine the target machine that generates the code of the module
+     * @return the path of the cached object file
+     * @throws LLVMException if the object file could not be emitted
+     */
+    public Path put(String key, IRModule module, IRTargetMachine machine) {
+        Path file = directory.resolve(key + EXTENSION);
+        Path temporary = null;
+        try {
+            // emit to a temporary file first, so that other readers never observe a partially written object
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            BytePointer error = new BytePointer((Pointer) null);
+            if (!machine.emitToFile(module, temporary.toString(), IRTargetMachine.FileType.OBJECT, error)) {
+                String message = error.getString();
+                LLVMDisposeMessage(error);
+                throw new LLVMException("Failed to emit module " + module.getName() + ": " + message);
+            }
+            long objectSize = Files.size(temporary);
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temporary = null;
+            if (size.addAndGet(objectSize) > maxSize)
+                evict(file);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store cached object " + file, e);
+        } finally {
+            // the temporary file is only left, if the object could not be emitted or moved into place
+            if (temporary != null)
+                deleteQuietly(temporary);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // a leftover temporary file is never read, as it does not have the extension of the objects
+        }
+    }
+
+    /**
+     * Delete the least recently used objects, until the total size of the cache fits in its cap.
+     *
+     * @param keep the object that has just been stored, which must not be evicted
+     */
+    private synchronized void evict(Path keep) throws IOException {
+        List<CachedObject> objects = listObjects();
+        long total = 0;
+        for (CachedObject object : objects)
+            total += object.size;
+        objects.sort((first, second) -> Long.compare(first.lastUsed, second.lastUsed));
+        for (CachedObject object : objects) {
+            if (total <= maxSize)
+                break;
+            if (!object.file.equals(keep) && Files.deleteIfExists(object.file))
+                total -= object.size;
+        }
+        size.set(total);
+    }
+
+    private List<CachedObject> listObjects() throws IOException {
+        List<CachedObject> objects = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : stream) {
+                try {
+                    objects.add(new CachedObject(file, Files.size(file), Files.getLastModifiedTime(file).toMillis()));
+                } catch (NoSuchFileException ignored) {
+                    // the object has been evicted by another process
+                }
+            }
+        }
+        return objects;
+    }
+
+    /**
+     * Retrieve the total size of the cached object files.
+     *
+     * @return the size of the cache in bytes
+     */
+    public long size() {
+        return size.get();
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return builder.toString();
+    }
+
+    private static class CachedObject {
+        private final Path file;
+        private final long size;
+        private final long lastUsed;
+
+        private CachedObject(Path file, long size, long lastUsed) {
+            this.file = file;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.voidlang.llvm.element;
+
+public enum OptLevel {
+    /** Disable as many optimizations as possible */
+    O0("default<O0>", 0),
+
+    /** Optimize quickly without destroying debuggability */
+    O1("default<O1>", 1),
+
+    /** Optimize for fast execution as much as possible without triggering significant incremental compile time or code size growth */
+    O2("default<O2>", 2),
+
+    /** Optimize for fast execution as much as possible */
+    O3("default<O3>", 3),
+
+    /** Similar to O2 but tries to optimize for small code size instead of fast execution without triggering significant incremental execution time slowdowns */
+    Os("default<Os>", 2),
+
+    /** A very specialized mode that will optimize for code size at any and all costs */
+    Oz("default<Oz>", 2);
+
+    private final String pipeline;
+    private final int codeGenLevel;
+
+    OptLevel(String pipeline, int codeGenLevel) {
+        this.pipeline = pipeline;
+        this.codeGenLevel = codeGenLevel;
+    }
+
+    /**
+     * Retrieve the new pass manager pipeline description of the optimization level.
+     *
+     * @return the textual pass pipeline, such as "default&lt;O2&gt;"
+     */
+    public String getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Retrieve the code generator optimization level that matches the optimization level.
+     *
+     * @return the LLVMCodeGenOptLevel value, between 0 and 3
+     */
+    public int getCodeGenLevel() {
+        return codeGenLevel;
+    }
+
+    /**
+     * Indicate, whether the optimization level prefers small code size over execution speed.
+     *
+     * @return true for Os and Oz
+     */
+    public boolean isSizeLevel() {
+        return this == Os || this == Oz;
+    }
+}
@@ -0,0 +1,280 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.bytedeco.llvm.global.LLVM.LLVMDisposeMessage;
+
+/**
+ * Compiles a batch of modules on multiple threads. {@link IRContext}s are not thread safe, therefore every job
+ * builds its module in a context of its own, on a worker thread of the compiler.
+ * <br>
+ * Each job is built, verified, optimized and then either emitted to an object file, or added to an {@link IRJit}.
+ * Every worker thread uses a target machine of its own for code generation.
+ * <br>
+ * A single large module can also be split into partitions, whose code is generated in parallel, see
+ * {@link #compileSplit(IRModule, int)}.
+ */
+public class ParallelCompiler implements Disposable {
+    private final ExecutorService executor;
+    private final OptLevel optLevel;
+
+    private final ThreadLocal<IRTargetMachine> targetMachines;
+    private final Queue<IRTargetMachine> createdMachines = new ConcurrentLinkedQueue<>();
+
+    public ParallelCompiler(int threads, OptLevel optLevel) {
+        this.executor = Executors.newFixedThreadPool(threads, new WorkerFactory());
+        this.optLevel = optLevel;
+        this.targetMachines = ThreadLocal.withInitial(() -> {
+            IRTargetMachine machine = IRTargetMachine.create(optLevel);
+            createdMachines.add(machine);
+            return machine;
+        });
+    }
+
+    /**
+     * Create a compiler, whose worker threads generate code with copies of the specified target machine. The
+     * machine is not consumed, so it must still be disposed by the caller.
+     *
+     * @param threads the number of worker threads
+     * @param template the target machine to copy the code generation settings from
+     */
+    public ParallelCompiler(int threads, IRTargetMachine template) {
+        this.executor = Executors.newFixedThreadPool(threads, new WorkerFactory());
+        this.optLevel = template.getOptLevel();
+        this.targetMachines = ThreadLocal.withInitial(() -> {
+            IRTargetMachine machine = template.copy();
+            createdMachines.add(machine);
+            return machine;
+        });
+    }
+
+    public ParallelCompiler(OptLevel optLevel) {
+        this(Runtime.getRuntime().availableProcessors(), optLevel);
+    }
+
+    /**
+     * Build, verify and optimize a module on a worker thread, and emit it to an object file.
+     *
+     * @param name the name of the module
+     * @param job the job that generates the IR of the module
+     * @param output the object file to write the machine code to
+     * @return a future that completes with the output file, once the object file has been written
+     */
+    public CompletableFuture<File> compile(String name, Job job, File output) {
+        return CompletableFuture.supplyAsync(() -> {
+            IRContext context = IRContext.create();
+            try {
+                IRModule module = IRModule.create(context, name);
+                IRTargetMachine machine = targetMachines.get();
+                build(module, job, machine);
+                BytePointer error = new BytePointer((Pointer) null);
+                if (!machine.emitToFile(module, output, IRTargetMachine.FileType.OBJECT, error))
+                    throw new LLVMException("Failed to emit module " + name + ": " + consume(error));
+                return output;
+            } finally {
+                // disposing the context disposes the module as well
+                context.dispose();
+            }
+        }, executor);
+    }
+
+    /**
+     * Build, verify and optimize a batch of modules in parallel, and emit each of them to an object file.
+     *
+     * @param jobs the jobs that generate the IR of the modules, mapped by the names of the modules
+     * @param directory the directory to write the object files to, named after the modules
+     * @return the futures of the object files, in the iteration order of the jobs
+     */
+    public List<CompletableFuture<File>> compileAll(Map<String, Job> jobs, File directory) {
+        List<CompletableFuture<File>> results = new ArrayList<>(jobs.size());
+        for (Map.Entry<String, Job> entry : jobs.entrySet())
+            results.add(compile(entry.getKey(), entry.getValue(), new File(directory, entry.getKey() + ".o")));
+        return results;
+    }
+
+    /**
+     * Build, verify and optimize a module on a worker thread, and add it to the specified JIT. The module is
+     * created in a thread safe context of its own.
+     *
+     * @param name the name of the module
+     * @param job the job that generates the IR of the module
+     * @param jit the JIT to add the module to
+     * @return a future that completes, once the module has been added to the JIT
+     */
+    public CompletableFuture<Void> compile(String name, Job job, IRJit jit) {
+        return CompletableFuture.runAsync(() -> {
+            IRThreadSafeContext context = IRThreadSafeContext.create();
+            try {
+                IRModule module = IRModule.create(context.getContext(), name);
+                try {
+                    build(module, job, targetMachines.get());
+                } catch (RuntimeException e) {
+                    module.dispose();
+                    throw e;
+                }
+                jit.addModule(module, context);
+            } finally {
+                // the JIT keeps the context alive, as long as it holds the module
+                context.dispose();
+            }
+        }, executor);
+    }
+
+    /**
+     * Build, verify and optimize a batch of modules in parallel, and add each of them to the specified JIT.
+     *
+     * @param jobs the jobs that generate the IR of the modules, mapped by the names of the modules
+     * @param jit the JIT to add the modules to
+     * @return the futures of the modules, in the iteration order of the jobs
+     */
+    public List<CompletableFuture<Void>> compileAll(Map<String, Job> jobs, IRJit jit) {
+        List<CompletableFuture<Void>> results = new ArrayList<>(jobs.size());
+        for (Map.Entry<String, Job> entry : jobs.entrySet())
+            results.add(compile(entry.getKey(), entry.getValue(), jit));
+        return results;
+    }
+
+    /**
+     * Split a module into partitions of its functions, and generate the object file of each partition on a worker
+     * thread. References across the partitions are kept as external declarations, which are resolved when the
+     * object files are linked together.
+     * <br>
+     * The module should already be verified and optimized, as the partitions are only compiled. It is not modified,
+     * and it can be disposed as soon as this method returns.
+     *
+     * @param module the module to be compiled
+     * @param partitions the maximum number of partitions, which is reduced for modules with fewer functions
+     * @return a future that completes with the object files of the partitions, which must be disposed by the
+     * caller
+     */
+    public CompletableFuture<List<IRMemoryBuffer>> compileSplit(IRModule module, int partitions) {
+        ModuleSplitter splitter = ModuleSplitter.create(module, partitions);
+        List<CompletableFuture<IRMemoryBuffer>> objects = new ArrayList<>(splitter.getPartitionCount());
+        for (int i = 0; i < splitter.getPartitionCount(); i++) {
+            int partition = i;
+            objects.add(CompletableFuture.supplyAsync(() -> {
+                IRContext context = IRContext.create();
+                try {
+                    IRModule part = splitter.partition(context, partition);
+                    return targetMachines.get().emit(part, IRTargetMachine.FileType.OBJECT);
+                } finally {
+                    context.dispose();
+                }
+            }, executor));
+        }
+        return CompletableFuture.allOf(objects.toArray(new CompletableFuture[0])).handle((ignored, failure) -> {
+            splitter.dispose();
+            List<IRMemoryBuffer> results = new ArrayList<>(objects.size());
+            for (CompletableFuture<IRMemoryBuffer> object : objects) {
+                if (!object.isCompletedExceptionally())
+                    results.add(object.join());
+            }
+            if (failure == null)
+                return results;
+            // do not leak the objects of the partitions that have been compiled successfully
+            for (IRMemoryBuffer result : results)
+                result.dispose();
+            throw failure instanceof CompletionException ? (CompletionException) failure
+                : new CompletionException(failure);
+        });
+    }
+
+    /**
+     * Split a module into partitions of its functions, generate the object file of each partition on a worker
+     * thread, and add the object files to the specified JIT.
+     *
+     * @param module the module to be compiled
+     * @param partitions the maximum number of partitions, which is reduced for modules with fewer functions
+     * @param jit the JIT to add the object files to
+     * @return a future that completes, once every object file has been added to the JIT
+     * @see #compileSplit(IRModule, int)
+     */
+    public CompletableFuture<Void> compileSplit(IRModule module, int partitions, IRJit jit) {
+        return compileSplit(module, partitions).thenAccept(objects -> {
+            for (int i = 0; i < objects.size(); i++) {
+                try {
+                    jit.addObjectFile(objects.get(i));
+                } catch (RuntimeException e) {
+                    for (int j = i + 1; j < objects.size(); j++)
+                        objects.get(j).dispose();
+                    throw e;
+                }
+            }
+        });
+    }
+
+    private void build(IRModule module, Job job, IRTargetMachine machine) {
+        machine.configure(module);
+        job.build(module);
+
+        BytePointer error = new BytePointer((Pointer) null);
+        if (!module.verify(IRModule.VerifierFailureAction.RETURN_STATUS, error))
+            throw new LLVMException("Failed to verify module " + module.getName() + ": " + consume(error));
+        consume(error);
+
+        module.optimize(optLevel, machine);
+    }
+
+    private static String consume(BytePointer message) {
+        if (message.isNull())
+            return "";
+        String value = message.getString();
+        LLVMDisposeMessage(message);
+        return value;
+    }
+
+    /**
+     * Shut down the worker threads after the pending jobs are completed, and dispose the target machines.
+     */
+    @Override
+    public void dispose() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IRTargetMachine machine;
+        while ((machine = createdMachines.poll()) != null)
+            machine.dispose();
+    }
+
+    public OptLevel getOptLevel() {
+        return optLevel;
+    }
+
+    /**
+     * Represents a job, that generates the IR of a module. The job is called on a worker thread, and must only
+     * use the context of the module that it is given.
+     */
+    @FunctionalInterface
+    public interface Job {
+        void build(IRModule module);
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "void-compiler-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
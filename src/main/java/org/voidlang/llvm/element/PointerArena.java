@@ -0,0 +1,62 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.PointerPointer;
+
+import java.util.List;
+
+/**
+ * Provides reusable native arrays of handles, for passing the arguments of calls, the parameters of function types
+ * and the members of structs to LLVM, without allocating new native memory for each operation.
+ * <br>
+ * Each thread has an array of its own, which grows to the largest size requested on the thread. An array that is
+ * returned is only valid until the next request on the same thread, therefore it must be passed to LLVM right away,
+ * and must not be retained.
+ */
+final class PointerArena {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final ThreadLocal<PointerArena> arenas = ThreadLocal.withInitial(PointerArena::new);
+
+    private PointerPointer<Pointer> array = new PointerPointer<>(INITIAL_CAPACITY);
+
+    private PointerArena() {
+    }
+
+    /**
+     * Fill the array of the current thread with the handles of the specified values.
+     *
+     * @param values the values to pass to LLVM
+     * @return the array of the current thread holding the value handles
+     */
+    static PointerPointer<Pointer> values(List<? extends IRValue> values) {
+        int size = values.size();
+        PointerPointer<Pointer> array = arenas.get().reserve(size);
+        for (int i = 0; i < size; i++)
+            array.put(i, values.get(i).getHandle());
+        return array;
+    }
+
+    /**
+     * Fill the array of the current thread with the handles of the specified types.
+     *
+     * @param types the types to pass to LLVM
+     * @return the array of the current thread holding the type handles
+     */
+    static PointerPointer<Pointer> types(List<? extends IRType> types) {
+        int size = types.size();
+        PointerPointer<Pointer> array = arenas.get().reserve(size);
+        for (int i = 0; i < size; i++)
+            array.put(i, types.get(i).getHandle());
+        return array;
+    }
+
+    private PointerPointer<Pointer> reserve(int size) {
+        if (array.capacity() < size) {
+            long capacity = Math.max(size, array.capacity() * 2);
+            array.close();
+            array = new PointerPointer<>(capacity);
+        }
+        return array;
+    }
+}
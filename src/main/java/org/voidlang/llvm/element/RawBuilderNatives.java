@@ -0,0 +1,311 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.LongPointer;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Calls the LLVM builder functions for an {@link IRRawBuilder}, with raw handles.
+ * <br>
+ * The operands are passed to JavaCPP through reusable handle objects, whose addresses are overwritten before
+ * each call, and every instruction is left unnamed, so no name has to be encoded. JavaCPP still allocates one
+ * object for the handle that each function returns. The multi-release variant of this class for Java 22 calls
+ * the functions through the Foreign Function &amp; Memory API instead, which does not allocate at all.
+ */
+final class RawBuilderNatives {
+    private static final BytePointer EMPTY_NAME = new BytePointer("");
+
+    private final LLVMBuilderRef builder;
+
+    // reusable operand handles, whose addresses are overwritten before each call
+    private final Value first = new Value();
+    private final Value second = new Value();
+    private final Value third = new Value();
+    private final Type operandType = new Type();
+    private final Block firstBlock = new Block();
+    private final Block secondBlock = new Block();
+
+    private LongPointer arguments = new LongPointer(8);
+    private PointerPointer<Pointer> argumentArray = new PointerPointer<>(arguments);
+
+    RawBuilderNatives(LLVMBuilderRef builder) {
+        this.builder = builder;
+    }
+
+    void positionAtEnd(long block) {
+        LLVMPositionBuilderAtEnd(builder, firstBlock.at(block));
+    }
+
+    void positionBefore(long instruction) {
+        LLVMPositionBuilderBefore(builder, first.at(instruction));
+    }
+
+    long returnValue(long value) {
+        return address(LLVMBuildRet(builder, first.at(value)));
+    }
+
+    long returnVoid() {
+        return address(LLVMBuildRetVoid(builder));
+    }
+
+    long add(long left, long right) {
+        return address(LLVMBuildAdd(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long addFloat(long left, long right) {
+        return address(LLVMBuildFAdd(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long addNoSignedWrap(long left, long right) {
+        return address(LLVMBuildNSWAdd(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long addNoUnsignedWrap(long left, long right) {
+        return address(LLVMBuildNUWAdd(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long subtract(long left, long right) {
+        return address(LLVMBuildSub(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long subtractFloat(long left, long right) {
+        return address(LLVMBuildFSub(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long subtractNoSignedWrap(long left, long right) {
+        return address(LLVMBuildNSWSub(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long subtractNoUnsignedWrap(long left, long right) {
+        return address(LLVMBuildNUWSub(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long multiply(long left, long right) {
+        return address(LLVMBuildMul(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long multiplyFloat(long left, long right) {
+        return address(LLVMBuildFMul(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long multiplyNoSignedWrap(long left, long right) {
+        return address(LLVMBuildNSWMul(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long multiplyNoUnsignedWrap(long left, long right) {
+        return address(LLVMBuildNUWMul(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long divideFloat(long left, long right) {
+        return address(LLVMBuildFDiv(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long divideSigned(long left, long right) {
+        return address(LLVMBuildSDiv(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long divideUnsigned(long left, long right) {
+        return address(LLVMBuildUDiv(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long divideExactSigned(long left, long right) {
+        return address(LLVMBuildExactSDiv(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long divideExactUnsigned(long left, long right) {
+        return address(LLVMBuildExactUDiv(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long remainderFloat(long left, long right) {
+        return address(LLVMBuildFRem(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long remainderSigned(long left, long right) {
+        return address(LLVMBuildSRem(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long remainderUnsigned(long left, long right) {
+        return address(LLVMBuildURem(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long alloc(long type) {
+        return address(LLVMBuildAlloca(builder, operandType.at(type), EMPTY_NAME));
+    }
+
+    long malloc(long type) {
+        return address(LLVMBuildMalloc(builder, operandType.at(type), EMPTY_NAME));
+    }
+
+    long free(long pointer) {
+        return address(LLVMBuildFree(builder, first.at(pointer)));
+    }
+
+    long structMemberPointer(long type, long instance, int memberIndex) {
+        return address(LLVMBuildStructGEP2(builder, operandType.at(type), first.at(instance), memberIndex, EMPTY_NAME));
+    }
+
+    long store(long value, long pointer) {
+        return address(LLVMBuildStore(builder, first.at(value), second.at(pointer)));
+    }
+
+    long load(long type, long pointer) {
+        return address(LLVMBuildLoad2(builder, operandType.at(type), first.at(pointer), EMPTY_NAME));
+    }
+
+    long insert(long instance, long value, int memberIndex) {
+        return address(LLVMBuildInsertValue(builder, first.at(instance), second.at(value), memberIndex, EMPTY_NAME));
+    }
+
+    long extract(long instance, int memberIndex) {
+        return address(LLVMBuildExtractValue(builder, first.at(instance), memberIndex, EMPTY_NAME));
+    }
+
+    long compareInt(int comparator, long left, long right) {
+        return address(LLVMBuildICmp(builder, comparator, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long compareFloat(int comparator, long left, long right) {
+        return address(LLVMBuildFCmp(builder, comparator, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long jump(long destination) {
+        return address(LLVMBuildBr(builder, firstBlock.at(destination)));
+    }
+
+    long jumpIf(long condition, long ifBlock, long elseBlock) {
+        return address(LLVMBuildCondBr(builder, first.at(condition), firstBlock.at(ifBlock), secondBlock.at(elseBlock)));
+    }
+
+    long and(long left, long right) {
+        return address(LLVMBuildAnd(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long or(long left, long right) {
+        return address(LLVMBuildOr(builder, first.at(left), second.at(right), EMPTY_NAME));
+    }
+
+    long negate(long operand) {
+        return address(LLVMBuildNeg(builder, first.at(operand), EMPTY_NAME));
+    }
+
+    long not(long operand) {
+        return address(LLVMBuildNot(builder, first.at(operand), EMPTY_NAME));
+    }
+
+    long select(long condition, long ifCase, long elseCase) {
+        return address(LLVMBuildSelect(builder, first.at(condition), second.at(ifCase), third.at(elseCase), EMPTY_NAME));
+    }
+
+    long signedIntToFloat(long value, long type) {
+        return address(LLVMBuildSIToFP(builder, first.at(value), operandType.at(type), EMPTY_NAME));
+    }
+
+    long unsignedIntToFloat(long value, long type) {
+        return address(LLVMBuildUIToFP(builder, first.at(value), operandType.at(type), EMPTY_NAME));
+    }
+
+    long floatToSignedInt(long value, long type) {
+        return address(LLVMBuildFPToSI(builder, first.at(value), operandType.at(type), EMPTY_NAME));
+    }
+
+    long floatToUnsignedInt(long value, long type) {
+        return address(LLVMBuildFPToUI(builder, first.at(value), operandType.at(type), EMPTY_NAME));
+    }
+
+    long truncate(long value, long type) {
+        return address(LLVMBuildTrunc(builder, first.at(value), operandType.at(type), EMPTY_NAME));
+    }
+
+    long zeroExtend(long value, long type) {
+        return address(LLVMBuildZExt(builder, first.at(value), operandType.at(type), EMPTY_NAME));
+    }
+
+    long signExtend(long value, long type) {
+        return address(LLVMBuildSExt(builder, first.at(value), operandType.at(type), EMPTY_NAME));
+    }
+
+    long floatExtend(long value, long type) {
+        return address(LLVMBuildFPExt(builder, first.at(value), operandType.at(type), EMPTY_NAME));
+    }
+
+    long floatTruncate(long value, long type) {
+        return address(LLVMBuildFPTrunc(builder, first.at(value), operandType.at(type), EMPTY_NAME));
+    }
+
+    long pointerCast(long value, long type) {
+        return address(LLVMBuildPointerCast(builder, first.at(value), operandType.at(type), EMPTY_NAME));
+    }
+
+    long intCast(long value, long type) {
+        return address(LLVMBuildIntCast(builder, first.at(value), operandType.at(type), EMPTY_NAME));
+    }
+
+    long floatCast(long value, long type) {
+        return address(LLVMBuildFPCast(builder, first.at(value), operandType.at(type), EMPTY_NAME));
+    }
+
+    long bitCast(long value, long type) {
+        return address(LLVMBuildBitCast(builder, first.at(value), operandType.at(type), EMPTY_NAME));
+    }
+
+    long intToPointerCast(long value, long type) {
+        return address(LLVMBuildIntToPtr(builder, first.at(value), operandType.at(type), EMPTY_NAME));
+    }
+
+    long pointerToIntCast(long value, long type) {
+        return address(LLVMBuildPtrToInt(builder, first.at(value), operandType.at(type), EMPTY_NAME));
+    }
+
+    long intCast(long value, long type, int isSigned) {
+        return address(LLVMBuildIntCast2(builder, first.at(value), operandType.at(type), isSigned, EMPTY_NAME));
+    }
+
+    long call(long functionType, long function, long[] arguments, int count) {
+        if (this.arguments.capacity() < count) {
+            this.arguments.close();
+            this.arguments = new LongPointer(Math.max(count, this.arguments.capacity() * 2));
+            argumentArray = new PointerPointer<>(this.arguments);
+        }
+        this.arguments.put(arguments, 0, count);
+        // only the string overload accepts an array of handles, JavaCPP encodes the string natively
+        return address(LLVMBuildCall2(
+            builder, operandType.at(functionType), first.at(function), argumentArray, count, ""
+        ));
+    }
+
+    void dispose() {
+        arguments.close();
+    }
+
+    private static long address(Pointer handle) {
+        return handle == null ? 0 : handle.address();
+    }
+
+    private static final class Value extends LLVMValueRef {
+        Value at(long address) {
+            this.address = address;
+            return this;
+        }
+    }
+
+    private static final class Type extends LLVMTypeRef {
+        Type at(long address) {
+            this.address = address;
+            return this;
+        }
+    }
+
+    private static final class Block extends LLVMBasicBlockRef {
+        Block at(long address) {
+            this.address = address;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.LongPointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.javacpp.SizeTPointer;
+import org.bytedeco.llvm.LLVM.LLVMAttributeRef;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMContextRef;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Represents a JIT, that compiles modules quickly without optimizations first, and recompiles the functions that
+ * are called frequently with full optimizations on a background thread.
+ * <br>
+ * Each function of a module is called through a small entry stub, that increments the call counter of the function,
+ * and calls the current code of the function through a pointer. The stubs, and the original bodies of the
+ * functions, are compiled at {@link OptLevel#O0} with the fast instruction selector. A background thread polls the
+ * counters periodically, and once the counter of a function reaches the threshold, it optimizes the function at
+ * {@link OptLevel#O3}, together with the bodies of its callees for inlining, compiles it to an object file, and
+ * swaps the pointer of the stub to the optimized code. Calls that are already running finish in the old code.
+ * <br>
+ * The counters are incremented without synchronization, so they may lose a few calls made concurrently from
+ * multiple threads, but that only delays the recompilation slightly. Variadic functions are never recompiled.
+ * <br>
+ * The JIT is thread safe. The JIT compiles modules with a single target machine, which must not generate code on
+ * multiple threads at once, so modules are only compiled on the threads that look up their symbols. The background
+ * thread only polls the modules, that have been compiled already, and the optimized code only refers to symbols,
+ * that have been linked together with the unoptimized code.
+ * <br>
+ * The native target must be initialized before creating a JIT.
+ */
+public class TieredJit implements Disposable {
+    /**
+     * The default number of calls, after which a function is recompiled with full optimizations.
+     */
+    public static final long DEFAULT_THRESHOLD = 1000;
+
+    private static final AtomicLong nextId = new AtomicLong(1);
+
+    private static final String COUNTER_SUFFIX = "$count";
+    private static final String TARGET_SUFFIX = "$target";
+    private static final String BASELINE_SUFFIX = "$tier0";
+    private static final String OPTIMIZED_SUFFIX = "$tier1";
+
+    private final IRJit jit;
+    private final IRTargetMachine optimizer;
+    private final long threshold;
+    private final ScheduledExecutorService scheduler;
+
+    private final List<TieredModule> modules = new CopyOnWriteArrayList<>();
+    private final Map<String, TieredFunction> functions = new ConcurrentHashMap<>();
+    // the modules by the names of the symbols they define, for finding the modules that a lookup compiles
+    private final Map<String, TieredModule> owners = new ConcurrentHashMap<>();
+
+    private boolean disposed;
+
+    private TieredJit(IRJit jit, IRTargetMachine optimizer, long threshold, long period, TimeUnit unit) {
+        this.jit = jit;
+        this.optimizer = optimizer;
+        this.threshold = threshold;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "llvm-tiered-jit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, period, period, unit);
+        LeakDetector.track(this);
+    }
+
+    /**
+     * Add a module to the JIT. The module must have been created in the context of the specified thread safe
+     * context, and its ownership is transferred to the JIT.
+     * <br>
+     * The counters of the module are polled once one of its symbols has been looked up through this JIT. Modules
+     * that are only compiled, because another module refers to them, are not recompiled until they are looked up.
+     *
+     * @param module the module to be added to the JIT
+     * @param context the thread safe context that the module was created in
+     * @throws IllegalArgumentException if the data layout of the module differs from the one of the JIT
+     * @throws LLVMException if the module could not be added
+     */
+    public void addModule(IRModule module, IRThreadSafeContext context) {
+        module.finishBuild();
+        // the optimized tier is compiled from the bitcode, so it must have the layout that the JIT applies to the
+        // unoptimized tier, instead of the default one
+        jit.applyTarget(module);
+        LLVMModuleRef handle = module.getHandle();
+        String tag = "tiered" + nextId.getAndIncrement();
+
+        // symbols with local linkage are shared by both tiers, so they must be visible to the optimized code
+        int index = 0;
+        for (LLVMValueRef function = LLVMGetFirstFunction(handle); !isNull(function);
+             function = LLVMGetNextFunction(function), index++) {
+            if (LLVMIsDeclaration(function) == 0)
+                ModuleSplitter.promote(function, tag, 'f', index);
+        }
+        index = 0;
+        for (LLVMValueRef global = LLVMGetFirstGlobal(handle); !isNull(global);
+             global = LLVMGetNextGlobal(global), index++) {
+            if (LLVMIsDeclaration(global) == 0 && LLVMGetLinkage(global) != LLVMAppendingLinkage)
+                ModuleSplitter.promote(global, tag, 'g', index);
+        }
+
+        // the bitcode is the source of the optimized tier, so it is written before the stubs are inserted
+        TieredModule tiered = new TieredModule(module.writeBitCodeToFile());
+        List<LLVMValueRef> definitions = new ArrayList<>();
+        for (LLVMValueRef function = LLVMGetFirstFunction(handle); !isNull(function);
+             function = LLVMGetNextFunction(function)) {
+            if (LLVMIsDeclaration(function) == 0 && LLVMGetLinkage(function) != LLVMAvailableExternallyLinkage
+                && LLVMIsFunctionVarArg(LLVMGlobalGetValueType(function)) == 0)
+                definitions.add(function);
+        }
+        LLVMBuilderRef builder = LLVMCreateBuilderInContext(LLVMGetModuleContext(handle));
+        try {
+            for (LLVMValueRef function : definitions)
+                tiered.functions.add(insertStub(handle, builder, function));
+        } finally {
+            LLVMDisposeBuilder(builder);
+        }
+
+        modules.add(tiered);
+        for (TieredFunction function : tiered.functions)
+            functions.put(function.name, function);
+        for (LLVMValueRef function = LLVMGetFirstFunction(handle); !isNull(function);
+             function = LLVMGetNextFunction(function)) {
+            if (LLVMIsDeclaration(function) == 0)
+                owners.put(name(function), tiered);
+        }
+        for (LLVMValueRef global = LLVMGetFirstGlobal(handle); !isNull(global); global = LLVMGetNextGlobal(global)) {
+            if (LLVMIsDeclaration(global) == 0)
+                owners.put(name(global), tiered);
+        }
+        jit.addModule(module, context);
+    }
+
+    /**
+     * Look up the address of a symbol of the JIT. The address of a function is the address of its entry stub, so
+     * it stays valid after the function is recompiled.
+     *
+     * @param name the unmangled name of the symbol
+     * @return the address of the symbol in the memory of the current process
+     * @throws LLVMException if the symbol could not be found or compiled
+     */
+    public long lookup(String name) {
+        long address = jit.lookup(name);
+        TieredModule module = owners.get(name);
+        if (module != null && !module.ready)
+            resolve(module);
+        return address;
+    }
+
+    /**
+     * Retrieve the tier of the code, that the calls of a function currently run.
+     *
+     * @param name the name of the function
+     * @return 0 for the unoptimized code, 1 for the optimized code, or -1 if the function has no tiers, or it
+     * failed to be recompiled
+     */
+    public int getTier(String name) {
+        TieredFunction function = functions.get(name);
+        return function == null ? -1 : function.tier;
+    }
+
+    /**
+     * Retrieve the number of calls of a function, that have been counted by its entry stub so far.
+     *
+     * @param name the name of the function
+     * @return the number of calls, or -1 if the function has no tiers or it has not been compiled yet
+     */
+    public long getCallCount(String name) {
+        TieredFunction function = functions.get(name);
+        ByteBuffer counter = function == null ? null : function.counter;
+        return counter == null ? -1 : counter.getLong(0);
+    }
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Retrieve the JIT, that holds the code of both tiers.
+     *
+     * @return the underlying JIT
+     */
+    public IRJit getJit() {
+        return jit;
+    }
+
+    /**
+     * Stop the background thread, waiting for a recompilation in progress to finish, and dispose the JIT together
+     * with the code of both tiers.
+     */
+    @Override
+    public synchronized void dispose() {
+        if (disposed)
+            return;
+        disposed = true;
+        scheduler.shutdownNow();
+        try {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    if (scheduler.awaitTermination(1, TimeUnit.SECONDS))
+                        break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        } finally {
+            LeakDetector.untrack(this);
+            try {
+                for (TieredModule module : modules)
+                    module.bitcode.dispose();
+                optimizer.dispose();
+            } finally {
+                jit.dispose();
+            }
+        }
+    }
+
+    /**
+     * Resolve the counters and the targets of the functions of a module, that has been compiled by a lookup on the
+     * current thread, so that the background thread never has to look up symbols, that could compile a module.
+     */
+    private void resolve(TieredModule module) {
+        synchronized (module) {
+            if (module.ready)
+                return;
+            for (TieredFunction function : module.functions) {
+                function.target = new LongPointer(NativePointers.at(jit.lookup(function.name + TARGET_SUFFIX)));
+                function.counter = NativePointers.view(jit.lookup(function.name + COUNTER_SUFFIX), Long.BYTES);
+            }
+            // publishes the views to the background thread
+            module.ready = true;
+        }
+    }
+
+    /**
+     * Check the counters of the functions, and recompile the functions that have reached the threshold.
+     */
+    private void poll() {
+        for (TieredModule module : modules) {
+            if (!module.ready)
+                continue;
+            for (TieredFunction function : module.functions) {
+                if (Thread.currentThread().isInterrupted())
+                    return;
+                if (function.tier != 0)
+                    continue;
+                try {
+                    if (function.counter.getLong(0) >= threshold)
+                        recompile(module, function);
+                } catch (RuntimeException e) {
+                    // the function keeps running the unoptimized code
+                    function.tier = -1;
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Optimize a single function of a module, with the bodies of the rest of the module available for inlining,
+     * and swap the target of its entry stub to the optimized code.
+     */
+    private void recompile(TieredModule source, TieredFunction function) {
+        IRContext context = IRContext.create();
+        try {
+            IRModule module = IRModule.parseBitcode(context, source.bitcode);
+            LLVMModuleRef handle = module.getHandle();
+            for (LLVMValueRef value = LLVMGetFirstFunction(handle); !isNull(value); value = LLVMGetNextFunction(value))
+                drop(value);
+            for (LLVMValueRef value = LLVMGetFirstGlobal(handle); !isNull(value); value = LLVMGetNextGlobal(value))
+                drop(value);
+            LLVMValueRef optimized = LLVMGetNamedFunction(handle, function.name);
+            LLVMSetLinkage(optimized, LLVMExternalLinkage);
+            setName(optimized, function.name + OPTIMIZED_SUFFIX);
+
+            // the optimization pipeline eliminates the rest of the definitions, once they have been inlined
+            module.optimize(OptLevel.O3, optimizer);
+            jit.addObjectFile(optimizer.emit(module, IRTargetMachine.FileType.OBJECT));
+        } finally {
+            context.dispose();
+        }
+        long address = jit.lookup(function.name + OPTIMIZED_SUFFIX);
+        // the pointer is written natively with a single aligned store, which is atomic, and the stubs read the
+        // target with a monotonic load, whereas a byte buffer may write it byte by byte on some architectures
+        function.target.put(address);
+        function.tier = 1;
+    }
+
+    /**
+     * Rename a function to be the unoptimized body, and insert an entry stub with the original name, that counts
+     * the calls and calls the current target.
+     */
+    private static TieredFunction insertStub(LLVMModuleRef module, LLVMBuilderRef builder, LLVMValueRef function) {
+        String name = name(function);
+        LLVMContextRef context = LLVMGetModuleContext(module);
+        LLVMTypeRef type = LLVMGlobalGetValueType(function);
+        LLVMTypeRef pointer = LLVMPointerTypeInContext(context, 0);
+        LLVMTypeRef counterType = LLVMInt64TypeInContext(context);
+
+        setName(function, name + BASELINE_SUFFIX);
+        LLVMValueRef stub = LLVMAddFunction(module, name, type);
+        LLVMSetLinkage(stub, LLVMGetLinkage(function));
+        LLVMSetVisibility(stub, LLVMGetVisibility(function));
+        LLVMSetFunctionCallConv(stub, LLVMGetFunctionCallConv(function));
+        // every caller of the function, including the function itself, calls the stub instead
+        LLVMReplaceAllUsesWith(function, stub);
+        LLVMSetLinkage(function, LLVMInternalLinkage);
+        LLVMSetComdat(function, null);
+
+        LLVMValueRef counter = LLVMAddGlobal(module, counterType, name + COUNTER_SUFFIX);
+        LLVMSetInitializer(counter, LLVMConstInt(counterType, 0, 0));
+        LLVMSetAlignment(counter, Long.BYTES);
+        LLVMValueRef target = LLVMAddGlobal(module, pointer, name + TARGET_SUFFIX);
+        LLVMSetInitializer(target, function);
+        LLVMSetAlignment(target, Long.BYTES);
+
+        LLVMPositionBuilderAtEnd(builder, LLVMAppendBasicBlockInContext(context, stub, "entry"));
+        LLVMValueRef count = LLVMBuildLoad2(builder, counterType, counter, "count");
+        LLVMBuildStore(builder, LLVMBuildAdd(builder, count, LLVMConstInt(counterType, 1, 0), "next"), counter);
+        LLVMValueRef callee = LLVMBuildLoad2(builder, pointer, target, "target");
+        LLVMSetOrdering(callee, LLVMAtomicOrderingMonotonic);
+        LLVMSetAlignment(callee, Long.BYTES);
+
+        int parameters = LLVMCountParams(stub);
+        PointerPointer<LLVMValueRef> arguments = new PointerPointer<>(Math.max(1, parameters));
+        for (int i = 0; i < parameters; i++)
+            arguments.put(i, LLVMGetParam(stub, i));
+        LLVMValueRef call = LLVMBuildCall2(builder, type, callee, arguments, parameters, "");
+        LLVMSetInstructionCallConv(call, LLVMGetFunctionCallConv(function));
+        LLVMSetTailCall(call, 1);
+        // the attributes that affect the calling convention, such as sret or byval, must match the callee
+        for (int i = 0; i <= parameters; i++)
+            copyAttributes(function, stub, call, i);
+        if (LLVMGetTypeKind(LLVMGetReturnType(type)) == LLVMVoidTypeKind)
+            LLVMBuildRetVoid(builder);
+        else
+            LLVMBuildRet(builder, call);
+        return new TieredFunction(name);
+    }
+
+    private static void setName(LLVMValueRef value, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        LLVMSetValueName2(value, new BytePointer(bytes), bytes.length);
+    }
+
+    private static void copyAttributes(LLVMValueRef function, LLVMValueRef stub, LLVMValueRef call, int index) {
+        int count = LLVMGetAttributeCountAtIndex(function, index);
+        if (count == 0)
+            return;
+        PointerPointer<LLVMAttributeRef> attributes = new PointerPointer<>(count);
+        LLVMGetAttributesAtIndex(function, index, attributes);
+        for (int i = 0; i < count; i++) {
+            LLVMAttributeRef attribute = attributes.get(LLVMAttributeRef.class, i);
+            LLVMAddAttributeAtIndex(stub, index, attribute);
+            LLVMAddCallSiteAttribute(call, index, attribute);
+        }
+    }
+
+    /**
+     * Mark a definition to be used for inlining and constant folding only, as it is defined by the unoptimized
+     * code already.
+     */
+    private static void drop(LLVMValueRef value) {
+        if (LLVMIsDeclaration(value) != 0 || LLVMGetLinkage(value) == LLVMAppendingLinkage)
+            return;
+        LLVMSetComdat(value, null);
+        LLVMSetLinkage(value, LLVMAvailableExternallyLinkage);
+    }
+
+    private static String name(LLVMValueRef value) {
+        return LLVMGetValueName2(value, new SizeTPointer(1)).getString(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isNull(LLVMValueRef value) {
+        return value == null || value.isNull();
+    }
+
+    /**
+     * Create a tiered JIT for the host machine, that recompiles functions after {@link #DEFAULT_THRESHOLD} calls,
+     * and checks the counters every 10 milliseconds.
+     *
+     * @return a new tiered JIT
+     * @throws LLVMException if the JIT could not be created
+     */
+    public static TieredJit create() {
+        return create(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Create a tiered JIT for the host machine, that checks the counters every 10 milliseconds.
+     *
+     * @param threshold the number of calls, after which a function is recompiled
+     * @return a new tiered JIT
+     * @throws LLVMException if the JIT could not be created
+     */
+    public static TieredJit create(long threshold) {
+        return create(threshold, 10, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a tiered JIT for the host machine.
+     *
+     * @param threshold the number of calls, after which a function is recompiled
+     * @param period the time between two checks of the counters
+     * @param unit the unit of the period
+     * @return a new tiered JIT
+     * @throws LLVMException if the JIT could not be created
+     */
+    public static TieredJit create(long threshold, long period, TimeUnit unit) {
+        if (threshold < 1)
+            throw new IllegalArgumentException("The threshold must be positive");
+        IRTargetMachine baseline = IRTargetMachine.createHost(OptLevel.O0);
+        IRJit jit;
+        try {
+            jit = IRJit.create(baseline);
+        } finally {
+            baseline.dispose();
+        }
+        return new TieredJit(jit, IRTargetMachine.createHost(OptLevel.O3), threshold, period, unit);
+    }
+
+    private static class TieredModule {
+        private final IRMemoryBuffer bitcode;
+        private final List<TieredFunction> functions = new ArrayList<>();
+        private volatile boolean ready;
+
+        private TieredModule(IRMemoryBuffer bitcode) {
+            this.bitcode = bitcode;
+        }
+    }
+
+    private static class TieredFunction {
+        private final String name;
+        private volatile int tier;
+        // the views are resolved on the thread that compiles the module, and only written by the background thread
+        private volatile ByteBuffer counter;
+        private LongPointer target;
+
+        private TieredFunction(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.voidlang.llvm.element;
+
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+
+/**
+ * Binds native functions, such as the functions compiled by an {@link IRJit}, to {@link MethodHandle}s whose
+ * type is derived from the {@link IRFunctionType} of the function.
+ * <br>
+ * This is the Java 22 variant of the class, which creates Foreign Function &amp; Memory API downcall handles. The
+ * JIT compiler of the JVM can inline these handles into the caller, and they are safe to call from multiple
+ * threads. Creating the handles is a restricted operation, so the application should be started with
+ * {@code --enable-native-access}.
+ * <br>
+ * LLVM types are mapped to Java types as follows: {@code i1} to boolean, {@code i8} to byte, {@code i16} to short,
+ * {@code i32} to int, {@code i64} to long, {@code float} to float, {@code double} to double, and pointers to long
+ * addresses.
+ */
+public final class IRDowncall {
+    private static final Linker LINKER = Linker.nativeLinker();
+
+    private IRDowncall() {
+    }
+
+    /**
+     * Create a method handle, that calls the native function at the specified address.
+     *
+     * @param address the native address of the function
+     * @param type the LLVM signature of the function
+     * @return a new method handle for the function
+     */
+    public static MethodHandle bind(long address, IRFunctionType type) {
+        return LINKER.downcallHandle(MemorySegment.ofAddress(address), toDescriptor(type));
+    }
+
+    /**
+     * Create a method handle, that calls the native function at the specified address. The function must not
+     * block and must not call back into Java, which allows the downcall to skip the thread state transitions
+     * of the JVM on runtimes that support it.
+     *
+     * @param address the native address of the function
+     * @param type the LLVM signature of the function
+     * @return a new method handle for the function
+     */
+    public static MethodHandle bindCritical(long address, IRFunctionType type) {
+        return LINKER.downcallHandle(MemorySegment.ofAddress(address), toDescriptor(type),
+            Linker.Option.critical(false));
+    }
+
+    /**
+     * Create a method handle, that calls a function compiled by the specified JIT.
+     *
+     * @param jit the JIT that defines the function
+     * @param name the name of the function
+     * @param type the LLVM signature of the function
+     * @return a new method handle for the function
+     */
+    public static MethodHandle bind(IRJit jit, String name, IRFunctionType type) {
+        return bind(jit.lookup(name), type);
+    }
+
+    /**
+     * Indicate, whether the method handles are Foreign Function &amp; Memory API downcall handles.
+     *
+     * @return true if the handles call the functions directly, false if they use libffi
+     */
+    public static boolean isForeignLinker() {
+        return true;
+    }
+
+    private static FunctionDescriptor toDescriptor(IRFunctionType type) {
+        if (type.isVariadic())
+            throw new IllegalArgumentException("Variadic functions cannot be invoked");
+        List<IRType> parameterTypes = type.getParameterTypes();
+        MemoryLayout[] parameters = new MemoryLayout[parameterTypes.size()];
+        for (int i = 0; i < parameters.length; i++)
+            parameters[i] = toLayout(parameterTypes.get(i));
+        IRType returnType = type.getReturnType();
+        return returnType.isVoid()
+            ? FunctionDescriptor.ofVoid(parameters)
+            : FunctionDescriptor.of(toLayout(returnType), parameters);
+    }
+
+    static Class<?> toJavaType(IRType type) {
+        return type.isVoid() ? void.class : toLayout(type).carrier();
+    }
+
+    private static ValueLayout toLayout(IRType type) {
+        if (type.isFloat())
+            return ValueLayout.JAVA_FLOAT;
+        if (type.isDouble())
+            return ValueLayout.JAVA_DOUBLE;
+        // pointers are passed as raw addresses, so that the handles have the same type on every runtime
+        if (type.isPointer())
+            return ValueLayout.JAVA_LONG;
+        if (type.isInteger()) {
+            switch (type.getIntegerWidth()) {
+                case 1:
+                    return ValueLayout.JAVA_BOOLEAN;
+                case 8:
+                    return ValueLayout.JAVA_BYTE;
+                case 16:
+                    return ValueLayout.JAVA_SHORT;
+                case 32:
+                    return ValueLayout.JAVA_INT;
+                case 64:
+                    return ValueLayout.JAVA_LONG;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported type for native invocation: kind " + type.getKind());
+    }
+}
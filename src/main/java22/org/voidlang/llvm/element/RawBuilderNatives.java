@@ -0,0 +1,598 @@
+package org.voidlang.llvm.element;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.global.LLVM;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Paths;
+
+/**
+ * Calls the LLVM builder functions for an {@link IRRawBuilder}, with raw handles.
+ * <br>
+ * This is the Java 22 variant of the class, which calls the functions through Foreign Function &amp; Memory API
+ * downcall handles. Handles are passed as plain 64-bit integers, and every instruction is left unnamed, so building
+ * an instruction does not allocate any object. The builder functions do not block and do not call back into Java,
+ * so the downcalls are critical, and skip the thread state transitions of the JVM.
+ */
+final class RawBuilderNatives {
+    private static final Linker LINKER = Linker.nativeLinker();
+    private static final SymbolLookup SYMBOLS = SymbolLookup.libraryLookup(
+        Paths.get(Loader.load(LLVM.class)), Arena.global()
+    );
+
+    private static final ValueLayout P = ValueLayout.JAVA_LONG;
+    private static final ValueLayout I = ValueLayout.JAVA_INT;
+
+    private static final MethodHandle POSITION_BUILDER_AT_END = downcall("LLVMPositionBuilderAtEnd", null, P, P);
+    private static final MethodHandle POSITION_BUILDER_BEFORE = downcall("LLVMPositionBuilderBefore", null, P, P);
+    private static final MethodHandle BUILD_RET = downcall("LLVMBuildRet", P, P, P);
+    private static final MethodHandle BUILD_RET_VOID = downcall("LLVMBuildRetVoid", P, P);
+    private static final MethodHandle BUILD_ADD = downcall("LLVMBuildAdd", P, P, P, P, P);
+    private static final MethodHandle BUILD_F_ADD = downcall("LLVMBuildFAdd", P, P, P, P, P);
+    private static final MethodHandle BUILD_NSW_ADD = downcall("LLVMBuildNSWAdd", P, P, P, P, P);
+    private static final MethodHandle BUILD_NUW_ADD = downcall("LLVMBuildNUWAdd", P, P, P, P, P);
+    private static final MethodHandle BUILD_SUB = downcall("LLVMBuildSub", P, P, P, P, P);
+    private static final MethodHandle BUILD_F_SUB = downcall("LLVMBuildFSub", P, P, P, P, P);
+    private static final MethodHandle BUILD_NSW_SUB = downcall("LLVMBuildNSWSub", P, P, P, P, P);
+    private static final MethodHandle BUILD_NUW_SUB = downcall("LLVMBuildNUWSub", P, P, P, P, P);
+    private static final MethodHandle BUILD_MUL = downcall("LLVMBuildMul", P, P, P, P, P);
+    private static final MethodHandle BUILD_F_MUL = downcall("LLVMBuildFMul", P, P, P, P, P);
+    private static final MethodHandle BUILD_NSW_MUL = downcall("LLVMBuildNSWMul", P, P, P, P, P);
+    private static final MethodHandle BUILD_NUW_MUL = downcall("LLVMBuildNUWMul", P, P, P, P, P);
+    private static final MethodHandle BUILD_F_DIV = downcall("LLVMBuildFDiv", P, P, P, P, P);
+    private static final MethodHandle BUILD_S_DIV = downcall("LLVMBuildSDiv", P, P, P, P, P);
+    private static final MethodHandle BUILD_U_DIV = downcall("LLVMBuildUDiv", P, P, P, P, P);
+    private static final MethodHandle BUILD_EXACT_S_DIV = downcall("LLVMBuildExactSDiv", P, P, P, P, P);
+    private static final MethodHandle BUILD_EXACT_U_DIV = downcall("LLVMBuildExactUDiv", P, P, P, P, P);
+    private static final MethodHandle BUILD_F_REM = downcall("LLVMBuildFRem", P, P, P, P, P);
+    private static final MethodHandle BUILD_S_REM = downcall("LLVMBuildSRem", P, P, P, P, P);
+    private static final MethodHandle BUILD_U_REM = downcall("LLVMBuildURem", P, P, P, P, P);
+    private static final MethodHandle BUILD_ALLOCA = downcall("LLVMBuildAlloca", P, P, P, P);
+    private static final MethodHandle BUILD_MALLOC = downcall("LLVMBuildMalloc", P, P, P, P);
+    private static final MethodHandle BUILD_FREE = downcall("LLVMBuildFree", P, P, P);
+    private static final MethodHandle BUILD_STRUCT_GEP2 = downcall("LLVMBuildStructGEP2", P, P, P, P, I, P);
+    private static final MethodHandle BUILD_STORE = downcall("LLVMBuildStore", P, P, P, P);
+    private static final MethodHandle BUILD_LOAD2 = downcall("LLVMBuildLoad2", P, P, P, P, P);
+    private static final MethodHandle BUILD_INSERT_VALUE = downcall("LLVMBuildInsertValue", P, P, P, P, I, P);
+    private static final MethodHandle BUILD_EXTRACT_VALUE = downcall("LLVMBuildExtractValue", P, P, P, I, P);
+    private static final MethodHandle BUILD_I_CMP = downcall("LLVMBuildICmp", P, P, I, P, P, P);
+    private static final MethodHandle BUILD_F_CMP = downcall("LLVMBuildFCmp", P, P, I, P, P, P);
+    private static final MethodHandle BUILD_BR = downcall("LLVMBuildBr", P, P, P);
+    private static final MethodHandle BUILD_COND_BR = downcall("LLVMBuildCondBr", P, P, P, P, P);
+    private static final MethodHandle BUILD_AND = downcall("LLVMBuildAnd", P, P, P, P, P);
+    private static final MethodHandle BUILD_OR = downcall("LLVMBuildOr", P, P, P, P, P);
+    private static final MethodHandle BUILD_NEG = downcall("LLVMBuildNeg", P, P, P, P);
+    private static final MethodHandle BUILD_NOT = downcall("LLVMBuildNot", P, P, P, P);
+    private static final MethodHandle BUILD_SELECT = downcall("LLVMBuildSelect", P, P, P, P, P, P);
+    private static final MethodHandle BUILD_SI_TO_FP = downcall("LLVMBuildSIToFP", P, P, P, P, P);
+    private static final MethodHandle BUILD_UI_TO_FP = downcall("LLVMBuildUIToFP", P, P, P, P, P);
+    private static final MethodHandle BUILD_FP_TO_SI = downcall("LLVMBuildFPToSI", P, P, P, P, P);
+    private static final MethodHandle BUILD_FP_TO_UI = downcall("LLVMBuildFPToUI", P, P, P, P, P);
+    private static final MethodHandle BUILD_TRUNC = downcall("LLVMBuildTrunc", P, P, P, P, P);
+    private static final MethodHandle BUILD_Z_EXT = downcall("LLVMBuildZExt", P, P, P, P, P);
+    private static final MethodHandle BUILD_S_EXT = downcall("LLVMBuildSExt", P, P, P, P, P);
+    private static final MethodHandle BUILD_FP_EXT = downcall("LLVMBuildFPExt", P, P, P, P, P);
+    private static final MethodHandle BUILD_FP_TRUNC = downcall("LLVMBuildFPTrunc", P, P, P, P, P);
+    private static final MethodHandle BUILD_POINTER_CAST = downcall("LLVMBuildPointerCast", P, P, P, P, P);
+    private static final MethodHandle BUILD_INT_CAST = downcall("LLVMBuildIntCast", P, P, P, P, P);
+    private static final MethodHandle BUILD_FP_CAST = downcall("LLVMBuildFPCast", P, P, P, P, P);
+    private static final MethodHandle BUILD_BIT_CAST = downcall("LLVMBuildBitCast", P, P, P, P, P);
+    private static final MethodHandle BUILD_INT_TO_PTR = downcall("LLVMBuildIntToPtr", P, P, P, P, P);
+    private static final MethodHandle BUILD_PTR_TO_INT = downcall("LLVMBuildPtrToInt", P, P, P, P, P);
+    private static final MethodHandle BUILD_INT_CAST2 = downcall("LLVMBuildIntCast2", P, P, P, P, I, P);
+    private static final MethodHandle BUILD_CALL2 = downcall("LLVMBuildCall2", P, P, P, P, P, I, P);
+
+    // a zero initialized byte is an empty C string
+    private static final long EMPTY_NAME = Arena.global().allocate(1).address();
+
+    private final long builder;
+
+    private final Arena arena = Arena.ofShared();
+    private MemorySegment arguments;
+
+    RawBuilderNatives(LLVMBuilderRef builder) {
+        if (ValueLayout.ADDRESS.byteSize() != Long.BYTES)
+            throw new UnsupportedOperationException("Raw handles require a 64-bit platform");
+        this.builder = builder.address();
+        this.arguments = arena.allocate(8L * Long.BYTES, Long.BYTES);
+    }
+
+    void positionAtEnd(long block) {
+        try {
+            POSITION_BUILDER_AT_END.invokeExact(builder, block);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    void positionBefore(long instruction) {
+        try {
+            POSITION_BUILDER_BEFORE.invokeExact(builder, instruction);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long returnValue(long value) {
+        try {
+            return (long) BUILD_RET.invokeExact(builder, value);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long returnVoid() {
+        try {
+            return (long) BUILD_RET_VOID.invokeExact(builder);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long add(long left, long right) {
+        try {
+            return (long) BUILD_ADD.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long addFloat(long left, long right) {
+        try {
+            return (long) BUILD_F_ADD.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long addNoSignedWrap(long left, long right) {
+        try {
+            return (long) BUILD_NSW_ADD.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long addNoUnsignedWrap(long left, long right) {
+        try {
+            return (long) BUILD_NUW_ADD.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long subtract(long left, long right) {
+        try {
+            return (long) BUILD_SUB.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long subtractFloat(long left, long right) {
+        try {
+            return (long) BUILD_F_SUB.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long subtractNoSignedWrap(long left, long right) {
+        try {
+            return (long) BUILD_NSW_SUB.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long subtractNoUnsignedWrap(long left, long right) {
+        try {
+            return (long) BUILD_NUW_SUB.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long multiply(long left, long right) {
+        try {
+            return (long) BUILD_MUL.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long multiplyFloat(long left, long right) {
+        try {
+            return (long) BUILD_F_MUL.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long multiplyNoSignedWrap(long left, long right) {
+        try {
+            return (long) BUILD_NSW_MUL.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long multiplyNoUnsignedWrap(long left, long right) {
+        try {
+            return (long) BUILD_NUW_MUL.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long divideFloat(long left, long right) {
+        try {
+            return (long) BUILD_F_DIV.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long divideSigned(long left, long right) {
+        try {
+            return (long) BUILD_S_DIV.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long divideUnsigned(long left, long right) {
+        try {
+            return (long) BUILD_U_DIV.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long divideExactSigned(long left, long right) {
+        try {
+            return (long) BUILD_EXACT_S_DIV.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long divideExactUnsigned(long left, long right) {
+        try {
+            return (long) BUILD_EXACT_U_DIV.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long remainderFloat(long left, long right) {
+        try {
+            return (long) BUILD_F_REM.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long remainderSigned(long left, long right) {
+        try {
+            return (long) BUILD_S_REM.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long remainderUnsigned(long left, long right) {
+        try {
+            return (long) BUILD_U_REM.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long alloc(long type) {
+        try {
+            return (long) BUILD_ALLOCA.invokeExact(builder, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long malloc(long type) {
+        try {
+            return (long) BUILD_MALLOC.invokeExact(builder, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long free(long pointer) {
+        try {
+            return (long) BUILD_FREE.invokeExact(builder, pointer);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long structMemberPointer(long type, long instance, int memberIndex) {
+        try {
+            return (long) BUILD_STRUCT_GEP2.invokeExact(builder, type, instance, memberIndex, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long store(long value, long pointer) {
+        try {
+            return (long) BUILD_STORE.invokeExact(builder, value, pointer);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long load(long type, long pointer) {
+        try {
+            return (long) BUILD_LOAD2.invokeExact(builder, type, pointer, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long insert(long instance, long value, int memberIndex) {
+        try {
+            return (long) BUILD_INSERT_VALUE.invokeExact(builder, instance, value, memberIndex, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long extract(long instance, int memberIndex) {
+        try {
+            return (long) BUILD_EXTRACT_VALUE.invokeExact(builder, instance, memberIndex, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long compareInt(int comparator, long left, long right) {
+        try {
+            return (long) BUILD_I_CMP.invokeExact(builder, comparator, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long compareFloat(int comparator, long left, long right) {
+        try {
+            return (long) BUILD_F_CMP.invokeExact(builder, comparator, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long jump(long destination) {
+        try {
+            return (long) BUILD_BR.invokeExact(builder, destination);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long jumpIf(long condition, long ifBlock, long elseBlock) {
+        try {
+            return (long) BUILD_COND_BR.invokeExact(builder, condition, ifBlock, elseBlock);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long and(long left, long right) {
+        try {
+            return (long) BUILD_AND.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long or(long left, long right) {
+        try {
+            return (long) BUILD_OR.invokeExact(builder, left, right, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long negate(long operand) {
+        try {
+            return (long) BUILD_NEG.invokeExact(builder, operand, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long not(long operand) {
+        try {
+            return (long) BUILD_NOT.invokeExact(builder, operand, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long select(long condition, long ifCase, long elseCase) {
+        try {
+            return (long) BUILD_SELECT.invokeExact(builder, condition, ifCase, elseCase, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long signedIntToFloat(long value, long type) {
+        try {
+            return (long) BUILD_SI_TO_FP.invokeExact(builder, value, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long unsignedIntToFloat(long value, long type) {
+        try {
+            return (long) BUILD_UI_TO_FP.invokeExact(builder, value, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long floatToSignedInt(long value, long type) {
+        try {
+            return (long) BUILD_FP_TO_SI.invokeExact(builder, value, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long floatToUnsignedInt(long value, long type) {
+        try {
+            return (long) BUILD_FP_TO_UI.invokeExact(builder, value, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long truncate(long value, long type) {
+        try {
+            return (long) BUILD_TRUNC.invokeExact(builder, value, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long zeroExtend(long value, long type) {
+        try {
+            return (long) BUILD_Z_EXT.invokeExact(builder, value, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long signExtend(long value, long type) {
+        try {
+            return (long) BUILD_S_EXT.invokeExact(builder, value, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long floatExtend(long value, long type) {
+        try {
+            return (long) BUILD_FP_EXT.invokeExact(builder, value, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long floatTruncate(long value, long type) {
+        try {
+            return (long) BUILD_FP_TRUNC.invokeExact(builder, value, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long pointerCast(long value, long type) {
+        try {
+            return (long) BUILD_POINTER_CAST.invokeExact(builder, value, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long intCast(long value, long type) {
+        try {
+            return (long) BUILD_INT_CAST.invokeExact(builder, value, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long floatCast(long value, long type) {
+        try {
+            return (long) BUILD_FP_CAST.invokeExact(builder, value, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long bitCast(long value, long type) {
+        try {
+            return (long) BUILD_BIT_CAST.invokeExact(builder, value, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long intToPointerCast(long value, long type) {
+        try {
+            return (long) BUILD_INT_TO_PTR.invokeExact(builder, value, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long pointerToIntCast(long value, long type) {
+        try {
+            return (long) BUILD_PTR_TO_INT.invokeExact(builder, value, type, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long intCast(long value, long type, int isSigned) {
+        try {
+            return (long) BUILD_INT_CAST2.invokeExact(builder, value, type, isSigned, EMPTY_NAME);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    long call(long functionType, long function, long[] arguments, int count) {
+        long capacity = this.arguments.byteSize() / Long.BYTES;
+        if (capacity < count)
+            this.arguments = arena.allocate(Math.max(count, capacity * 2) * Long.BYTES, Long.BYTES);
+        MemorySegment.copy(arguments, 0, this.arguments, ValueLayout.JAVA_LONG, 0, count);
+        try {
+            return (long) BUILD_CALL2.invokeExact(
+                builder, functionType, function, this.arguments.address(), count, EMPTY_NAME
+            );
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    void dispose() {
+        arena.close();
+    }
+
+    private static MethodHandle downcall(String name, MemoryLayout result, MemoryLayout... arguments) {
+        MemorySegment function = SYMBOLS.find(name)
+            .orElseThrow(() -> new UnsatisfiedLinkError("LLVM function " + name + " is not found"));
+        FunctionDescriptor descriptor = result == null
+            ? FunctionDescriptor.ofVoid(arguments)
+            : FunctionDescriptor.of(result, arguments);
+        return LINKER.downcallHandle(function, descriptor, Linker.Option.critical(false));
+    }
+
+    private static RuntimeException propagate(Throwable e) {
+        if (e instanceof RuntimeException)
+            return (RuntimeException) e;
+        if (e instanceof Error)
+            throw (Error) e;
+        return new IllegalStateException(e);
+    }
+}
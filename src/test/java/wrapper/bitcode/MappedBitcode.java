@@ -0,0 +1,40 @@
+package wrapper.bitcode;
+
+import org.voidlang.llvm.element.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+public class MappedBitcode {
+    public static void main(String[] args) {
+        IRContext context = IRContext.create();
+        IRModule module = IRModule.create(context, "library");
+
+        // Define a function returning a constant
+        IRType i32 = IRType.int32(context);
+        IRFunctionType type = IRFunctionType.create(context, i32, Collections.emptyList(), false);
+        IRFunction function = IRFunction.create(module, "answer", type);
+        IRBuilder builder = IRBuilder.create(context);
+        builder.positionAtEnd(IRBlock.create(context, function, "entry"));
+        builder.returnValue(i32.constInt(42));
+        builder.dispose();
+
+        // Inspect the serialized bitcode without copying it
+        IRMemoryBuffer bitcode = module.writeBitCodeToFile();
+        ByteBuffer view = bitcode.asByteBuffer();
+        System.out.println("Bitcode size: " + view.remaining() + " bytes, magic: "
+            + (char) view.get(0) + (char) view.get(1));
+        bitcode.dispose();
+
+        // Write the bitcode to a file, and load it back through a memory mapping
+        File file = new File(System.getProperty("java.io.tmpdir"), "library.bc");
+        module.writeBitcodeToFile(file);
+        IRModule parsed = IRModule.parseBitcode(context, file);
+        System.out.println("Parsed module " + parsed.getName() + ":");
+        System.out.println(parsed.print());
+
+        // Dispose of the allocated resources
+        context.dispose();
+    }
+}
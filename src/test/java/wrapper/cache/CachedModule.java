@@ -0,0 +1,49 @@
+package wrapper.cache;
+
+import org.voidlang.llvm.element.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class CachedModule {
+    public static void main(String[] args) {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "void-cache");
+        ObjectCache cache = new ObjectCache(directory, 64L * 1024 * 1024);
+        IRTargetMachine machine = IRTargetMachine.create(OptLevel.O2);
+
+        // Load the same module twice, the second load should be served from the cache
+        for (int i = 0; i < 2; i++) {
+            IRContext context = IRContext.create();
+            IRModule module = IRModule.create(context, "cached");
+
+            IRType i32 = IRType.int32(context);
+            IRFunctionType type = IRFunctionType.create(context, i32, Collections.emptyList(), false);
+            IRFunction function = IRFunction.create(module, "answer", type);
+            IRBuilder builder = IRBuilder.create(context);
+            builder.positionAtEnd(IRBlock.create(context, function, "entry"));
+            builder.returnValue(i32.constInt(42));
+            builder.dispose();
+
+            IRJit jit = IRJit.create();
+            long start = System.nanoTime();
+            boolean hit = cache.load(module, machine, jit);
+            long address = jit.lookup("answer");
+            System.out.println((hit ? "Cache hit" : "Cache miss") + ", answer is at 0x" + Long.toHexString(address)
+                + " (" + (System.nanoTime() - start) / 1000 + " us)");
+
+            // Dispose of the allocated resources
+            jit.dispose();
+            context.dispose();
+        }
+
+        System.out.println("Cache size: " + cache.size() + " bytes");
+        machine.dispose();
+    }
+}
@@ -0,0 +1,58 @@
+package wrapper.cache;
+
+import org.voidlang.llvm.element.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class IncrementalBuild {
+    public static void main(String[] args) {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "void-incremental");
+        ObjectCache cache = new ObjectCache(directory, 64L * 1024 * 1024);
+        IRTargetMachine machine = IRTargetMachine.create(OptLevel.O2);
+        IncrementalCompiler compiler = new IncrementalCompiler(cache, machine);
+
+        // Build the same module with a different scale each time, only "scale" has to be compiled again
+        for (int factor = 2; factor <= 4; factor++) {
+            IRContext context = IRContext.create();
+            IRModule module = IRModule.create(context, "incremental");
+
+            IRType i32 = IRType.int32(context);
+            IRFunctionType type = IRFunctionType.create(context, i32, Collections.singletonList(i32), false);
+            IRBuilder builder = IRBuilder.create(context);
+
+            // int scale(int x) { return x * factor; }
+            IRFunction scale = IRFunction.create(module, "scale", type);
+            builder.positionAtEnd(IRBlock.create(context, scale, "entry"));
+            builder.returnValue(builder.multiply(scale.getParameter(0), i32.constInt(factor), "result"));
+
+            // int offset(int x) { return scale(x) + 1; }
+            IRFunction offset = IRFunction.create(module, "offset", type);
+            builder.positionAtEnd(IRBlock.create(context, offset, "entry"));
+            IRValue scaled = builder.call(scale, Collections.singletonList(offset.getParameter(0)), "scaled");
+            builder.returnValue(builder.add(scaled, i32.constInt(1), "result"));
+            builder.dispose();
+
+            System.out.println("Fingerprints: " + module.getFunctionFingerprints());
+
+            IRJit jit = IRJit.create();
+            IncrementalCompiler.Result result = compiler.load(module, jit);
+            System.out.println("Compiled " + result.getCompiledFunctions() + ", reused " + result.getReusedCount()
+                + ", offset is at 0x" + Long.toHexString(jit.lookup("offset")));
+
+            // Dispose of the allocated resources
+            jit.dispose();
+            context.dispose();
+        }
+
+        compiler.dispose();
+        machine.dispose();
+    }
+}
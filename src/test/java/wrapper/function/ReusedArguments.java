@@ -0,0 +1,61 @@
+package wrapper.function;
+
+import org.voidlang.llvm.element.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class ReusedArguments {
+    public static void main(String[] args) {
+        IRContext context = IRContext.create();
+        IRModule module = IRModule.create(context, "arguments");
+        IRType i64 = IRType.int64(context);
+
+        // Define sum functions with one to sixteen parameters. The parameter types of every function type are
+        // passed to LLVM in the native array of the current thread, which grows to the largest arity
+        List<IRType> parameterTypes = new ArrayList<>();
+        List<IRFunction> sums = new ArrayList<>();
+        IRBuilder builder = IRBuilder.create(context);
+        for (int arity = 1; arity <= 16; arity++) {
+            parameterTypes.add(i64);
+            IRFunctionType type = IRFunctionType.create(context, i64, new ArrayList<>(parameterTypes), false);
+            IRFunction sum = IRFunction.create(module, "sum" + arity, type);
+            builder.positionAtEnd(IRBlock.create(context, sum, "entry"));
+            IRValue result = sum.getParameter(0);
+            for (int i = 1; i < arity; i++)
+                result = builder.add(result, sum.getParameter(i));
+            builder.returnValue(result);
+            sums.add(sum);
+        }
+
+        // The members of a struct reuse the same array
+        IRStruct vector = IRStruct.define(context, "vector", parameterTypes);
+
+        // Call every sum function many times, without allocating a native array for the arguments of each call
+        IRFunctionType mainType = IRFunctionType.create(context, i64, Collections.emptyList(), false);
+        IRFunction main = IRFunction.create(module, "main", mainType);
+        builder.positionAtEnd(IRBlock.create(context, main, "entry"));
+        long start = System.nanoTime();
+        IRValue total = i64.constInt(0);
+        List<IRValue> arguments = new ArrayList<>();
+        for (int call = 0; call < 10_000; call++) {
+            int arity = call % sums.size() + 1;
+            IRFunction sum = sums.get(arity - 1);
+            arguments.clear();
+            for (int i = 0; i < arity; i++)
+                arguments.add(i64.constInt(call + i));
+            total = builder.add(total, builder.call(sum, arguments));
+        }
+        long end = System.nanoTime();
+        builder.returnValue(total);
+        System.out.println("Struct members: " + LLVMCountStructElementTypes(vector.getHandle()));
+        System.out.println("Average call took " + (end - start) / 10_000 + "ns to build");
+
+        // Dispose of the allocated resources
+        builder.dispose();
+        context.dispose();
+    }
+}
@@ -0,0 +1,56 @@
+package wrapper.jit;
+
+import org.voidlang.llvm.element.*;
+
+import java.util.Arrays;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class BatchInvocation {
+    public static void main(String[] args) {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        IRThreadSafeContext threadSafeContext = IRThreadSafeContext.create();
+        IRContext context = threadSafeContext.getContext();
+        IRModule module = IRModule.create(context, "kernels");
+
+        // int madd(int x, int y) { return x * 3 + y; }
+        IRType i32 = IRType.int32(context);
+        IRFunctionType type = IRFunctionType.create(context, i32, Arrays.asList(i32, i32), false);
+        IRFunction function = IRFunction.create(module, "madd", type);
+        IRBuilder builder = IRBuilder.create(context);
+        builder.positionAtEnd(IRBlock.create(context, function, "entry"));
+        IRValue product = builder.multiply(function.getParameter(0), i32.constInt(3), "product");
+        builder.returnValue(builder.add(product, function.getParameter(1), "result"));
+        builder.dispose();
+
+        // Generate the loop wrapper before optimizing, so that the kernel is inlined and vectorized
+        IRBatchInvoker.generate(function);
+        IRTargetMachine machine = IRTargetMachine.createHost(OptLevel.O3);
+        machine.configure(module);
+        module.optimize(OptLevel.O3, machine);
+
+        IRJit jit = IRJit.create();
+        jit.addModule(module, threadSafeContext);
+        IRBatchInvoker invoker = IRBatchInvoker.bind(jit, function);
+
+        // Evaluate the kernel over a million rows in a single native call
+        int rows = 1_000_000;
+        int[] x = new int[rows], y = new int[rows], result = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            x[i] = i;
+            y[i] = rows - i;
+        }
+        long start = System.nanoTime();
+        invoker.invoke(result, x, y);
+        System.out.println("Evaluated " + rows + " rows in " + (System.nanoTime() - start) / 1000 + " us, madd("
+            + x[rows - 1] + ", " + y[rows - 1] + ") = " + result[rows - 1]);
+
+        // Dispose of the allocated resources
+        jit.dispose();
+        machine.dispose();
+        threadSafeContext.dispose();
+    }
+}
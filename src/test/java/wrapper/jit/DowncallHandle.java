@@ -0,0 +1,48 @@
+package wrapper.jit;
+
+import org.voidlang.llvm.element.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class DowncallHandle {
+    public static void main(String[] args) throws Throwable {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        // Define a function summing its two parameters
+        IRThreadSafeContext threadContext = IRThreadSafeContext.create();
+        IRContext context = threadContext.getContext();
+        IRModule module = IRModule.create(context, "downcall");
+        IRType i32 = IRType.int32(context);
+        IRFunctionType type = IRFunctionType.create(context, i32, Arrays.asList(i32, i32), false);
+        IRFunction sum = IRFunction.create(module, "sum", type);
+        IRBuilder builder = IRBuilder.create(context);
+        builder.positionAtEnd(IRBlock.create(context, sum, "entry"));
+        builder.returnValue(builder.add(sum.getParameter(0), sum.getParameter(1), "result"));
+        builder.dispose();
+
+        // Compile the module, and bind the function to a method handle of type (int, int)int
+        IRJit jit = IRJit.create();
+        jit.addModule(module, threadContext);
+        MethodHandle handle = IRDowncall.bind(jit, "sum", type);
+        System.out.println("Handle type: " + handle.type());
+        System.out.println("Foreign linker: " + IRDowncall.isForeignLinker());
+
+        // Call the function through the handle, without boxing the arguments at the call site
+        long start = System.nanoTime();
+        int result = 0;
+        for (int i = 0; i < 1_000_000; i++)
+            result = (int) handle.invokeExact(result, 1);
+        long end = System.nanoTime();
+        System.out.println("Result: " + result);
+        System.out.println("Average call took " + (end - start) / 1_000_000 + "ns");
+
+        // Dispose of the allocated resources
+        jit.dispose();
+        threadContext.dispose();
+    }
+}
@@ -0,0 +1,67 @@
+package wrapper.jit;
+
+import org.voidlang.llvm.element.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class LazyLibrary {
+    public static void main(String[] args) {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        // Create a library module with many functions, of which only a few are going to be called
+        IRContext context = IRContext.create();
+        IRBuilder builder = IRBuilder.create(context);
+        IRType i32 = IRType.int32(context);
+        IRModule library = IRModule.create(context, "library");
+
+        IRGlobal offset = library.addGlobal(i32, "offset");
+        offset.setInitializer(i32.constInt(1000));
+
+        // An internal helper, that is shared by every function of the library
+        IRFunctionType scaleType = IRFunctionType.create(context, i32, Arrays.asList(i32, i32), false);
+        IRFunction scale = IRFunction.create(library, "scale", scaleType);
+        LLVMSetLinkage(scale.getHandle(), LLVMInternalLinkage);
+        builder.positionAtEnd(IRBlock.create(context, scale, "entry"));
+        IRValue product = builder.multiply(scale.getParameter(0), scale.getParameter(1), "product");
+        builder.returnValue(builder.add(product, builder.load(i32, offset, "offset"), "result"));
+
+        IRFunctionType functionType = IRFunctionType.create(context, i32, Collections.singletonList(i32), false);
+        for (int i = 0; i < 500; i++) {
+            IRFunction function = IRFunction.create(library, "function" + i, functionType);
+            builder.positionAtEnd(IRBlock.create(context, function, "entry"));
+            builder.returnValue(builder.call(
+                scale, Arrays.asList(function.getParameter(0), i32.constInt(i)), "scaled"
+            ));
+        }
+        builder.dispose();
+
+        // Adding the module only defines its symbols, nothing is compiled yet
+        IRJit jit = IRJit.create();
+        long start = System.nanoTime();
+        jit.addLazyModule(library);
+        System.out.printf("Added library in %.2f ms%n", (System.nanoTime() - start) / 1e6);
+        System.out.println("Objects compiled after adding: " + jit.getObjectCount());
+
+        // Looking up a function returns a stub, and the first call compiles the function and its helper
+        IRFunctionInvoker function7 = IRFunctionInvoker.create(jit, "function7", functionType);
+        System.out.println("Objects compiled after lookup: " + jit.getObjectCount());
+        start = System.nanoTime();
+        System.out.println("function7(3) = " + function7.invokeInt(3));
+        System.out.printf("First call took %.2f ms%n", (System.nanoTime() - start) / 1e6);
+        System.out.println("Objects compiled after the first call: " + jit.getObjectCount());
+        System.out.println("function7(4) = " + function7.invokeInt(4));
+
+        IRFunctionInvoker function321 = IRFunctionInvoker.create(jit, "function321", functionType);
+        System.out.println("function321(2) = " + function321.invokeInt(2));
+        System.out.println("Objects compiled after calling two functions: " + jit.getObjectCount());
+
+        // Dispose of the allocated resources
+        jit.dispose();
+        context.dispose();
+    }
+}
@@ -0,0 +1,56 @@
+package wrapper.jit;
+
+import org.voidlang.llvm.element.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class MultiModuleJit {
+    public static void main(String[] args) {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        // Create a thread safe context, that is shared by both modules
+        IRThreadSafeContext threadContext = IRThreadSafeContext.create();
+        IRContext context = threadContext.getContext();
+        IRBuilder builder = IRBuilder.create(context);
+        IRType i32 = IRType.int32(context);
+
+        // Create the module that defines the sum function
+        IRModule sumModule = IRModule.create(context, "sum");
+        IRFunctionType sumType = IRFunctionType.create(context, i32, Arrays.asList(i32, i32), false);
+        IRFunction sum = IRFunction.create(sumModule, "sum", sumType);
+        builder.positionAtEnd(IRBlock.create(context, sum, "entry"));
+        builder.returnValue(builder.add(sum.getParameter(0), sum.getParameter(1), "result"));
+
+        // Create the module that calls the sum function of the other module
+        IRModule mainModule = IRModule.create(context, "main");
+        IRFunction sumDeclaration = IRFunction.create(mainModule, "sum", sumType);
+        IRFunctionType mainType = IRFunctionType.create(context, i32, Collections.singletonList(i32), false);
+        IRFunction main = IRFunction.create(mainModule, "main", mainType);
+        builder.positionAtEnd(IRBlock.create(context, main, "entry"));
+        List<IRValue> arguments = new ArrayList<>();
+        arguments.add(main.getParameter(0));
+        arguments.add(i32.constInt(30));
+        builder.returnValue(builder.call(sumDeclaration, arguments, "call_res"));
+        builder.dispose();
+
+        // Add both modules to the same JIT, and look up main by its name
+        IRJit jit = IRJit.create();
+        jit.addModules(Arrays.asList(sumModule, mainModule), threadContext);
+        IRFunctionInvoker invoker = IRFunctionInvoker.create(jit, "main", mainType);
+
+        // Call the main function through the cached libffi call interface
+        for (int i = 0; i < 3; i++)
+            System.out.println("main(" + i + ") = " + invoker.invokeInt(i));
+
+        // Dispose of the allocated resources
+        jit.dispose();
+        threadContext.dispose();
+    }
+}
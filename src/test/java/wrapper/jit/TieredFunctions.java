@@ -0,0 +1,84 @@
+package wrapper.jit;
+
+import org.voidlang.llvm.element.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class TieredFunctions {
+    public static void main(String[] args) throws InterruptedException {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        // Create a module with a naive recursive fibonacci function
+        IRThreadSafeContext threadContext = IRThreadSafeContext.create();
+        IRContext context = threadContext.getContext();
+        IRBuilder builder = IRBuilder.create(context);
+        IRType i64 = IRType.int64(context);
+        IRModule module = IRModule.create(context, "fibonacci");
+
+        IRFunctionType fibType = IRFunctionType.create(context, i64, Collections.singletonList(i64), false);
+        IRFunction fib = IRFunction.create(module, "fib", fibType);
+        IRBlock entry = IRBlock.create(context, fib, "entry");
+        IRBlock base = IRBlock.create(context, fib, "base");
+        IRBlock recurse = IRBlock.create(context, fib, "recurse");
+
+        builder.positionAtEnd(entry);
+        IRValue n = fib.getParameter(0);
+        builder.jumpIf(builder.compareInt(Comparator.SIGNED_INTEGER_LESS_THAN, n, i64.constInt(2), "small"), base, recurse);
+        builder.positionAtEnd(base);
+        builder.returnValue(n);
+        builder.positionAtEnd(recurse);
+        IRValue first = builder.call(fib, Collections.singletonList(builder.subtract(n, i64.constInt(1), "n1")), "first");
+        IRValue second = builder.call(fib, Collections.singletonList(builder.subtract(n, i64.constInt(2), "n2")), "second");
+        builder.returnValue(builder.add(first, second, "result"));
+
+        // Create a function returning the offset of the second member of a struct, which depends on the data layout
+        IRType i8 = IRType.int8(context);
+        IRStruct pair = IRStruct.define(context, "pair", Arrays.asList(i8, i64));
+        IRFunctionType offsetType = IRFunctionType.create(context, i64, Collections.singletonList(i64), false);
+        IRFunction offset = IRFunction.create(module, "offset", offsetType);
+        builder.positionAtEnd(IRBlock.create(context, offset, "entry"));
+        IRValue address = offset.getParameter(0);
+        IRValue instance = builder.intToPointerCast(address, IRType.pointerType(pair), "instance");
+        IRValue member = builder.structMemberPointer(pair, instance, 1, "member");
+        IRValue memberAddress = builder.pointerToIntCast(member, i64, "member_address");
+        builder.returnValue(builder.subtract(memberAddress, address, "offset"));
+        builder.dispose();
+
+        // The function starts unoptimized, and it is recompiled at O3 after 10000 calls
+        TieredJit jit = TieredJit.create(10_000, 5, TimeUnit.MILLISECONDS);
+        jit.addModule(module, threadContext);
+        IRFunctionInvoker invoker = IRFunctionInvoker.create(fibType, jit.lookup("fib"));
+        IRFunctionInvoker offsetInvoker = IRFunctionInvoker.create(offsetType, jit.lookup("offset"));
+
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            long result = invoker.invokeLong(27);
+            System.out.printf(
+                "fib(27) = %d in %.2f ms at tier %d after %d calls%n",
+                result, (System.nanoTime() - start) / 1e6, jit.getTier("fib"), jit.getCallCount("fib")
+            );
+            Thread.sleep(50);
+        }
+
+        // Both tiers are compiled with the data layout of the JIT, so they agree on the offset
+        for (int i = 0; i < 5; i++) {
+            long result = 0;
+            for (int call = 0; call < 5_000; call++)
+                result = offsetInvoker.invokeLong(4096);
+            System.out.printf("offset = %d at tier %d%n", result, jit.getTier("offset"));
+            Thread.sleep(50);
+        }
+
+        // Dispose of the allocated resources
+        invoker.dispose();
+        offsetInvoker.dispose();
+        jit.dispose();
+        threadContext.dispose();
+    }
+}
@@ -0,0 +1,56 @@
+package wrapper.memory;
+
+import org.voidlang.llvm.element.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class MemoryUsage {
+    public static void main(String[] args) throws InterruptedException {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        // Report the memory of the context and the JIT twice a second
+        MemoryMonitor monitor = new MemoryMonitor();
+        monitor.start(500, TimeUnit.MILLISECONDS, System.out::println);
+
+        IRThreadSafeContext threadContext = IRThreadSafeContext.create();
+        IRContext context = threadContext.getContext();
+        IRJit jit = IRJit.create();
+        monitor.track("compiler", context).track("jit", jit);
+
+        // Build a module with a few hundred functions
+        IRModule module = IRModule.create(context, "functions");
+        IRType i64 = IRType.int64(context);
+        IRFunctionType type = IRFunctionType.create(context, i64, Arrays.asList(i64, i64), false);
+        IRBuilder builder = IRBuilder.create(context);
+        for (int i = 0; i < 500; i++) {
+            IRFunction function = IRFunction.create(module, "f" + i, type);
+            builder.positionAtEnd(IRBlock.create(context, function, "entry"));
+            IRValue product = builder.multiply(function.getParameter(0), function.getParameter(1), "product");
+            builder.returnValue(builder.add(product, i64.constInt(i), "result"));
+        }
+        builder.dispose();
+
+        // Measure the module on the thread that has built it
+        ModuleStatistics statistics = module.measure();
+        System.out.println(statistics);
+        System.out.println("Context estimate: " + context.getEstimatedSize() + " bytes");
+        Thread.sleep(600);
+
+        // Compile the module, and look up a function to materialize it
+        jit.addModule(module, threadContext);
+        System.out.println("f499 is at 0x" + Long.toHexString(jit.lookup("f499")));
+        System.out.println("JIT code: " + jit.getCodeSize() + " bytes, data: " + jit.getDataSize() + " bytes");
+        Thread.sleep(600);
+
+        // Dispose of the allocated resources
+        monitor.dispose();
+        jit.dispose();
+        threadContext.dispose();
+        System.out.println(monitor.snapshot());
+    }
+}
@@ -0,0 +1,65 @@
+package wrapper.naming;
+
+import org.voidlang.llvm.element.*;
+
+import java.util.Arrays;
+
+public class NamelessMode {
+    public static void main(String[] args) {
+        // Build the same function with the names of local values kept, as in debug builds
+        IRContext debugContext = IRContext.create();
+        System.out.println(build(debugContext));
+
+        // Build it again with the names discarded, as in production builds
+        IRContext releaseContext = IRContext.create();
+        releaseContext.setDiscardValueNames(true);
+        System.out.println(build(releaseContext));
+
+        // Measure the cost of building named instructions in both modes
+        System.out.println("Named: " + measure(debugContext) + "ns per instruction");
+        System.out.println("Nameless: " + measure(releaseContext) + "ns per instruction");
+
+        // Dispose of the allocated resources
+        debugContext.dispose();
+        releaseContext.dispose();
+    }
+
+    private static String build(IRContext context) {
+        IRModule module = IRModule.create(context, "nameless");
+        IRType i32 = IRType.int32(context);
+        IRFunctionType type = IRFunctionType.create(context, i32, Arrays.asList(i32, i32), false);
+        IRFunction function = IRFunction.create(module, "average", type);
+
+        // The names are passed in both modes, but they are only encoded, if the context keeps them
+        IRBuilder builder = IRBuilder.create(context);
+        builder.positionAtEnd(IRBlock.create(context, function, "entry"));
+        IRValue sum = builder.add(function.getParameter(0), function.getParameter(1), "sum");
+        builder.returnValue(builder.divideSigned(sum, i32.constInt(2), "average"));
+        builder.dispose();
+
+        String ir = module.print();
+        module.dispose();
+        return ir;
+    }
+
+    private static long measure(IRContext context) {
+        IRModule module = IRModule.create(context, "benchmark");
+        IRType i64 = IRType.int64(context);
+        IRFunctionType type = IRFunctionType.create(context, i64, Arrays.asList(i64), false);
+        IRFunction function = IRFunction.create(module, "sum", type);
+        IRBuilder builder = IRBuilder.create(context);
+        builder.positionAtEnd(IRBlock.create(context, function, "entry"));
+
+        int count = 100_000;
+        long start = System.nanoTime();
+        IRValue sum = function.getParameter(0);
+        for (int i = 0; i < count; i++)
+            sum = builder.add(sum, function.getParameter(0), "partial_sum");
+        long end = System.nanoTime();
+        builder.returnValue(sum);
+
+        builder.dispose();
+        module.dispose();
+        return (end - start) / count;
+    }
+}
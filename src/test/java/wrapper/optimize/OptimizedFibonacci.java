@@ -0,0 +1,86 @@
+package wrapper.optimize;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
+import org.voidlang.llvm.element.*;
+
+import java.util.Collections;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class OptimizedFibonacci {
+    public static void main(String[] args) {
+        // Initialize LLVM components
+        LLVMInitializeCore(LLVMGetGlobalPassRegistry());
+        LLVMLinkInMCJIT();
+        LLVMInitializeNativeAsmPrinter();
+        LLVMInitializeNativeAsmParser();
+        LLVMInitializeNativeTarget();
+
+        // Create the LLVM context and module
+        IRContext context = IRContext.create();
+        IRModule module = IRModule.create(context, "fibonacci");
+        IRBuilder builder = IRBuilder.create(context);
+        IRType i32 = IRType.int32(context);
+
+        // Create the fib function
+        IRFunctionType fibType = IRFunctionType.create(i32, Collections.singletonList(i32));
+        IRFunction fib = IRFunction.create(module, "fib", fibType);
+        IRBlock entry = IRBlock.create(fib, "entry");
+        IRBlock base = IRBlock.create(fib, "base");
+        IRBlock recurse = IRBlock.create(fib, "recurse");
+
+        // if (n < 2) return n
+        IRValue n = fib.getParameter(0);
+        builder.positionAtEnd(entry);
+        IRValue condition = builder.compareInt(Comparator.SIGNED_INTEGER_LESS_THAN, n, i32.constInt(2), "condition");
+        builder.jumpIf(condition, base, recurse);
+        builder.positionAtEnd(base);
+        builder.returnValue(n);
+
+        // return fib(n - 1) + fib(n - 2)
+        builder.positionAtEnd(recurse);
+        IRValue first = builder.call(fib, Collections.singletonList(builder.subtract(n, i32.constInt(1))), "first");
+        IRValue second = builder.call(fib, Collections.singletonList(builder.subtract(n, i32.constInt(2))), "second");
+        builder.returnValue(builder.add(first, second, "result"));
+
+        // Verify the module
+        BytePointer error = new BytePointer((Pointer) null);
+        if (!module.verify(IRModule.VerifierFailureAction.PRINT_MESSAGE, error)) {
+            System.err.println("Error: " + error.getString());
+            LLVMDisposeMessage(error);
+            return;
+        }
+
+        // Optimize the module using the new pass manager, and dump the optimized IR
+        module.optimize(OptLevel.O3);
+        module.dump();
+
+        // Execute the code using MCJIT
+        ExecutionEngine engine = ExecutionEngine.create();
+        MMCJITCompilerOptions options = MMCJITCompilerOptions.create();
+        options.setOptLevel(OptLevel.O3.getCodeGenLevel());
+        if (!engine.createMCJITCompilerForModule(module, options, error)) {
+            System.err.println("Failed to create JIT compiler: " + error.getString());
+            LLVMDisposeMessage(error);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        long result = 0;
+        for (int i = 0; i < 3; i++) {
+            try (IRGenericValue argument = i32.genericInt(35);
+                 IRGenericValue value = engine.runFunction(fib, Collections.singletonList(argument))) {
+                result += value.toInt();
+            }
+        }
+        long end = System.currentTimeMillis();
+        System.out.println();
+        System.out.println("Result: " + result);
+        System.out.println("Execution took " + (end - start) + "ms");
+
+        // Dispose of the allocated resources
+        builder.dispose();
+        context.dispose();
+    }
+}
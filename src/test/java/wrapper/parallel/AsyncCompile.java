@@ -0,0 +1,69 @@
+package wrapper.parallel;
+
+import org.voidlang.llvm.element.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class AsyncCompile {
+    public static void main(String[] args) {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        IRJit jit = IRJit.create();
+        // At most 4 compiler threads, and at most 64 modules waiting for them
+        CompileExecutor executor = new CompileExecutor(4, 64, OptLevel.O2);
+
+        // Every script is built in a thread safe context of its own, so the scripts are compiled in parallel
+        List<IRThreadSafeContext> contexts = new ArrayList<>();
+        List<CompletableFuture<Void>> compilations = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            IRThreadSafeContext context = IRThreadSafeContext.create();
+            contexts.add(context);
+            IRModule module = createScript(context.getContext(), i);
+
+            long start = System.nanoTime();
+            compilations.add(executor.compile(module, context, jit));
+            System.out.printf("Submitted script_%d in %.3f ms%n", i, (System.nanoTime() - start) / 1e6);
+        }
+
+        // The callbacks run once the code of each script is linked into the JIT
+        for (int i = 0; i < compilations.size(); i++) {
+            String name = "script_" + i;
+            compilations.set(i, compilations.get(i).thenRun(() ->
+                System.out.println(name + " is ready at 0x" + Long.toHexString(jit.lookup(name)))
+            ));
+        }
+        CompletableFuture.allOf(compilations.toArray(new CompletableFuture[0])).join();
+
+        // Dispose of the allocated resources
+        executor.dispose();
+        jit.dispose();
+        for (IRThreadSafeContext context : contexts)
+            context.dispose();
+    }
+
+    /**
+     * Create a module with a function, whose body is long enough to take a noticeable time to compile.
+     */
+    private static IRModule createScript(IRContext context, int index) {
+        IRBuilder builder = IRBuilder.create(context);
+        IRType i64 = IRType.int64(context);
+        IRModule module = IRModule.create(context, "script_" + index);
+
+        IRFunctionType type = IRFunctionType.create(context, i64, Collections.singletonList(i64), false);
+        IRFunction function = IRFunction.create(module, "script_" + index, type);
+        builder.positionAtEnd(IRBlock.create(context, function, "entry"));
+        IRValue value = function.getParameter(0);
+        for (int i = 0; i < 1000; i++)
+            value = builder.add(builder.multiply(value, i64.constInt(3), "scaled"), i64.constInt(index), "value");
+        builder.returnValue(value);
+        builder.dispose();
+        return module;
+    }
+}
@@ -0,0 +1,55 @@
+package wrapper.parallel;
+
+import org.voidlang.llvm.element.*;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class ParallelModules {
+    public static void main(String[] args) throws Exception {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        // Create a job for each module, that defines a function returning the index of the module
+        Map<String, ParallelCompiler.Job> jobs = new LinkedHashMap<>();
+        for (int i = 0; i < 16; i++) {
+            int index = i;
+            jobs.put("module_" + i, module -> {
+                IRContext context = module.getContext();
+                IRType i32 = IRType.int32(context);
+                IRFunctionType type = IRFunctionType.create(context, i32, Collections.emptyList(), false);
+                IRFunction function = IRFunction.create(module, "get_" + index, type);
+                IRBuilder builder = IRBuilder.create(context);
+                builder.positionAtEnd(IRBlock.create(context, function, "entry"));
+                builder.returnValue(i32.constInt(index));
+                builder.dispose();
+            });
+        }
+
+        ParallelCompiler compiler = new ParallelCompiler(OptLevel.O2);
+
+        // Emit every module to an object file
+        File directory = new File(System.getProperty("java.io.tmpdir"), "void-parallel");
+        directory.mkdirs();
+        List<CompletableFuture<File>> objects = compiler.compileAll(jobs, directory);
+        for (CompletableFuture<File> object : objects)
+            System.out.println("Emitted " + object.get() + " (" + object.get().length() + " bytes)");
+
+        // Add every module to the same JIT
+        IRJit jit = IRJit.create();
+        CompletableFuture.allOf(compiler.compileAll(jobs, jit).toArray(new CompletableFuture[0])).get();
+        for (int i = 0; i < 16; i++)
+            System.out.println("get_" + i + " is at 0x" + Long.toHexString(jit.lookup("get_" + i)));
+
+        // Dispose of the allocated resources
+        compiler.dispose();
+        jit.dispose();
+    }
+}
@@ -0,0 +1,71 @@
+package wrapper.parallel;
+
+import org.voidlang.llvm.element.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class PooledContexts {
+    public static void main(String[] args) throws Exception {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        IRContextPool pool = new IRContextPool(threads, 500, 16L * 1024 * 1024);
+
+        // Build many small modules, each in a context checked out of the pool
+        for (int round = 0; round < 2; round++) {
+            boolean pooled = round == 1;
+            long start = System.nanoTime();
+            List<Future<Long>> sizes = new ArrayList<>();
+            for (int i = 0; i < 4000; i++) {
+                int index = i;
+                sizes.add(executor.submit(() -> {
+                    if (pooled)
+                        return pool.apply(context -> build(context, index));
+                    IRContext context = IRContext.create();
+                    try {
+                        return build(context, index);
+                    } finally {
+                        context.dispose();
+                    }
+                }));
+            }
+            long total = 0;
+            for (Future<Long> size : sizes)
+                total += size.get();
+            System.out.println((pooled ? "Pooled" : "Fresh") + " contexts: " + total + " bytes of bitcode in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        System.out.println("Created " + pool.getCreatedCount() + " contexts, recycled "
+            + pool.getRecycledCount() + ", idle " + pool.getIdleCount());
+
+        // Dispose of the allocated resources
+        executor.shutdown();
+        pool.dispose();
+    }
+
+    private static long build(IRContext context, int index) {
+        IRModule module = IRModule.create(context, "module_" + index);
+        IRType i32 = IRType.int32(context);
+        IRFunctionType type = IRFunctionType.create(context, i32, Collections.singletonList(i32), false);
+        IRFunction function = IRFunction.create(module, "scale_" + index, type);
+        IRBuilder builder = IRBuilder.create(context);
+        builder.positionAtEnd(IRBlock.create(context, function, "entry"));
+        builder.returnValue(builder.multiply(function.getParameter(0), i32.constInt(index), "result"));
+
+        // The module and the builder are disposed, when the context is returned to the pool
+        IRMemoryBuffer bitcode = module.writeBitCodeToFile();
+        long size = bitcode.size();
+        bitcode.dispose();
+        return size;
+    }
+}
@@ -0,0 +1,80 @@
+package wrapper.parallel;
+
+import org.bytedeco.llvm.LLVM.LLVMComdatRef;
+import org.voidlang.llvm.element.*;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class SplitModule {
+    private static final int FUNCTIONS = 2000;
+
+    public static void main(String[] args) {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        IRTargetMachine machine = IRTargetMachine.createHost(OptLevel.O1);
+        ParallelCompiler compiler = new ParallelCompiler(4, machine);
+
+        // Build a chain of internal functions, each of them calling the previous one
+        IRContext context = IRContext.create();
+        IRModule module = IRModule.create(context, "chain");
+        machine.configure(module);
+        IRType i64 = IRType.int64(context);
+        IRFunctionType type = IRFunctionType.create(context, i64, Collections.singletonList(i64), false);
+        IRBuilder builder = IRBuilder.create(context);
+        IRFunction previous = null;
+        for (int i = 0; i < FUNCTIONS; i++) {
+            IRFunction step = IRFunction.create(module, "step" + i, type);
+            LLVMSetLinkage(step.getHandle(), LLVMInternalLinkage);
+            builder.positionAtEnd(IRBlock.create(context, step, "entry"));
+            IRValue value = builder.add(step.getParameter(0), i64.constInt(i), "value");
+            if (previous != null)
+                value = builder.call(previous, Collections.singletonList(value), "next");
+            builder.returnValue(value);
+            previous = step;
+        }
+        // Put two inline functions into a comdat group, which must end up in the same partition, as the linker keeps
+        // or discards the members of a group together
+        LLVMComdatRef group = LLVMGetOrInsertComdat(module.getHandle(), "scale");
+        IRFunction scale = IRFunction.create(module, "scale", type);
+        IRFunction scaleTwice = IRFunction.create(module, "scale.twice", type);
+        for (IRFunction member : new IRFunction[] { scale, scaleTwice }) {
+            LLVMSetLinkage(member.getHandle(), LLVMLinkOnceODRLinkage);
+            LLVMSetComdat(member.getHandle(), group);
+        }
+        builder.positionAtEnd(IRBlock.create(context, scale, "entry"));
+        builder.returnValue(builder.multiply(scale.getParameter(0), i64.constInt(3), "scaled"));
+        builder.positionAtEnd(IRBlock.create(context, scaleTwice, "entry"));
+        IRValue once = builder.call(scale, Collections.singletonList(scaleTwice.getParameter(0)), "once");
+        builder.returnValue(builder.call(scale, Collections.singletonList(once), "twice"));
+
+        IRFunction chain = IRFunction.create(module, "chain", type);
+        builder.positionAtEnd(IRBlock.create(context, chain, "entry"));
+        IRValue scaled = builder.call(scaleTwice, Collections.singletonList(chain.getParameter(0)), "scaled");
+        builder.returnValue(builder.call(previous, Collections.singletonList(scaled), "result"));
+
+        // Generate the code of four partitions in parallel
+        long start = System.nanoTime();
+        List<IRMemoryBuffer> objects = compiler.compileSplit(module, 4).join();
+        System.out.println("Compiled " + objects.size() + " partitions in " + (System.nanoTime() - start) / 1000000 + " ms");
+        for (IRMemoryBuffer object : objects) {
+            System.out.println("Partition object: " + object.size() + " bytes");
+            object.dispose();
+        }
+
+        // Load the partitions into a JIT, and link them together
+        IRJit jit = IRJit.create(machine);
+        compiler.compileSplit(module, 4, jit).join();
+        System.out.println("chain is at 0x" + Long.toHexString(jit.lookup("chain")));
+
+        // Dispose of the allocated resources
+        jit.dispose();
+        context.dispose();
+        compiler.dispose();
+        machine.dispose();
+    }
+}
@@ -0,0 +1,60 @@
+package wrapper.profile;
+
+import org.voidlang.llvm.element.*;
+
+import java.util.Collections;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class CallCounters {
+    public static void main(String[] args) {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        // Create a module with a naive recursive fibonacci function
+        IRThreadSafeContext threadContext = IRThreadSafeContext.create();
+        IRContext context = threadContext.getContext();
+        IRBuilder builder = IRBuilder.create(context);
+        IRType i64 = IRType.int64(context);
+        IRModule module = IRModule.create(context, "fibonacci");
+
+        IRFunctionType fibType = IRFunctionType.create(context, i64, Collections.singletonList(i64), false);
+        IRFunction fib = IRFunction.create(module, "fib", fibType);
+        IRBlock entry = IRBlock.create(context, fib, "entry");
+        IRBlock base = IRBlock.create(context, fib, "base");
+        IRBlock recurse = IRBlock.create(context, fib, "recurse");
+
+        builder.positionAtEnd(entry);
+        IRValue n = fib.getParameter(0);
+        builder.jumpIf(builder.compareInt(Comparator.SIGNED_INTEGER_LESS_THAN, n, i64.constInt(2), "small"), base, recurse);
+        builder.positionAtEnd(base);
+        builder.returnValue(n);
+        builder.positionAtEnd(recurse);
+        IRValue first = builder.call(fib, Collections.singletonList(builder.subtract(n, i64.constInt(1), "n1")), "first");
+        IRValue second = builder.call(fib, Collections.singletonList(builder.subtract(n, i64.constInt(2), "n2")), "second");
+        builder.returnValue(builder.add(first, second, "result"));
+        builder.dispose();
+
+        // Count the calls of the function, and the executions of each of its blocks
+        IRCounters counters = module.instrument(true);
+
+        IRJit jit = IRJit.create();
+        jit.addModule(module, threadContext);
+        counters.attach(jit);
+        IRFunctionInvoker invoker = IRFunctionInvoker.create(fibType, jit.lookup("fib"));
+
+        System.out.println("fib(20) = " + invoker.invokeLong(20));
+
+        // The counters are read directly from the memory of the compiled code
+        long[] values = counters.snapshot();
+        int slot = counters.getSlot("fib");
+        System.out.println("fib was called " + counters.getCount("fib") + " times");
+        System.out.println("base case: " + values[slot + 1] + ", recursive case: " + values[slot + 2]);
+
+        // Dispose of the allocated resources
+        invoker.dispose();
+        jit.dispose();
+        threadContext.dispose();
+    }
+}
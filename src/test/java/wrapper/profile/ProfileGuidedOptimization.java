@@ -0,0 +1,87 @@
+package wrapper.profile;
+
+import org.voidlang.llvm.element.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class ProfileGuidedOptimization {
+    public static void main(String[] args) {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        Path profileFile = Paths.get("build", "profiles", "router.profile");
+
+        // Build the program with instrumentation, and run it under the JIT to collect a profile
+        IRThreadSafeContext threadContext = IRThreadSafeContext.create();
+        IRModule instrumented = createRouter(threadContext.getContext());
+        IRCounters counters = instrumented.instrument(true);
+
+        IRJit jit = IRJit.create();
+        jit.addModule(instrumented, threadContext);
+        counters.attach(jit);
+        IRFunctionInvoker invoker = IRFunctionInvoker.create(
+            IRFunctionType.create(
+                threadContext.getContext(), IRType.int64(threadContext.getContext()),
+                Collections.singletonList(IRType.int64(threadContext.getContext())), false
+            ),
+            jit.lookup("route")
+        );
+        for (int i = 0; i < 10_000; i++)
+            invoker.invokeLong(i);
+
+        // Write the profile to the local disk
+        IRProfile.collect(counters).write(profileFile);
+        invoker.dispose();
+        jit.dispose();
+        threadContext.dispose();
+
+        // A later compilation of the same program reads the profile, and optimizes along the hot paths
+        IRContext context = IRContext.create();
+        IRModule module = createRouter(context);
+        IRProfile profile = IRProfile.read(profileFile);
+        System.out.println("route was called " + profile.getEntryCount("route") + " times");
+        module.optimize(OptLevel.O3, profile);
+        module.dump();
+
+        // Dispose of the allocated resources
+        module.dispose();
+        context.dispose();
+    }
+
+    /**
+     * Create a function, that takes a rare slow path for every 64th request.
+     */
+    private static IRModule createRouter(IRContext context) {
+        IRBuilder builder = IRBuilder.create(context);
+        IRType i64 = IRType.int64(context);
+        IRModule module = IRModule.create(context, "router");
+
+        IRFunctionType routeType = IRFunctionType.create(context, i64, Collections.singletonList(i64), false);
+        IRFunction route = IRFunction.create(module, "route", routeType);
+        IRBlock entry = IRBlock.create(context, route, "entry");
+        IRBlock slow = IRBlock.create(context, route, "slow");
+        IRBlock fast = IRBlock.create(context, route, "fast");
+
+        builder.positionAtEnd(entry);
+        IRValue request = route.getParameter(0);
+        IRValue bucket = builder.unsignedRemainder(request, i64.constInt(64), "bucket");
+        builder.jumpIf(builder.compareInt(Comparator.INTEGER_EQUAL, bucket, i64.constInt(0), "rare"), slow, fast);
+
+        builder.positionAtEnd(slow);
+        IRValue hash = request;
+        for (int i = 0; i < 16; i++)
+            hash = builder.add(builder.multiply(hash, i64.constInt(31), "mix"), i64.constInt(i), "hash");
+        builder.returnValue(hash);
+
+        builder.positionAtEnd(fast);
+        builder.returnValue(builder.add(request, i64.constInt(1), "next"));
+
+        builder.dispose();
+        return module;
+    }
+}
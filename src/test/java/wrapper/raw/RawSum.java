@@ -0,0 +1,34 @@
+package wrapper.raw;
+
+import org.voidlang.llvm.element.*;
+
+import java.util.Arrays;
+
+public class RawSum {
+    public static void main(String[] args) {
+        IRContext context = IRContext.create();
+        IRModule module = IRModule.create(context, "raw");
+
+        // Define a function summing its parameter a thousand times
+        IRType i64 = IRType.int64(context);
+        IRFunctionType type = IRFunctionType.create(context, i64, Arrays.asList(i64), false);
+        IRFunction function = IRFunction.create(module, "sum", type);
+
+        IRRawBuilder builder = IRRawBuilder.create(context);
+        builder.positionAtEnd(IRRawBuilder.address(IRBlock.create(context, function, "entry")));
+
+        long parameter = IRRawBuilder.address(function.getParameter(0));
+        long sum = parameter;
+        for (int i = 1; i < 1000; i++)
+            sum = builder.add(sum, parameter);
+        builder.returnValue(sum);
+
+        // Optimize the function, which folds the additions into a single multiplication
+        module.optimize(OptLevel.O2);
+        System.out.println(module.print());
+
+        // Dispose of the allocated resources
+        builder.dispose();
+        context.dispose();
+    }
+}
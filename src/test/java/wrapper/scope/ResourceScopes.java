@@ -0,0 +1,56 @@
+package wrapper.scope;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
+import org.voidlang.llvm.element.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Run with -Dvoidlang.llvm.leakDetection=true to check that every native resource is freed.
+ */
+public class ResourceScopes {
+    public static void main(String[] args) {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+        LLVMLinkInMCJIT();
+
+        // Serve a few requests, each of them in a context of its own
+        for (int request = 0; request < 3; request++) {
+            try (IRContext context = IRContext.create()) {
+                IRModule module = IRModule.create(context, "request");
+                IRType i32 = IRType.int32(context);
+                IRFunctionType type = IRFunctionType.create(context, i32, Collections.emptyList(), false);
+                IRFunction function = IRFunction.create(module, "answer", type);
+
+                // The builder is disposed together with the context
+                IRBuilder builder = IRBuilder.create(context);
+                builder.positionAtEnd(IRBlock.create(context, function, "entry"));
+                builder.returnValue(i32.constInt(40 + request));
+
+                // The engine takes the ownership of the module, and is disposed together with the context as well
+                ExecutionEngine engine = ExecutionEngine.create();
+                BytePointer error = new BytePointer((Pointer) null);
+                if (!engine.createMCJITCompilerForModule(module, MMCJITCompilerOptions.create(), error)) {
+                    System.err.println("Failed to create JIT compiler: " + error.getString());
+                    LLVMDisposeMessage(error);
+                    return;
+                }
+
+                // Generic values are not managed by the context, so that they do not pile up in long-lived contexts
+                try (IRGenericValue result = engine.runFunction(function, new ArrayList<>())) {
+                    System.out.println("Request " + request + " result: " + result.toInt());
+                }
+            }
+        }
+
+        if (LeakDetector.isEnabled()) {
+            LeakDetector.check();
+            System.out.println("No native resources were leaked");
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package wrapper.target;
+
+import org.voidlang.llvm.element.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class EmitToMemory {
+    public static void main(String[] args) throws IOException {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        IRTargetMachine machine = IRTargetMachine.createHost(OptLevel.O2);
+        IRContext context = IRContext.create();
+        IRModule module = IRModule.create(context, "memory");
+        IRType i32 = IRType.int32(context);
+        IRFunctionType type = IRFunctionType.create(context, i32, Arrays.asList(i32, i32), false);
+        IRFunction sum = IRFunction.create(module, "sum", type);
+        IRBuilder builder = IRBuilder.create(context);
+        builder.positionAtEnd(IRBlock.create(context, sum, "entry"));
+        builder.returnValue(builder.add(sum.getParameter(0), sum.getParameter(1), "result"));
+        machine.configure(module);
+
+        // Emit the object file to memory, and stream it into a channel
+        Path file = Files.createTempFile("memory", ".o");
+        try (IRMemoryBuffer object = machine.emit(module, IRTargetMachine.FileType.OBJECT);
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            object.writeTo(channel);
+            System.out.println("Object file: " + object.size() + " bytes in memory, " + channel.size() + " bytes written");
+        }
+        Files.delete(file);
+
+        // Emit the assembly to memory, and stream it into an output stream
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (IRMemoryBuffer assembly = machine.emit(module, IRTargetMachine.FileType.ASSEMBLY)) {
+            assembly.writeTo(stream);
+        }
+        for (String line : stream.toString("UTF-8").split("\n")) {
+            if (line.startsWith("\t") && !line.startsWith("\t."))
+                System.out.println(line.trim());
+        }
+
+        // Dispose of the allocated resources
+        context.dispose();
+        machine.dispose();
+    }
+}
@@ -0,0 +1,63 @@
+package wrapper.target;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
+import org.voidlang.llvm.element.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class HostTarget {
+    public static void main(String[] args) throws IOException {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        // Create a target machine for the exact CPU of the host
+        IRTargetMachine machine = IRTargetMachine.createHost(
+            OptLevel.O3, IRTargetMachine.RelocMode.PIC, IRTargetMachine.CodeModel.SMALL
+        );
+        System.out.println("Triple: " + machine.getTriple());
+        System.out.println("CPU: " + machine.getCpu());
+        System.out.println("Features: " + machine.getFeatures().split(",").length);
+
+        // Build a module, and optimize it for the host
+        IRThreadSafeContext threadContext = IRThreadSafeContext.create();
+        IRContext context = threadContext.getContext();
+        IRModule module = IRModule.create(context, "host");
+        IRType i32 = IRType.int32(context);
+        IRFunctionType type = IRFunctionType.create(context, i32, Arrays.asList(i32, i32), false);
+        IRFunction sum = IRFunction.create(module, "sum", type);
+        IRBuilder builder = IRBuilder.create(context);
+        builder.positionAtEnd(IRBlock.create(context, sum, "entry"));
+        builder.returnValue(builder.add(sum.getParameter(0), sum.getParameter(1), "result"));
+        builder.dispose();
+        machine.configure(module);
+        module.optimize(OptLevel.O3, machine);
+
+        // Emit the assembly of the module with the machine
+        File assembly = File.createTempFile("host", ".s");
+        BytePointer error = new BytePointer((Pointer) null);
+        if (!machine.emitToFile(module, assembly, IRTargetMachine.FileType.ASSEMBLY, error)) {
+            System.err.println("Failed to emit assembly: " + error.getString());
+            LLVMDisposeMessage(error);
+            return;
+        }
+        System.out.println("Assembly: " + assembly.length() + " bytes");
+        assembly.delete();
+
+        // Compile the same module in a JIT, that uses the settings of the machine
+        IRJit jit = IRJit.create(machine);
+        System.out.println("JIT triple: " + jit.getTriple());
+        jit.addModule(module, threadContext);
+        System.out.println("sum is at 0x" + Long.toHexString(jit.lookup("sum")));
+
+        // Dispose of the allocated resources
+        jit.dispose();
+        threadContext.dispose();
+        machine.dispose();
+    }
+}
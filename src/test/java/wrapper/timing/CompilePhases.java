@@ -0,0 +1,74 @@
+package wrapper.timing;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
+import org.voidlang.llvm.element.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public class CompilePhases {
+    public static void main(String[] args) throws IOException {
+        // Initialize LLVM components
+        LLVMInitializeNativeTarget();
+        LLVMInitializeNativeAsmPrinter();
+
+        // Print the timing of every compilation phase
+        CompilationListener listener = System.out::println;
+        CompilationEvents.addListener(listener);
+
+        IRThreadSafeContext threadContext = IRThreadSafeContext.create();
+        IRContext context = threadContext.getContext();
+        IRModule module = buildModule(context, "phases");
+
+        // Verify and optimize the module
+        BytePointer error = new BytePointer((Pointer) null);
+        if (!module.verify(IRModule.VerifierFailureAction.PRINT_MESSAGE, error)) {
+            System.err.println("Invalid module: " + error.getString());
+            LLVMDisposeMessage(error);
+            return;
+        }
+        IRTargetMachine machine = IRTargetMachine.create(OptLevel.O2);
+        machine.configure(module);
+        module.optimize(OptLevel.O2);
+
+        // Emit an object file ahead of time
+        File object = File.createTempFile("phases", ".o");
+        if (!machine.emitToFile(module, object, IRTargetMachine.FileType.OBJECT, error)) {
+            System.err.println("Failed to emit object file: " + error.getString());
+            LLVMDisposeMessage(error);
+            return;
+        }
+        object.delete();
+
+        // Compile the module in the JIT, which happens during the first lookup
+        IRJit jit = IRJit.create();
+        jit.addModule(module, threadContext);
+        jit.lookup("f0");
+        jit.lookup("f1");
+
+        // Dispose of the allocated resources
+        CompilationEvents.removeListener(listener);
+        jit.dispose();
+        machine.dispose();
+        threadContext.dispose();
+    }
+
+    private static IRModule buildModule(IRContext context, String name) {
+        IRModule module = IRModule.create(context, name);
+        IRType i64 = IRType.int64(context);
+        IRFunctionType type = IRFunctionType.create(context, i64, Arrays.asList(i64, i64), false);
+        IRBuilder builder = IRBuilder.create(context);
+        for (int i = 0; i < 200; i++) {
+            IRFunction function = IRFunction.create(module, "f" + i, type);
+            builder.positionAtEnd(IRBlock.create(context, function, "entry"));
+            IRValue product = builder.multiply(function.getParameter(0), function.getParameter(1), "product");
+            builder.returnValue(builder.add(product, i64.constInt(i), "result"));
+        }
+        builder.dispose();
+        return module;
+    }
+}